@@ -0,0 +1,68 @@
+/*
+ *    Copyright 2019 The aio-socket Project
+ *
+ *    The aio-socket Project Licenses this file to you under the Apache License,
+ *    Version 2.0 (the "License"); you may not use this file except in compliance
+ *    with the License. You may obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.mxd888.socket.benchmark;
+
+import io.github.mxd888.socket.utils.queue.AioFullWaitQueue;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AioFullWaitQueue offer/poll 基准测试
+ * 单线程成对收发衡量无竞争开销，生产者/消费者分组衡量多线程竞争下的吞吐
+ *
+ * @author MDong
+ * @version 2.10.1.v20211002-RELEASE
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AioFullWaitQueueBenchmark {
+
+    private static final Integer ELEMENT = 1;
+
+    private AioFullWaitQueue<Integer> queue;
+
+    @Setup
+    public void setup() {
+        queue = new AioFullWaitQueue<>(1024);
+    }
+
+    @Benchmark
+    @Group("pair")
+    public Integer offerAndPoll() {
+        queue.offer(ELEMENT);
+        return queue.poll();
+    }
+
+    @Benchmark
+    @Group("spsc")
+    @GroupThreads(1)
+    public boolean offer() {
+        // 队列已满时offer会阻塞，迭代结束后消费者停止时生产者将无法退出
+        return !queue.isFull() && queue.offer(ELEMENT);
+    }
+
+    @Benchmark
+    @Group("spsc")
+    @GroupThreads(1)
+    public Integer poll() {
+        return queue.poll();
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ *    Copyright 2019 The aio-socket Project
+ *
+ *    The aio-socket Project Licenses this file to you under the Apache License,
+ *    Version 2.0 (the "License"); you may not use this file except in compliance
+ *    with the License. You may obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.mxd888.socket.benchmark;
+
+import io.github.mxd888.socket.Packet;
+import io.github.mxd888.socket.core.AioConfig;
+import io.github.mxd888.socket.core.ChannelContext;
+import io.github.mxd888.socket.core.WriteBuffer;
+import io.github.mxd888.socket.utils.pool.memory.MemoryBlock;
+import io.github.mxd888.socket.utils.pool.memory.MemoryUnit;
+
+import java.net.InetSocketAddress;
+import java.util.function.Consumer;
+
+/**
+ * 基准测试使用的内存通道上下文，不绑定Socket
+ * 编码逻辑与TCPChannelContext一致，输出流发布的数据直接回收，用于隔离测量编码与输出流本身的开销
+ *
+ * @author MDong
+ * @version 2.10.1.v20211002-RELEASE
+ */
+public class BenchmarkChannelContext extends ChannelContext {
+
+    /**
+     * 直接回收输出流中已发布的数据
+     */
+    private static final Consumer<WriteBuffer> DISCARD = writeBuffer -> {
+        MemoryUnit memoryUnit;
+        while ((memoryUnit = writeBuffer.poll()) != null) {
+            memoryUnit.clean();
+        }
+    };
+
+    private final AioConfig aioConfig;
+
+    public BenchmarkChannelContext(AioConfig aioConfig, MemoryBlock memoryBlock) {
+        this.aioConfig = aioConfig;
+        setWriteBuffer(memoryBlock, DISCARD, aioConfig.getWriteBufferSize(), aioConfig.getMaxWaitNum());
+    }
+
+    @Override
+    public MemoryUnit getReadBuffer() {
+        return null;
+    }
+
+    @Override
+    public void close(boolean immediate) {
+        getWriteBuffer().close();
+    }
+
+    @Override
+    public void signalRead(boolean flip) {
+    }
+
+    @Override
+    public InetSocketAddress getLocalAddress() {
+        return null;
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+        return null;
+    }
+
+    @Override
+    public AioConfig getAioConfig() {
+        return aioConfig;
+    }
+
+    @Override
+    protected void sendPacket(Packet packet, boolean isBlock) {
+        synchronized (this) {
+            getAioConfig().getHandler().encode(packet, this);
+        }
+        flush();
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ *    Copyright 2019 The aio-socket Project
+ *
+ *    The aio-socket Project Licenses this file to you under the Apache License,
+ *    Version 2.0 (the "License"); you may not use this file except in compliance
+ *    with the License. You may obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.mxd888.socket.benchmark;
+
+import io.github.mxd888.http.common.utils.ByteTree;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ByteTree.search 基准测试，模拟HTTP请求头名称的匹配
+ *
+ * @author MDong
+ * @version 2.10.1.v20211002-RELEASE
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ByteTreeBenchmark {
+
+    private static final String[] HEADERS = {"Host", "Connection", "Content-Length", "Content-Type",
+            "Accept", "Accept-Encoding", "Accept-Language", "User-Agent", "Cookie", "Upgrade"};
+
+    private static final ByteTree.EndMatcher COLON = endByte -> endByte == ':';
+
+    private ByteTree<String> byteTree;
+
+    private byte[] hit;
+
+    private byte[] miss;
+
+    @Setup
+    public void setup() {
+        byteTree = new ByteTree<>();
+        for (String header : HEADERS) {
+            byteTree.addNode(header, header);
+        }
+        hit = "Accept-Encoding: gzip".getBytes(StandardCharsets.US_ASCII);
+        miss = "X-Request-Identifier: 1".getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Benchmark
+    public ByteTree<String> searchHit() {
+        return byteTree.search(hit, 0, hit.length, COLON, false);
+    }
+
+    @Benchmark
+    public ByteTree<String> searchMiss() {
+        return byteTree.search(miss, 0, miss.length, COLON, false);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ *    Copyright 2019 The aio-socket Project
+ *
+ *    The aio-socket Project Licenses this file to you under the Apache License,
+ *    Version 2.0 (the "License"); you may not use this file except in compliance
+ *    with the License. You may obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.mxd888.socket.benchmark;
+
+import io.github.mxd888.socket.Packet;
+import io.github.mxd888.socket.ProtocolEnum;
+import io.github.mxd888.socket.codec.string.StringHandler;
+import io.github.mxd888.socket.codec.string.StringPacket;
+import io.github.mxd888.socket.core.Aio;
+import io.github.mxd888.socket.core.ChannelContext;
+import io.github.mxd888.socket.core.ClientBootstrap;
+import io.github.mxd888.socket.core.ServerBootstrap;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本机回环端到端回显基准测试
+ * 每次调用连续发送BATCH条消息并等待全部回显，覆盖编码、写、读、解码、处理的完整链路
+ *
+ * @author MDong
+ * @version 2.10.1.v20211002-RELEASE
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EchoBenchmark {
+
+    private static final int BATCH = 100;
+
+    private static final int PORT = 18899;
+
+    @Param({"64", "4096"})
+    private int messageSize;
+
+    @Param({"false", "true"})
+    private boolean eventLoop;
+
+    private ServerBootstrap serverBootstrap;
+
+    private ClientBootstrap clientBootstrap;
+
+    private ChannelContext channelContext;
+
+    private final Semaphore responses = new Semaphore(0);
+
+    private StringPacket packet;
+
+    @Setup
+    public void setup() throws IOException {
+        serverBootstrap = new ServerBootstrap("127.0.0.1", PORT, new StringHandler() {
+            @Override
+            public Packet handle(ChannelContext channelContext, StringPacket packet) {
+                return packet;
+            }
+        });
+        serverBootstrap.setReadBufferSize(8192);
+        if (eventLoop) {
+            serverBootstrap.setEventLoopModel();
+        }
+        serverBootstrap.start();
+        clientBootstrap = new ClientBootstrap("127.0.0.1", PORT, new StringHandler() {
+            @Override
+            public Packet handle(ChannelContext channelContext, StringPacket packet) {
+                responses.release();
+                return null;
+            }
+        });
+        channelContext = clientBootstrap.setReadBufferSize(8192).start();
+        // 客户端先发送，需指定协议以选择编码器
+        channelContext.setProtocol(ProtocolEnum.STRING);
+        packet = new StringPacket(new String(new char[messageSize]).replace('\0', 'a'));
+    }
+
+    @TearDown
+    public void tearDown() {
+        clientBootstrap.shutdownNow();
+        serverBootstrap.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void echo() throws InterruptedException {
+        for (int i = 0; i < BATCH; i++) {
+            Aio.send(channelContext, packet);
+        }
+        responses.acquire(BATCH);
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ *    Copyright 2019 The aio-socket Project
+ *
+ *    The aio-socket Project Licenses this file to you under the Apache License,
+ *    Version 2.0 (the "License"); you may not use this file except in compliance
+ *    with the License. You may obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.mxd888.socket.benchmark;
+
+import io.github.mxd888.socket.Packet;
+import io.github.mxd888.socket.codec.string.StringHandler;
+import io.github.mxd888.socket.codec.string.StringPacket;
+import io.github.mxd888.socket.core.AioConfig;
+import io.github.mxd888.socket.core.ChannelContext;
+import io.github.mxd888.socket.maintain.Groups;
+import io.github.mxd888.socket.utils.pool.memory.MemoryPool;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Groups.writeToGroup 群发基准测试，同一协议只编码一次，共享缓冲区投递到每个成员的输出流
+ *
+ * @author MDong
+ * @version 2.10.1.v20211002-RELEASE
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GroupsBenchmark {
+
+    private static final String GROUP = "benchmark";
+
+    @Param({"16", "256", "4096"})
+    private int members;
+
+    private MemoryPool memoryPool;
+
+    private Groups groups;
+
+    private final List<ChannelContext> channelContexts = new ArrayList<>();
+
+    private StringPacket packet;
+
+    @Setup
+    public void setup() {
+        memoryPool = new MemoryPool(16 * 1024 * 1024, 4, true);
+        AioConfig config = new AioConfig(true).setHandler(new StringHandler() {
+            @Override
+            public Packet handle(ChannelContext channelContext, StringPacket packet) {
+                return null;
+            }
+        });
+        groups = config.getGroups();
+        for (int i = 0; i < members; i++) {
+            ChannelContext channelContext = new BenchmarkChannelContext(config, memoryPool.allocateBufferPage());
+            channelContexts.add(channelContext);
+            groups.join(GROUP, channelContext);
+        }
+        packet = new StringPacket("hello aio-socket group broadcast");
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (ChannelContext channelContext : channelContexts) {
+            channelContext.close(true);
+        }
+        channelContexts.clear();
+        memoryPool.release();
+    }
+
+    @Benchmark
+    public void writeToGroup() {
+        groups.writeToGroup(GROUP, packet, null);
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ *    Copyright 2019 The aio-socket Project
+ *
+ *    The aio-socket Project Licenses this file to you under the Apache License,
+ *    Version 2.0 (the "License"); you may not use this file except in compliance
+ *    with the License. You may obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.mxd888.socket.benchmark;
+
+import io.github.mxd888.socket.maintain.ClusterIds;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ClusterIds 绑定与查询基准测试，对比ConcurrentHashMap与紧凑ID映射
+ * 初始化时绑定entries个纯数字用户ID并输出每个条目占用的堆内存（bytes/entry），用于验证紧凑映射的内存收益
+ *
+ * @author MDong
+ * @version 2.10.1.v20211002-RELEASE
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class IdRegistryBenchmark {
+
+    private static final long BASE_USER_ID = 10_000_000_000L;
+
+    @Param({"false", "true"})
+    private boolean compact;
+
+    @Param({"1000000"})
+    private int entries;
+
+    private ClusterIds clusterIds;
+
+    private String[] userIds;
+
+    @Setup
+    public void setup() {
+        long before = usedHeap();
+        clusterIds = new ClusterIds(compact);
+        for (int i = 0; i < entries; i++) {
+            clusterIds.join(String.valueOf(BASE_USER_ID + i), "node-" + (i & 7));
+        }
+        long after = usedHeap();
+        System.out.printf("%n[IdRegistry] compact=%s entries=%d bytes/entry=%.1f%n", compact, clusterIds.size(), (after - before) / (double) entries);
+        userIds = new String[1024];
+        for (int i = 0; i < userIds.length; i++) {
+            userIds[i] = String.valueOf(BASE_USER_ID + ThreadLocalRandom.current().nextInt(entries));
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String get() {
+        return clusterIds.get(userIds[ThreadLocalRandom.current().nextInt(userIds.length)]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String joinAndRemove() {
+        String userId = String.valueOf(BASE_USER_ID + entries + ThreadLocalRandom.current().nextInt(entries));
+        clusterIds.join(userId, "node-0");
+        clusterIds.remove(userId);
+        return userId;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ *    Copyright 2019 The aio-socket Project
+ *
+ *    The aio-socket Project Licenses this file to you under the Apache License,
+ *    Version 2.0 (the "License"); you may not use this file except in compliance
+ *    with the License. You may obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.mxd888.socket.benchmark;
+
+import io.github.mxd888.socket.utils.pool.memory.MemoryBlock;
+import io.github.mxd888.socket.utils.pool.memory.MemoryPool;
+import io.github.mxd888.socket.utils.pool.memory.MemoryPoolFactory;
+import io.github.mxd888.socket.utils.pool.memory.MemoryUnit;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MemoryBlock.allocate/clean 基准测试
+ * 覆盖空闲链表与伙伴分配两种模式，以及是否启用线程本地缓存
+ *
+ * @author MDong
+ * @version 2.10.1.v20211002-RELEASE
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MemoryBlockBenchmark {
+
+    @Param({"128", "2048", "16384"})
+    private int size;
+
+    @Param({"FREE_LIST", "BUDDY"})
+    private String allocator;
+
+    @Param({"0", "64"})
+    private int threadCache;
+
+    private MemoryPool memoryPool;
+
+    private MemoryBlock memoryBlock;
+
+    @Setup
+    public void setup() {
+        MemoryPoolFactory factory = "BUDDY".equals(allocator)
+                ? MemoryPoolFactory.buddy(4 * 1024 * 1024, 1, true)
+                : () -> new MemoryPool(4 * 1024 * 1024, 1, true);
+        memoryPool = factory.create();
+        memoryPool.enableThreadCache(threadCache, size);
+        memoryBlock = memoryPool.allocateBufferPage();
+    }
+
+    @TearDown
+    public void tearDown() {
+        memoryPool.release();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public MemoryUnit allocateAndClean() {
+        MemoryUnit memoryUnit = memoryBlock.allocate(size);
+        memoryUnit.clean();
+        return memoryUnit;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public MemoryUnit allocateAndCleanContended() {
+        MemoryUnit memoryUnit = memoryBlock.allocate(size);
+        memoryUnit.clean();
+        return memoryUnit;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ *    Copyright 2019 The aio-socket Project
+ *
+ *    The aio-socket Project Licenses this file to you under the Apache License,
+ *    Version 2.0 (the "License"); you may not use this file except in compliance
+ *    with the License. You may obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.mxd888.socket.benchmark;
+
+import io.github.mxd888.socket.Packet;
+import io.github.mxd888.socket.codec.string.StringHandler;
+import io.github.mxd888.socket.codec.string.StringPacket;
+import io.github.mxd888.socket.core.AioConfig;
+import io.github.mxd888.socket.core.ChannelContext;
+import io.github.mxd888.socket.exception.AioDecoderException;
+import io.github.mxd888.socket.utils.pool.memory.MemoryPool;
+import io.github.mxd888.socket.utils.pool.memory.MemoryUnit;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * StringHandler 编解码基准测试
+ *
+ * @author MDong
+ * @version 2.10.1.v20211002-RELEASE
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringHandlerBenchmark {
+
+    @Param({"16", "1024"})
+    private int length;
+
+    private MemoryPool memoryPool;
+
+    private BenchmarkChannelContext channelContext;
+
+    private StringHandler handler;
+
+    private StringPacket packet;
+
+    private MemoryUnit readBuffer;
+
+    private int frameLength;
+
+    @Setup
+    public void setup() {
+        handler = new StringHandler() {
+            @Override
+            public Packet handle(ChannelContext channelContext, StringPacket packet) {
+                return null;
+            }
+        };
+        memoryPool = new MemoryPool(8 * 1024 * 1024, 1, true);
+        AioConfig config = new AioConfig(true).setHandler(handler);
+        channelContext = new BenchmarkChannelContext(config, memoryPool.allocateBufferPage());
+        packet = new StringPacket(new String(new char[length]).replace('\0', 'a'));
+        byte[] data = packet.getData().getBytes(StandardCharsets.UTF_8);
+        frameLength = Integer.BYTES + data.length;
+        readBuffer = memoryPool.allocateBufferPage().allocate(frameLength);
+        ByteBuffer buffer = readBuffer.buffer();
+        buffer.clear();
+        buffer.putInt(data.length).put(data).flip();
+    }
+
+    @TearDown
+    public void tearDown() {
+        readBuffer.clean();
+        channelContext.close(true);
+        memoryPool.release();
+    }
+
+    @Benchmark
+    public void encode() {
+        handler.encode(packet, channelContext);
+        channelContext.getWriteBuffer().flush();
+    }
+
+    @Benchmark
+    public Packet decode() throws AioDecoderException {
+        readBuffer.buffer().position(0).limit(frameLength);
+        return handler.decode(readBuffer, channelContext);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ *    Copyright 2019 The aio-socket Project
+ *
+ *    The aio-socket Project Licenses this file to you under the Apache License,
+ *    Version 2.0 (the "License"); you may not use this file except in compliance
+ *    with the License. You may obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.mxd888.socket.benchmark;
+
+import io.github.mxd888.socket.utils.queue.AioFullNotifyQueue;
+import io.github.mxd888.socket.utils.queue.AioMpscQueue;
+import io.github.mxd888.socket.utils.queue.AioQueue;
+import io.github.mxd888.socket.utils.queue.AioSpscQueue;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 连接任务队列 offer/poll 基准测试，对比AioFullNotifyQueue与数组实现的SPSC/MPSC队列
+ * 使用-prof gc可观察每次操作的分配量
+ *
+ * @author MDong
+ * @version 2.10.1.v20211002-RELEASE
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TaskQueueBenchmark {
+
+    private static final Integer ELEMENT = 1;
+
+    @Param({"notify", "spsc", "mpsc"})
+    private String type;
+
+    private AioQueue<Integer> queue;
+
+    @Setup
+    public void setup() {
+        switch (type) {
+            case "spsc":
+                queue = new AioSpscQueue<>(1024);
+                break;
+            case "mpsc":
+                queue = new AioMpscQueue<>(1024);
+                break;
+            default:
+                queue = new AioFullNotifyQueue<>(1024);
+                break;
+        }
+    }
+
+    @Benchmark
+    @Group("pair")
+    public Integer offerAndPoll() {
+        queue.offer(ELEMENT);
+        return queue.poll();
+    }
+
+    @Benchmark
+    @Group("spsc")
+    @GroupThreads(1)
+    public boolean offer() {
+        return queue.offer(ELEMENT);
+    }
+
+    @Benchmark
+    @Group("spsc")
+    @GroupThreads(1)
+    public Integer poll() {
+        return queue.poll();
+    }
+}
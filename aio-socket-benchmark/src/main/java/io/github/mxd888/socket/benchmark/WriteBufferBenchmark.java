@@ -0,0 +1,85 @@
+/*
+ *    Copyright 2019 The aio-socket Project
+ *
+ *    The aio-socket Project Licenses this file to you under the Apache License,
+ *    Version 2.0 (the "License"); you may not use this file except in compliance
+ *    with the License. You may obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.mxd888.socket.benchmark;
+
+import io.github.mxd888.socket.core.AioConfig;
+import io.github.mxd888.socket.core.WriteBuffer;
+import io.github.mxd888.socket.utils.pool.memory.MemoryPool;
+import io.github.mxd888.socket.utils.pool.memory.MemoryUnit;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WriteBuffer.write/flush/poll 基准测试，发布到待输出队列的数据由通道直接回收
+ *
+ * @author MDong
+ * @version 2.10.1.v20211002-RELEASE
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WriteBufferBenchmark {
+
+    @Param({"16", "512", "8192"})
+    private int messageSize;
+
+    private MemoryPool memoryPool;
+
+    private BenchmarkChannelContext channelContext;
+
+    private WriteBuffer writeBuffer;
+
+    private byte[] message;
+
+    @Setup
+    public void setup() {
+        memoryPool = new MemoryPool(8 * 1024 * 1024, 1, true);
+        AioConfig config = new AioConfig(true).setWriteBufferSize(2048);
+        channelContext = new BenchmarkChannelContext(config, memoryPool.allocateBufferPage());
+        writeBuffer = channelContext.getWriteBuffer();
+        message = new byte[messageSize];
+    }
+
+    @TearDown
+    public void tearDown() {
+        channelContext.close(true);
+        memoryPool.release();
+    }
+
+    @Benchmark
+    public void writeAndFlush() throws IOException {
+        writeBuffer.writeInt(message.length);
+        writeBuffer.write(message);
+        writeBuffer.flush();
+    }
+
+    /**
+     * 不经过flush，直接从暂存区取出，衡量暂存区本身的开销
+     */
+    @Benchmark
+    public void writeAndPoll() throws IOException {
+        writeBuffer.write(message);
+        MemoryUnit memoryUnit = writeBuffer.poll();
+        if (memoryUnit != null) {
+            memoryUnit.clean();
+        }
+    }
+}
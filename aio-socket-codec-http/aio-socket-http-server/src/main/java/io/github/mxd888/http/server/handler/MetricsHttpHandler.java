@@ -0,0 +1,36 @@
+package io.github.mxd888.http.server.handler;
+
+import io.github.mxd888.http.common.enums.HeaderNameEnum;
+import io.github.mxd888.http.server.HttpRequest;
+import io.github.mxd888.http.server.HttpResponse;
+import io.github.mxd888.http.server.HttpServerHandler;
+import io.github.mxd888.socket.metrics.MetricsRegistry;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 以Prometheus文本格式输出指标，通常挂载于HttpRouteHandler的/metrics路由：
+ * routeHandle.route("/metrics", new MetricsHttpHandler(metricsPlugin.getRegistry()))
+ *
+ * @author MDong
+ * @version 2.10.1.v20211002-RELEASE
+ */
+public final class MetricsHttpHandler extends HttpServerHandler {
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final MetricsRegistry registry;
+
+    public MetricsHttpHandler(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void handle(HttpRequest request, HttpResponse response) throws IOException {
+        byte[] body = registry.scrape().getBytes(StandardCharsets.UTF_8);
+        response.setHeader(HeaderNameEnum.CONTENT_TYPE.getName(), CONTENT_TYPE);
+        response.setContentLength(body.length);
+        response.write(body);
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ *    Copyright 2019 The aio-socket Project
+ *
+ *    The aio-socket Project Licenses this file to you under the Apache License,
+ *    Version 2.0 (the "License"); you may not use this file except in compliance
+ *    with the License. You may obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.mxd888.socket;
+
+/**
+ * 连接数或内存占用超过上限时服务端的接入策略，回落至下限后恢复正常接入
+ *
+ * @author MDong
+ * @version 2.10.1.v20211002-RELEASE
+ */
+public enum AdmissionPolicyEnum {
+
+    /**
+     * 暂停accept，新连接留在操作系统的backlog中等待，backlog满后由操作系统拒绝
+     */
+    PAUSE,
+
+    /**
+     * 继续accept，新连接写出拒绝响应（可为空）后立即关闭
+     */
+    REJECT
+}
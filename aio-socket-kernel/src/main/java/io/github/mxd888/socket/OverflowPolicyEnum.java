@@ -0,0 +1,43 @@
+/*
+ *    Copyright 2019 The aio-socket Project
+ *
+ *    The aio-socket Project Licenses this file to you under the Apache License,
+ *    Version 2.0 (the "License"); you may not use this file except in compliance
+ *    with the License. You may obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.mxd888.socket;
+
+/**
+ * 输出流待发送队列已满时的处理策略，均不会阻塞写入线程
+ *
+ * @author MDong
+ * @version 2.10.1.v20211002-RELEASE
+ */
+public enum OverflowPolicyEnum {
+
+    /**
+     * 拒绝写入，回收当前分片并抛出异常
+     */
+    REJECT,
+
+    /**
+     * 丢弃队列中最早的分片，为当前分片腾出位置
+     * 只丢弃由完整消息组成的分片（内核编码后发布的分片与群发的共享缓冲区）；
+     * 业务直接写入并flush的数据无法确认消息边界，不会被丢弃，队头为这类分片时按REJECT处理
+     */
+    DROP_OLDEST,
+
+    /**
+     * 溢出的分片暂存到溢出队列中，待输出队列消费完后按序输出
+     * 溢出队列的字节数受AioConfig.writeSpillLimit限制，超过后按REJECT处理
+     */
+    SPILL
+}
@@ -46,6 +46,16 @@ public class Packet implements Serializable {
      */
     private String resp;
 
+    /**
+     * 同步消息序号，大于0时ACKPlugin以该序号跟踪确认
+     */
+    private long reqSeq;
+
+    /**
+     * 同步消息响应序号，对应请求方的reqSeq
+     */
+    private long respSeq;
+
     /**
      * 发送者ID
      */
@@ -85,6 +95,22 @@ public class Packet implements Serializable {
         this.resp = resp;
     }
 
+    public long getReqSeq() {
+        return reqSeq;
+    }
+
+    public void setReqSeq(long reqSeq) {
+        this.reqSeq = reqSeq;
+    }
+
+    public long getRespSeq() {
+        return respSeq;
+    }
+
+    public void setRespSeq(long respSeq) {
+        this.respSeq = respSeq;
+    }
+
     public String getFromId() {
         return fromId;
     }
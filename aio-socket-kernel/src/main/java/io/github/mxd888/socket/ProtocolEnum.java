@@ -45,6 +45,11 @@ public enum ProtocolEnum {
      */
     PROTOBUF(1004, "protobuf protocol"),
 
+    /**
+     * 集群节点间链路协议
+     */
+    CLUSTER(1005, "cluster protocol"),
+
     // ---------------------以下是留给用户的私有化TCP协议枚举类，共五个---------------------
 
     PRIVATE_TCP(2000, "private TCP protocol"),
@@ -66,6 +66,11 @@ public enum StateMachineEnum {
     /**
      * 拒绝接受连接,仅Server端有效
      */
-    REJECT_ACCEPT
+    REJECT_ACCEPT,
+
+    /**
+     * 可写状态发生变化，待输出数据超过高水位时变为不可写并暂停读，回落至低水位后恢复，通过isWritable()获取当前状态
+     */
+    WRITABILITY_CHANGED
 
 }
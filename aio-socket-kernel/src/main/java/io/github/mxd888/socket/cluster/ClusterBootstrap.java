@@ -1,10 +1,27 @@
+/*
+ *    Copyright 2019 The aio-socket Project
+ *
+ *    The aio-socket Project Licenses this file to you under the Apache License,
+ *    Version 2.0 (the "License"); you may not use this file except in compliance
+ *    with the License. You may obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
 package io.github.mxd888.socket.cluster;
 
-import io.github.mxd888.socket.core.Aio;
 import io.github.mxd888.socket.Packet;
+import io.github.mxd888.socket.ProtocolEnum;
+import io.github.mxd888.socket.core.Aio;
 import io.github.mxd888.socket.core.AioConfig;
 import io.github.mxd888.socket.core.ChannelContext;
-import io.github.mxd888.socket.core.ClientBootstrap;
+import io.github.mxd888.socket.core.ServerBootstrap;
+import io.github.mxd888.socket.maintain.ClusterIds;
 import io.github.mxd888.socket.utils.cache.redis.RedisCache;
 import org.redisson.Redisson;
 import org.redisson.api.RedissonClient;
@@ -14,10 +31,29 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.Arrays;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 集群服务启动器
+ * 每个节点监听一个集群端口，并与hosts中的其他节点各建立一条持久链路；
+ * 用户绑定、解绑时通过链路广播给其他节点，各节点据此维护用户到节点的路由表（ClusterIds），
+ * 发往非本节点用户的消息包经目标节点的链路按批量大小或微秒级期限合并为一帧转发，
+ * 目标节点拆帧后直接投递给本地用户或本地群组；
+ * 各节点还同步本节点有成员的群组，群发只发往有该群组成员的节点，每个节点只收到一份并在本地扇出；
+ * 入站链路须先发送HELLO，声明的节点ID必须在hosts中且共享密钥一致（配置了密钥时），之后的消息均以HELLO登记的节点ID处理，
+ * 未通过校验的链路被关闭；未配置密钥时集群端口应只对集群节点开放；
+ * 转发的消息包由指定协议的处理器编码，接收节点以同一协议的处理器解码，该协议的编解码须对称
  *
  * @author MDong
  * @version 2.10.1.v20211002-RELEASE
@@ -26,6 +62,26 @@ public class ClusterBootstrap {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ClusterBootstrap.class);
 
+    /**
+     * SYNC消息每次携带的用户数量
+     */
+    private static final int SYNC_BATCH = 1000;
+
+    /**
+     * 默认的单帧最大字节数
+     */
+    private static final int DEFAULT_MAX_FRAME_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * 本节点集群服务IP
+     */
+    private final String host;
+
+    /**
+     * 本节点集群服务端口
+     */
+    private final int port;
+
     /**
      * 集群服务器IP+port
      */
@@ -36,34 +92,507 @@ public class ClusterBootstrap {
      */
     private final AioConfig config;
 
-    public ClusterBootstrap(String[] hosts, AioConfig config) {
+    /**
+     * 本节点ID，即host:port
+     */
+    private final String nodeId;
+
+    /**
+     * 到其他节点的链路，以节点ID为键
+     */
+    private final Map<String, ClusterLink> links = new ConcurrentHashMap<>();
+
+    /**
+     * 各对端节点的链路统计，以节点ID为键
+     */
+    private final Map<String, ClusterLinkMetrics> metrics = new ConcurrentHashMap<>();
+
+    /**
+     * 其他节点主动建立的链路，以节点ID为键
+     */
+    private final Map<String, ChannelContext> inbounds = new ConcurrentHashMap<>();
+
+    /**
+     * 群组到有其成员的其他节点ID的映射
+     */
+    private final Map<String, Set<String>> groupNodes = new ConcurrentHashMap<>();
+
+    /**
+     * 本节点群组状态的通知锁，保证通知按读取状态的先后发出
+     */
+    private final Object groupStateLock = new Object();
+
+    /**
+     * 到期发送线程
+     */
+    private final ScheduledExecutorService flushExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "aio-socket-cluster-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 单帧最多合并的消息包数量，积压达到该值时立即发送
+     */
+    private int batchSize = 256;
+
+    /**
+     * 消息包在链路上等待合并的最长时间（微秒）
+     */
+    private long flushDelayMicros = 200;
+
+    /**
+     * 单帧最大字节数，收到超出该值的帧时关闭链路
+     */
+    private int maxFrameSize = DEFAULT_MAX_FRAME_SIZE;
+
+    /**
+     * 集群共享密钥，为null时不校验
+     */
+    private String secret;
+
+    /**
+     * 建立链路、重连使用的线程，连接过程会阻塞
+     */
+    private final ExecutorService connectExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "aio-socket-cluster-connect");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 集群端口服务
+     */
+    private ServerBootstrap clusterServer;
+
+    /**
+     * 集群服务启动器
+     *
+     * @param host   本节点集群服务IP
+     * @param port   本节点集群服务端口
+     * @param hosts  集群全部节点的IP:port，可包含本节点
+     * @param config 用户服务的配置信息
+     */
+    public ClusterBootstrap(String host, int port, String[] hosts, AioConfig config) {
+        this.host = host;
+        this.port = port;
         this.hosts = hosts;
         this.config = config;
+        this.nodeId = host + ":" + port;
     }
 
     public void start() throws IOException {
-        for (String s: hosts
-             ) {
+        config.setClusterBootstrap(this);
+        config.getGroups().setGroupStateListener(this::onLocalGroupChanged);
+        clusterServer = new ServerBootstrap(host, port, new ClusterHandler(this, null));
+        clusterServer.start();
+        for (String s : hosts) {
             String[] split = s.split(":");
-            System.out.println(Arrays.toString(split));
-//            ClientBootstrap clientBootstrap = new ClientBootstrap(split[0], Integer.parseInt(split[1]), config.getHandler());
-//            ChannelContext start = clientBootstrap.start();
-//            Packet packet = new Packet();
-//            packet.setToId(split[0]);
-//            // 写入自己的IP
-//            packet.setFromId(this.config.getHost());
-//            // 设置内核集群消息标识位
-//            packet.setEntity(new ClusterEntity(true));
-//            // 向其他服务器注册自己
-//            Aio.send(start, packet);
-            // 绑定通道ID
-//            start.setId(split[0]);
-            // 绑定到集群服务器组
-//            this.config.getGroups().join("ClusterServer", start);
-            // 将通道与ID对应关系进行绑定
-//            this.config.getIds().join(start.getId(), start);
+            if (split.length != 2) {
+                throw new IOException("illegal cluster host: " + s);
+            }
+            String peerId = split[0] + ":" + split[1];
+            if (peerId.equals(nodeId) || links.containsKey(peerId)) {
+                continue;
+            }
+            ClusterLink link = new ClusterLink(this, peerId, split[0], Integer.parseInt(split[1]));
+            links.put(peerId, link);
+            connectExecutor.execute(link::connect);
         }
+    }
+
+    public void shutdown() {
+        config.setClusterBootstrap(null);
+        config.getGroups().setGroupStateListener(null);
+        for (ClusterLink link : links.values()) {
+            link.close();
+        }
+        links.clear();
+        connectExecutor.shutdownNow();
+        flushExecutor.shutdownNow();
+        if (clusterServer != null) {
+            clusterServer.shutdown();
+        }
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * 设置批量转发参数，需在start前调用
+     *
+     * @param batchSize        单帧最多合并的消息包数量，积压达到该值时立即发送
+     * @param flushDelayMicros 消息包等待合并的最长时间（微秒）
+     * @return                 this
+     */
+    public ClusterBootstrap setBatch(int batchSize, long flushDelayMicros) {
+        if (batchSize <= 0 || flushDelayMicros <= 0) {
+            throw new IllegalArgumentException("batchSize and flushDelayMicros should bigger than zero");
+        }
+        this.batchSize = batchSize;
+        this.flushDelayMicros = flushDelayMicros;
+        return this;
+    }
+
+    /**
+     * 设置单帧最大字节数，各节点应一致，需在start前调用
+     *
+     * @param maxFrameSize 单帧最大字节数
+     * @return             this
+     */
+    public ClusterBootstrap setMaxFrameSize(int maxFrameSize) {
+        if (maxFrameSize <= 0) {
+            throw new IllegalArgumentException("maxFrameSize should bigger than zero");
+        }
+        this.maxFrameSize = maxFrameSize;
+        return this;
+    }
+
+    /**
+     * 设置集群共享密钥，各节点应一致，对端HELLO携带的密钥不一致时关闭其链路，需在start前调用
+     *
+     * @param secret 共享密钥
+     * @return       this
+     */
+    public ClusterBootstrap setSecret(String secret) {
+        this.secret = secret;
+        return this;
+    }
+
+    public int getMaxFrameSize() {
+        return maxFrameSize;
+    }
+
+    String getSecret() {
+        return secret;
+    }
+
+    AioConfig getConfig() {
+        return config;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public long getFlushDelayMicros() {
+        return flushDelayMicros;
+    }
+
+    /**
+     * 获取到指定节点的链路统计
+     *
+     * @param peerId 节点ID，即host:port
+     * @return       链路统计，节点未知时返回null
+     */
+    public ClusterLinkMetrics getLinkMetrics(String peerId) {
+        return metrics.get(peerId);
+    }
 
+    /**
+     * 获取全部链路统计
+     *
+     * @return 节点ID到链路统计的只读视图
+     */
+    public Map<String, ClusterLinkMetrics> getLinkMetrics() {
+        return Collections.unmodifiableMap(metrics);
+    }
+
+    /**
+     * 本节点用户上线，通知其他节点
+     *
+     * @param userId 用户ID
+     */
+    public void bind(String userId) {
+        config.getClusterIds().join(userId, nodeId);
+        broadcast(ClusterCommandEnum.BIND, Collections.singletonList(userId));
+    }
+
+    /**
+     * 本节点用户下线，通知其他节点
+     *
+     * @param userId 用户ID
+     */
+    public void unbind(String userId) {
+        ClusterIds clusterIds = config.getClusterIds();
+        if (nodeId.equals(clusterIds.get(userId))) {
+            clusterIds.remove(userId);
+            broadcast(ClusterCommandEnum.UNBIND, Collections.singletonList(userId));
+        }
+    }
+
+    /**
+     * 将消息包转发到接收方所在的节点，仅适用于只添加了一个处理器的服务，以该处理器的协议编码
+     *
+     * @param userId 接收方用户ID
+     * @param packet 消息包
+     * @return       接收方不在其他节点或链路积压过多时返回false
+     * @throws IllegalStateException 添加了多个处理器，无法确定协议
+     */
+    public boolean forward(String userId, Packet packet) {
+        return forward(userId, packet, soleProtocol());
+    }
+
+    /**
+     * 将消息包转发到接收方所在的节点
+     *
+     * @param userId   接收方用户ID
+     * @param packet   消息包
+     * @param protocol 链路上编解码消息包使用的协议
+     * @return         接收方不在其他节点或链路积压过多时返回false
+     */
+    public boolean forward(String userId, Packet packet, ProtocolEnum protocol) {
+        String serverId = config.getClusterIds().get(userId);
+        if (serverId == null || serverId.equals(nodeId)) {
+            return false;
+        }
+        ClusterLink link = links.get(serverId);
+        return link != null && link.forward(new ClusterMessage.Forward(null, userId, protocol, packet));
+    }
+
+    /**
+     * 将群组消息转发到有该群组成员的其他节点，仅适用于只添加了一个处理器的服务，以该处理器的协议编码
+     *
+     * @param groupId 群组ID
+     * @param packet  消息包
+     * @throws IllegalStateException 添加了多个处理器，无法确定协议
+     */
+    public void forwardToGroup(String groupId, Packet packet) {
+        forwardToGroup(groupId, packet, soleProtocol());
+    }
+
+    /**
+     * 未指定协议时使用唯一处理器的协议；多协议服务中按首个处理器编码会使其他协议的用户收到无法解析的数据，因此直接拒绝
+     */
+    private ProtocolEnum soleProtocol() {
+        ProtocolEnum protocol = config.getPlugins().getSoleProtocol();
+        if (protocol == null) {
+            throw new IllegalStateException("multiple handlers registered, the forwarding protocol must be specified");
+        }
+        return protocol;
+    }
+
+    /**
+     * 将群组消息转发到有该群组成员的其他节点，每个节点一份，由各节点投递给本地的群组成员
+     *
+     * @param groupId  群组ID
+     * @param packet   消息包
+     * @param protocol 链路上编解码消息包使用的协议
+     */
+    public void forwardToGroup(String groupId, Packet packet, ProtocolEnum protocol) {
+        Set<String> nodes = groupNodes.get(groupId);
+        if (nodes == null) {
+            return;
+        }
+        ClusterMessage.Forward forward = null;
+        for (String node : nodes) {
+            ClusterLink link = links.get(node);
+            if (link != null) {
+                if (forward == null) {
+                    forward = new ClusterMessage.Forward(groupId, null, protocol, packet);
+                }
+                link.forward(forward);
+            }
+        }
+    }
+
+    /**
+     * 链路建立后向对端同步本节点的全部用户与有成员的群组
+     *
+     * @param link 链路
+     */
+    void sync(ClusterLink link) {
+        List<String> userIds = new ArrayList<>();
+        config.getClusterIds().forEachUser(nodeId, userIds::add);
+        for (int i = 0; i < userIds.size(); i += SYNC_BATCH) {
+            ClusterMessage message = new ClusterMessage(ClusterCommandEnum.SYNC, nodeId);
+            message.setUserIds(new ArrayList<>(userIds.subList(i, Math.min(i + SYNC_BATCH, userIds.size()))));
+            link.send(message);
+        }
+        // 持有通知锁，避免同步期间的群组变化先于同步内容到达
+        synchronized (groupStateLock) {
+            List<String> groupIds = new ArrayList<>(config.getGroups().groupIds());
+            for (int i = 0; i < groupIds.size(); i += SYNC_BATCH) {
+                ClusterMessage message = new ClusterMessage(ClusterCommandEnum.GROUP_SYNC, nodeId);
+                message.setGroupIds(new ArrayList<>(groupIds.subList(i, Math.min(i + SYNC_BATCH, groupIds.size()))));
+                link.send(message);
+            }
+        }
+    }
+
+    /**
+     * 本节点的群组创建或清空，以群组的最新状态通知其他节点
+     *
+     * @param groupId 群组ID
+     */
+    private void onLocalGroupChanged(String groupId) {
+        synchronized (groupStateLock) {
+            ClusterCommandEnum command = config.getGroups().contains(groupId) ? ClusterCommandEnum.GROUP_JOIN : ClusterCommandEnum.GROUP_LEAVE;
+            for (ClusterLink link : links.values()) {
+                ClusterMessage message = new ClusterMessage(command, nodeId);
+                message.setGroupIds(Collections.singletonList(groupId));
+                link.send(message);
+            }
+        }
+    }
+
+    void onMessage(ChannelContext channelContext, ClusterMessage message) {
+        // 对端只在自己建立的出站链路上发送消息，本节点只处理入站链路上的消息
+        if (!channelContext.getAioConfig().isServer()) {
+            return;
+        }
+        if (message.getCommand() == ClusterCommandEnum.HELLO) {
+            hello(channelContext, message);
+            return;
+        }
+        String peerId = channelContext.getId();
+        if (peerId == null || inbounds.get(peerId) != channelContext) {
+            LOGGER.warn("aio-socket cluster reject {} from a channel without HELLO, closing", message.getCommand());
+            channelContext.close();
+            return;
+        }
+        ClusterIds clusterIds = config.getClusterIds();
+        switch (message.getCommand()) {
+            case SYNC:
+            case BIND:
+                clusterIds.joinAll(message.getUserIds(), peerId);
+                break;
+            case UNBIND:
+                for (String userId : message.getUserIds()) {
+                    if (peerId.equals(clusterIds.get(userId))) {
+                        clusterIds.remove(userId);
+                    }
+                }
+                break;
+            case FORWARD:
+                metrics(peerId).frameReceived(message.getForwards().size());
+                for (ClusterMessage.Forward forward : message.getForwards()) {
+                    deliver(peerId, forward);
+                }
+                break;
+            case GROUP_SYNC:
+            case GROUP_JOIN:
+                for (String groupId : message.getGroupIds()) {
+                    groupNodes.computeIfAbsent(groupId, key -> ConcurrentHashMap.newKeySet()).add(peerId);
+                }
+                break;
+            case GROUP_LEAVE:
+                for (String groupId : message.getGroupIds()) {
+                    removeNodeGroup(groupId, peerId);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 校验并登记入站链路：节点ID须为hosts中的其他节点，配置了密钥时密钥须一致，每条链路只能声明一次
+     */
+    private void hello(ChannelContext channelContext, ClusterMessage message) {
+        String peerId = message.getNodeId();
+        if (peerId == null || channelContext.getId() != null || !links.containsKey(peerId) || !checkSecret(message.getSecret())) {
+            LOGGER.warn("aio-socket cluster reject HELLO as {}, closing", peerId);
+            channelContext.close();
+            return;
+        }
+        channelContext.setId(peerId);
+        inbounds.put(peerId, channelContext);
+        // 对端重连后会重新同步群组
+        removeNodeGroups(peerId);
+    }
+
+    private boolean checkSecret(String received) {
+        if (secret == null) {
+            return true;
+        }
+        return received != null && MessageDigest.isEqual(secret.getBytes(StandardCharsets.UTF_8), received.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 链路关闭：对端主动建立的链路关闭时认为对端下线，清除其用户与群组；本节点建立的链路关闭时重连
+     *
+     * @param channelContext 链路通道
+     */
+    void onChannelClosed(ChannelContext channelContext) {
+        if (channelContext.getAioConfig().isServer()) {
+            String peerId = channelContext.getId();
+            // 对端已重连时旧链路的关闭事件不再清除其用户与群组
+            if (peerId != null && inbounds.remove(peerId, channelContext)) {
+                config.getClusterIds().removeServer(peerId);
+                removeNodeGroups(peerId);
+            }
+            return;
+        }
+        for (ClusterLink link : links.values()) {
+            link.onClosed(channelContext);
+        }
+    }
+
+    /**
+     * 出站链路的可写状态变化
+     *
+     * @param channelContext 出站链路通道
+     */
+    void onWritabilityChanged(ChannelContext channelContext) {
+        for (ClusterLink link : links.values()) {
+            link.onWritabilityChanged(channelContext);
+        }
+    }
+
+    /**
+     * 拆帧后投递给本地用户或本地群组
+     */
+    private void deliver(String fromNode, ClusterMessage.Forward forward) {
+        Packet packet = forward.getPacket();
+        if (forward.getGroupId() != null) {
+            config.getGroups().writeToGroup(forward.getGroupId(), packet, null);
+            return;
+        }
+        ChannelContext target = config.getIds().get(forward.getToId());
+        if (target != null && !target.isInvalid()) {
+            Aio.send(target, packet);
+        } else if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("aio-socket cluster drop packet from {}, user {} is not online", fromNode, forward.getToId());
+        }
+    }
+
+    private void removeNodeGroups(String peerId) {
+        for (String groupId : groupNodes.keySet()) {
+            removeNodeGroup(groupId, peerId);
+        }
+    }
+
+    private void removeNodeGroup(String groupId, String peerId) {
+        groupNodes.computeIfPresent(groupId, (key, nodes) -> {
+            nodes.remove(peerId);
+            return nodes.isEmpty() ? null : nodes;
+        });
+    }
+
+    ClusterLinkMetrics metrics(String peerId) {
+        return metrics.computeIfAbsent(peerId, ClusterLinkMetrics::new);
+    }
+
+    void scheduleFlush(Runnable task) {
+        if (!flushExecutor.isShutdown()) {
+            flushExecutor.schedule(task, flushDelayMicros, TimeUnit.MICROSECONDS);
+        }
+    }
+
+    void execute(Runnable task) {
+        if (!connectExecutor.isShutdown()) {
+            connectExecutor.execute(task);
+        }
+    }
+
+    private void broadcast(ClusterCommandEnum command, List<String> userIds) {
+        for (ClusterLink link : links.values()) {
+            ClusterMessage message = new ClusterMessage(command, nodeId);
+            message.setUserIds(userIds);
+            link.send(message);
+        }
     }
 
     private void init() {
@@ -0,0 +1,65 @@
+/*
+ *    Copyright 2019 The aio-socket Project
+ *
+ *    The aio-socket Project Licenses this file to you under the Apache License,
+ *    Version 2.0 (the "License"); you may not use this file except in compliance
+ *    with the License. You may obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.mxd888.socket.cluster;
+
+/**
+ * 集群节点间链路的指令
+ *
+ * @author MDong
+ * @version 2.10.1.v20211002-RELEASE
+ */
+public enum ClusterCommandEnum {
+
+    /**
+     * 出站链路建立后向对端声明本节点ID
+     */
+    HELLO,
+
+    /**
+     * 全量同步本节点已绑定的用户，链路建立或重连后发送
+     */
+    SYNC,
+
+    /**
+     * 本节点新绑定的用户
+     */
+    BIND,
+
+    /**
+     * 本节点解绑的用户
+     */
+    UNBIND,
+
+    /**
+     * 转发给对端节点上用户或群组的消息，一条消息合并多个消息包
+     */
+    FORWARD,
+
+    /**
+     * 全量同步本节点有成员的群组，链路建立或重连后发送
+     */
+    GROUP_SYNC,
+
+    /**
+     * 群组在本节点有了首个成员
+     */
+    GROUP_JOIN,
+
+    /**
+     * 群组在本节点已没有成员
+     */
+    GROUP_LEAVE
+}
@@ -0,0 +1,366 @@
+/*
+ *    Copyright 2019 The aio-socket Project
+ *
+ *    The aio-socket Project Licenses this file to you under the Apache License,
+ *    Version 2.0 (the "License"); you may not use this file except in compliance
+ *    with the License. You may obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.mxd888.socket.cluster;
+
+import io.github.mxd888.socket.Packet;
+import io.github.mxd888.socket.ProtocolEnum;
+import io.github.mxd888.socket.StateMachineEnum;
+import io.github.mxd888.socket.core.ChannelContext;
+import io.github.mxd888.socket.core.WriteBuffer;
+import io.github.mxd888.socket.exception.AioDecoderException;
+import io.github.mxd888.socket.intf.AioHandler;
+import io.github.mxd888.socket.utils.AIOUtil;
+import io.github.mxd888.socket.utils.pool.memory.MemoryUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 集群节点间链路的编解码与消息处理器
+ * 帧格式为 4字节长度 + 消息体，长度必须在(0, maxFrameSize]内，否则关闭链路；
+ * 消息体为 1字节指令 + 节点ID + 指令内容，字符串以4字节长度（-1表示null）+ UTF-8编码，列表以4字节数量开头；
+ * FORWARD的每条转发记录为 群组ID + 用户ID + 4字节协议编码（0表示未命名协议）+ 4字节长度 + 按该协议处理器编码的消息包；
+ * 不使用Java序列化，格式错误的帧同样关闭链路；
+ * FORWARD帧先计算长度，再将帧头与各消息包的编码结果直接写入链路输出流，不经过中间字节数组
+ *
+ * @author MDong
+ * @version 2.10.1.v20211002-RELEASE
+ */
+class ClusterHandler extends AioHandler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClusterHandler.class);
+
+    private static final ClusterCommandEnum[] COMMANDS = ClusterCommandEnum.values();
+
+    private final ClusterBootstrap clusterBootstrap;
+
+    /**
+     * 出站链路的统计，入站链路为null
+     */
+    private final ClusterLinkMetrics metrics;
+
+    ClusterHandler(ClusterBootstrap clusterBootstrap, ClusterLinkMetrics metrics) {
+        this.clusterBootstrap = clusterBootstrap;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Packet handle(ChannelContext channelContext, Packet packet) {
+        clusterBootstrap.onMessage(channelContext, (ClusterMessage) packet);
+        return null;
+    }
+
+    @Override
+    public Packet decode(MemoryUnit memoryUnit, ChannelContext channelContext) throws AioDecoderException {
+        ByteBuffer buffer = memoryUnit.buffer();
+        if (buffer.remaining() < Integer.BYTES) {
+            return null;
+        }
+        buffer.mark();
+        int length = buffer.getInt();
+        if (length <= 0 || length > clusterBootstrap.getMaxFrameSize()) {
+            channelContext.close();
+            throw new AioDecoderException("illegal cluster frame length: " + length);
+        }
+        byte[] bytes = AIOUtil.getBytesFromByteBuffer(length, memoryUnit, channelContext);
+        if (bytes == null) {
+            buffer.reset();
+            return null;
+        }
+        try {
+            return read(ByteBuffer.wrap(bytes), channelContext);
+        } catch (AioDecoderException e) {
+            channelContext.close();
+            throw e;
+        } catch (RuntimeException e) {
+            channelContext.close();
+            throw new AioDecoderException("cluster message decode failed", e);
+        }
+    }
+
+    @Override
+    public void encode(Packet packet, ChannelContext channelContext) {
+        ClusterMessage message = (ClusterMessage) packet;
+        try {
+            if (message.getCommand() == ClusterCommandEnum.FORWARD) {
+                writeForwards(message, channelContext);
+                return;
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(message.getCommand().ordinal());
+            writeString(out, message.getNodeId());
+            switch (message.getCommand()) {
+                case HELLO:
+                    writeString(out, message.getSecret());
+                    break;
+                case SYNC:
+                case BIND:
+                case UNBIND:
+                    writeStrings(out, message.getUserIds());
+                    break;
+                case GROUP_SYNC:
+                case GROUP_JOIN:
+                case GROUP_LEAVE:
+                    writeStrings(out, message.getGroupIds());
+                    break;
+                default:
+                    break;
+            }
+            if (bytes.size() > clusterBootstrap.getMaxFrameSize()) {
+                throw new IllegalStateException("cluster frame size " + bytes.size() + " exceeds maxFrameSize");
+            }
+            WriteBuffer writeBuffer = channelContext.getWriteBuffer();
+            writeBuffer.writeInt(bytes.size());
+            writeBuffer.write(bytes.toByteArray());
+            if (metrics != null) {
+                metrics.bytesSent(Integer.BYTES + bytes.size());
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("cluster message encode failed", e);
+        }
+    }
+
+    @Override
+    public void stateEvent(ChannelContext channelContext, StateMachineEnum stateMachineEnum, Throwable throwable) {
+        super.stateEvent(channelContext, stateMachineEnum, throwable);
+        if (stateMachineEnum == StateMachineEnum.CHANNEL_CLOSED) {
+            clusterBootstrap.onChannelClosed(channelContext);
+        } else if (stateMachineEnum == StateMachineEnum.WRITABILITY_CHANGED && metrics != null) {
+            clusterBootstrap.onWritabilityChanged(channelContext);
+        }
+    }
+
+    @Override
+    public ProtocolEnum name() {
+        return ProtocolEnum.CLUSTER;
+    }
+
+    private ClusterMessage read(ByteBuffer buffer, ChannelContext channelContext) throws AioDecoderException {
+        int command = buffer.get() & 0xFF;
+        if (command >= COMMANDS.length) {
+            throw new AioDecoderException("unknown cluster command: " + command);
+        }
+        ClusterMessage message = new ClusterMessage(COMMANDS[command], readString(buffer));
+        switch (message.getCommand()) {
+            case HELLO:
+                message.setSecret(readString(buffer));
+                break;
+            case SYNC:
+            case BIND:
+            case UNBIND:
+                message.setUserIds(readStrings(buffer));
+                break;
+            case GROUP_SYNC:
+            case GROUP_JOIN:
+            case GROUP_LEAVE:
+                message.setGroupIds(readStrings(buffer));
+                break;
+            case FORWARD:
+                message.setForwards(readForwards(buffer, channelContext));
+                break;
+            default:
+                break;
+        }
+        if (buffer.hasRemaining()) {
+            throw new AioDecoderException("cluster frame has " + buffer.remaining() + " trailing bytes");
+        }
+        return message;
+    }
+
+    /**
+     * 编码FORWARD帧，消息包编码失败的记录被丢弃，不影响同一帧的其他记录；
+     * 所有消息包须在写入帧头之前编码完毕，encodeShared()会占用当前线程的暂存区
+     */
+    private void writeForwards(ClusterMessage message, ChannelContext channelContext) throws IOException {
+        List<ClusterMessage.Forward> forwards = message.getForwards();
+        List<ClusterMessage.Forward> encoded = new ArrayList<>(forwards.size());
+        for (ClusterMessage.Forward forward : forwards) {
+            if (forward.getPayload() == null) {
+                try {
+                    forward.setPayload(channelContext.encodeShared(forward.getPacket(), clusterBootstrap.getConfig(), forward.getProtocol()));
+                } catch (RuntimeException e) {
+                    LOGGER.warn("aio-socket cluster drop packet to {}, encode with protocol {} failed", forward.getToId(), forward.getProtocol(), e);
+                    continue;
+                }
+            }
+            encoded.add(forward);
+        }
+        byte[] nodeId = utf8(message.getNodeId());
+        byte[][] ids = new byte[encoded.size() << 1][];
+        long length = 1 + sizeOf(nodeId) + Integer.BYTES;
+        for (int i = 0; i < encoded.size(); i++) {
+            ClusterMessage.Forward forward = encoded.get(i);
+            ids[i << 1] = utf8(forward.getGroupId());
+            ids[(i << 1) + 1] = utf8(forward.getToId());
+            length += sizeOf(ids[i << 1]) + sizeOf(ids[(i << 1) + 1]) + 2 * Integer.BYTES + forward.getPayload().remaining();
+        }
+        if (length > clusterBootstrap.getMaxFrameSize()) {
+            throw new IllegalStateException("cluster frame size " + length + " exceeds maxFrameSize");
+        }
+        WriteBuffer writeBuffer = channelContext.getWriteBuffer();
+        writeBuffer.writeInt((int) length);
+        writeBuffer.writeByte((byte) ClusterCommandEnum.FORWARD.ordinal());
+        writeBytes(writeBuffer, nodeId);
+        writeBuffer.writeInt(encoded.size());
+        for (int i = 0; i < encoded.size(); i++) {
+            ClusterMessage.Forward forward = encoded.get(i);
+            ByteBuffer payload = forward.getPayload();
+            writeBytes(writeBuffer, ids[i << 1]);
+            writeBytes(writeBuffer, ids[(i << 1) + 1]);
+            writeBuffer.writeInt(forward.getProtocol() == null ? 0 : forward.getProtocol().getCode());
+            writeBuffer.writeInt(payload.remaining());
+            // 同一消息包可能同时转发给多个节点，写入副本而不移动共享缓冲区的position
+            writeBuffer.write(payload.duplicate());
+        }
+        if (metrics != null) {
+            metrics.bytesSent((int) (Integer.BYTES + length));
+        }
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 字符串编码后占用的字节数，含4字节长度
+     */
+    private static int sizeOf(byte[] value) {
+        return Integer.BYTES + (value == null ? 0 : value.length);
+    }
+
+    private static void writeBytes(WriteBuffer writeBuffer, byte[] value) throws IOException {
+        if (value == null) {
+            writeBuffer.writeInt(-1);
+            return;
+        }
+        writeBuffer.writeInt(value.length);
+        writeBuffer.write(value);
+    }
+
+    /**
+     * 解码转发记录，消息包由其协议的处理器解码，解不出完整消息包的记录被丢弃
+     */
+    private List<ClusterMessage.Forward> readForwards(ByteBuffer buffer, ChannelContext channelContext) throws AioDecoderException {
+        // 每条记录至少包含两个字符串长度、协议编码与消息包长度
+        int count = readCount(buffer, 4 * Integer.BYTES);
+        List<ClusterMessage.Forward> forwards = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String groupId = readString(buffer);
+            String toId = readString(buffer);
+            ProtocolEnum protocol = protocol(buffer.getInt());
+            ByteBuffer payload = readBytes(buffer);
+            Packet packet = channelContext.decodeShared(payload, clusterBootstrap.getConfig(), protocol);
+            if (packet == null) {
+                LOGGER.warn("aio-socket cluster drop packet to {}, protocol {} can not decode the forwarded payload", toId, protocol);
+                continue;
+            }
+            if (packet.getToId() == null) {
+                packet.setToId(toId);
+            }
+            forwards.add(new ClusterMessage.Forward(groupId, toId, protocol, packet));
+        }
+        return forwards;
+    }
+
+    private static ProtocolEnum protocol(int code) throws AioDecoderException {
+        if (code == 0) {
+            return null;
+        }
+        for (ProtocolEnum protocol : ProtocolEnum.values()) {
+            if (protocol.getCode() == code) {
+                return protocol;
+            }
+        }
+        throw new AioDecoderException("unknown protocol code: " + code);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+        if (values == null) {
+            out.writeInt(0);
+            return;
+        }
+        out.writeInt(values.size());
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) throws AioDecoderException {
+        int length = buffer.getInt();
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0 || length > buffer.remaining()) {
+            throw new AioDecoderException("illegal string length: " + length);
+        }
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static List<String> readStrings(ByteBuffer buffer) throws AioDecoderException {
+        int count = readCount(buffer, Integer.BYTES);
+        if (count == 0) {
+            return Collections.emptyList();
+        }
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(readString(buffer));
+        }
+        return values;
+    }
+
+    private static ByteBuffer readBytes(ByteBuffer buffer) throws AioDecoderException {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new AioDecoderException("illegal payload length: " + length);
+        }
+        ByteBuffer bytes = buffer.slice();
+        bytes.limit(length);
+        buffer.position(buffer.position() + length);
+        return bytes;
+    }
+
+    /**
+     * 读取列表长度，按每个元素的最小字节数校验，避免伪造的长度导致按其预分配内存
+     */
+    private static int readCount(ByteBuffer buffer, int minElementBytes) throws AioDecoderException {
+        int count = buffer.getInt();
+        if (count < 0 || (long) count * minElementBytes > buffer.remaining()) {
+            throw new AioDecoderException("illegal element count: " + count);
+        }
+        return count;
+    }
+}
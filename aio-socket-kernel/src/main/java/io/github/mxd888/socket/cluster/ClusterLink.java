@@ -0,0 +1,300 @@
+/*
+ *    Copyright 2019 The aio-socket Project
+ *
+ *    The aio-socket Project Licenses this file to you under the Apache License,
+ *    Version 2.0 (the "License"); you may not use this file except in compliance
+ *    with the License. You may obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.mxd888.socket.cluster;
+
+import io.github.mxd888.socket.ProtocolEnum;
+import io.github.mxd888.socket.core.Aio;
+import io.github.mxd888.socket.core.ChannelContext;
+import io.github.mxd888.socket.core.ClientBootstrap;
+import io.github.mxd888.socket.utils.TimingWheel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 到某个集群节点的持久链路
+ * 所有发往该节点的消息复用同一个连接；转发的消息包先进入无锁队列，积压达到批量大小时立即合并为一帧发送，
+ * 否则在首个消息包入队后的微秒级期限到达时发送，高负载下每帧携带大量消息包，低负载下延迟不超过期限；
+ * 链路输出流超过写高水位时暂停合并，消息包留在队列中等待到期重试，队列积压超出上限后新的消息包被丢弃；
+ * 链路断开后按固定间隔重连，重连成功后重新同步本节点的用户
+ *
+ * @author MDong
+ * @version 2.10.1.v20211002-RELEASE
+ */
+class ClusterLink {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClusterLink.class);
+
+    /**
+     * 重连间隔（毫秒）
+     */
+    private static final long RECONNECT_DELAY = 1000;
+
+    /**
+     * 最多积压的待转发消息包数量，超出后链路可写时由转发线程协助发送，链路不可用或不可写时丢弃
+     */
+    private static final int MAX_PENDING = 65536;
+
+    /**
+     * 链路输出流的写高水位（字节），低于默认溢出上限，使对端读取变慢时先停止合并而不是触发输出队列拒绝
+     */
+    private static final long WRITE_HIGH_WATER_MARK = 2 * 1024 * 1024;
+
+    /**
+     * 链路输出流的写低水位（字节）
+     */
+    private static final long WRITE_LOW_WATER_MARK = 512 * 1024;
+
+    /**
+     * 集群服务启动器
+     */
+    private final ClusterBootstrap clusterBootstrap;
+
+    /**
+     * 对端节点ID
+     */
+    private final String peerId;
+
+    /**
+     * 到对端节点的客户端
+     */
+    private final ClientBootstrap clientBootstrap;
+
+    /**
+     * 待转发的消息包
+     */
+    private final Queue<ClusterMessage.Forward> forwardQueue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 待转发的消息包数量
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+
+    /**
+     * 发送权，持有者负责合并发送队列中的消息包
+     */
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    /**
+     * 是否已安排到期发送
+     */
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    /**
+     * 链路统计
+     */
+    private final ClusterLinkMetrics metrics;
+
+    /**
+     * 当前可用的链路通道，未连接时为null
+     */
+    private volatile ChannelContext channelContext;
+
+    private volatile boolean closed;
+
+    ClusterLink(ClusterBootstrap clusterBootstrap, String peerId, String host, int port) {
+        this.clusterBootstrap = clusterBootstrap;
+        this.peerId = peerId;
+        this.metrics = clusterBootstrap.metrics(peerId);
+        this.clientBootstrap = new ClientBootstrap(host, port, new ClusterHandler(clusterBootstrap, metrics))
+                .setWriteWaterMark(WRITE_LOW_WATER_MARK, WRITE_HIGH_WATER_MARK);
+    }
+
+    /**
+     * 建立连接，先发布通道再同步用户，保证同步期间新增的绑定不会遗漏
+     */
+    void connect() {
+        if (closed) {
+            return;
+        }
+        ChannelContext context;
+        try {
+            context = clientBootstrap.start();
+        } catch (IOException e) {
+            LOGGER.debug("aio-socket cluster link to {} connect failed, retry later", peerId, e);
+            scheduleReconnect();
+            return;
+        }
+        context.setProtocol(ProtocolEnum.CLUSTER);
+        this.channelContext = context;
+        ClusterMessage hello = new ClusterMessage(ClusterCommandEnum.HELLO, clusterBootstrap.getNodeId());
+        hello.setSecret(clusterBootstrap.getSecret());
+        send(hello);
+        clusterBootstrap.sync(this);
+        drain(true);
+        LOGGER.info("aio-socket cluster link to {} established", peerId);
+    }
+
+    /**
+     * 链路通道关闭
+     *
+     * @param context 关闭的通道
+     */
+    void onClosed(ChannelContext context) {
+        if (context != this.channelContext) {
+            return;
+        }
+        this.channelContext = null;
+        if (!closed) {
+            LOGGER.warn("aio-socket cluster link to {} lost, reconnecting", peerId);
+            scheduleReconnect();
+        }
+    }
+
+    /**
+     * 链路通道的可写状态变化，恢复可写时继续发送暂停期间积压的消息包
+     *
+     * @param context 状态变化的通道
+     */
+    void onWritabilityChanged(ChannelContext context) {
+        if (context == this.channelContext && context.isWritable()) {
+            drain(true);
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * 发送集群消息
+     *
+     * @param message 集群消息
+     * @return        链路不可用时返回false
+     */
+    boolean send(ClusterMessage message) {
+        ChannelContext context = this.channelContext;
+        if (context == null || context.isInvalid()) {
+            return false;
+        }
+        Aio.send(context, message);
+        return true;
+    }
+
+    /**
+     * 转发消息包，积压达到批量大小时立即发送，否则等待到期发送；
+     * 积压超出上限时，链路可写则转发线程协助发送直至回落，以此向上游施加背压，
+     * 链路不可写时协助发送只会把积压转移到链路输出流，此时不再等待而是丢弃新的消息包
+     *
+     * @param forward 转发记录
+     * @return        链路不可用或不可写且积压过多被丢弃时返回false
+     */
+    boolean forward(ClusterMessage.Forward forward) {
+        int count = pending.get();
+        if (count >= MAX_PENDING && !isWritable()) {
+            metrics.packetDropped();
+            return false;
+        }
+        count = pending.incrementAndGet();
+        forwardQueue.offer(forward);
+        if (count >= clusterBootstrap.getBatchSize()) {
+            drain(false);
+            while (pending.get() > MAX_PENDING && isWritable()) {
+                Thread.yield();
+                drain(false);
+            }
+        }
+        scheduleFlush();
+        return true;
+    }
+
+    /**
+     * 合并发送队列中的消息包；释放发送权后再次检查，避免其他线程在释放前入队却未抢到发送权
+     *
+     * @param flushAll 是否发送不足批量大小的剩余消息包
+     */
+    private void drain(boolean flushAll) {
+        int batchSize = clusterBootstrap.getBatchSize();
+        while (draining.compareAndSet(false, true)) {
+            try {
+                ChannelContext context = this.channelContext;
+                int count = pending.get();
+                if (context == null || context.isInvalid() || !context.isWritable()
+                        || count == 0 || (!flushAll && count < batchSize)) {
+                    // 链路不可写时保留积压，由到期发送在输出流回落后继续
+                    return;
+                }
+                List<ClusterMessage.Forward> batch = new ArrayList<>(Math.min(count, batchSize));
+                ClusterMessage.Forward forward;
+                while (batch.size() < batchSize && (forward = forwardQueue.poll()) != null) {
+                    batch.add(forward);
+                }
+                pending.addAndGet(-batch.size());
+                ClusterMessage message = new ClusterMessage(ClusterCommandEnum.FORWARD, clusterBootstrap.getNodeId());
+                message.setForwards(batch);
+                Aio.send(context, message);
+                metrics.frameSent(batch.size(), batch.size() == batchSize);
+            } finally {
+                draining.set(false);
+            }
+        }
+    }
+
+    /**
+     * 安排到期发送，同一时刻最多一个；到期时发送权被占用则顺延一个期限，
+     * 链路不可写时不再安排，由恢复可写的事件重新开始
+     */
+    private void scheduleFlush() {
+        if (pending.get() == 0 || !isWritable() || !flushScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        clusterBootstrap.scheduleFlush(() -> {
+            flushScheduled.set(false);
+            drain(true);
+            scheduleFlush();
+        });
+    }
+
+    /**
+     * 链路是否可用且输出流未超过写高水位
+     */
+    private boolean isWritable() {
+        ChannelContext context = this.channelContext;
+        return context != null && !context.isInvalid() && context.isWritable();
+    }
+
+    private void scheduleReconnect() {
+        if (closed) {
+            return;
+        }
+        TimingWheel.DEFAULT.newTimeout(() -> clusterBootstrap.execute(() -> {
+            clientBootstrap.shutdownNow();
+            connect();
+        }), RECONNECT_DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 关闭链路，不再重连
+     */
+    void close() {
+        closed = true;
+        channelContext = null;
+        clientBootstrap.shutdownNow();
+    }
+
+    String getPeerId() {
+        return peerId;
+    }
+
+    ClusterLinkMetrics getMetrics() {
+        return metrics;
+    }
+}
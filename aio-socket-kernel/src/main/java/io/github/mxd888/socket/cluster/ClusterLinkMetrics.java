@@ -0,0 +1,159 @@
+/*
+ *    Copyright 2019 The aio-socket Project
+ *
+ *    The aio-socket Project Licenses this file to you under the Apache License,
+ *    Version 2.0 (the "License"); you may not use this file except in compliance
+ *    with the License. You may obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.mxd888.socket.cluster;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 集群链路统计，计数为累计值，按固定周期采样相减即可得到吞吐量
+ *
+ * @author MDong
+ * @version 2.10.1.v20211002-RELEASE
+ */
+public final class ClusterLinkMetrics {
+
+    /**
+     * 对端节点ID
+     */
+    private final String peerId;
+
+    /**
+     * 发出的FORWARD帧数
+     */
+    private final LongAdder framesSent = new LongAdder();
+
+    /**
+     * 发出的消息包数
+     */
+    private final LongAdder packetsSent = new LongAdder();
+
+    /**
+     * 发出的字节数，包含全部集群消息
+     */
+    private final LongAdder bytesSent = new LongAdder();
+
+    /**
+     * 因达到批量大小而发出的帧数，其余为到期发出
+     */
+    private final LongAdder sizeFlushes = new LongAdder();
+
+    /**
+     * 单帧最大消息包数
+     */
+    private final LongAccumulator maxBatchSize = new LongAccumulator(Math::max, 0);
+
+    /**
+     * 链路积压被丢弃的消息包数
+     */
+    private final LongAdder packetsDropped = new LongAdder();
+
+    /**
+     * 收到的FORWARD帧数
+     */
+    private final LongAdder framesReceived = new LongAdder();
+
+    /**
+     * 收到的消息包数
+     */
+    private final LongAdder packetsReceived = new LongAdder();
+
+    ClusterLinkMetrics(String peerId) {
+        this.peerId = peerId;
+    }
+
+    void frameSent(int batchSize, boolean sizeFlush) {
+        framesSent.increment();
+        packetsSent.add(batchSize);
+        maxBatchSize.accumulate(batchSize);
+        if (sizeFlush) {
+            sizeFlushes.increment();
+        }
+    }
+
+    void bytesSent(int bytes) {
+        bytesSent.add(bytes);
+    }
+
+    void packetDropped() {
+        packetsDropped.increment();
+    }
+
+    void frameReceived(int batchSize) {
+        framesReceived.increment();
+        packetsReceived.add(batchSize);
+    }
+
+    public String getPeerId() {
+        return peerId;
+    }
+
+    public long getFramesSent() {
+        return framesSent.sum();
+    }
+
+    public long getPacketsSent() {
+        return packetsSent.sum();
+    }
+
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    public long getSizeFlushes() {
+        return sizeFlushes.sum();
+    }
+
+    public long getMaxBatchSize() {
+        return maxBatchSize.get();
+    }
+
+    public long getPacketsDropped() {
+        return packetsDropped.sum();
+    }
+
+    public long getFramesReceived() {
+        return framesReceived.sum();
+    }
+
+    public long getPacketsReceived() {
+        return packetsReceived.sum();
+    }
+
+    /**
+     * 平均每帧消息包数
+     *
+     * @return 平均批量大小，未发送时返回0
+     */
+    public double getAverageBatchSize() {
+        long frames = framesSent.sum();
+        return frames == 0 ? 0 : (double) packetsSent.sum() / frames;
+    }
+
+    @Override
+    public String toString() {
+        return "ClusterLinkMetrics{peerId=" + peerId
+                + ", framesSent=" + getFramesSent()
+                + ", packetsSent=" + getPacketsSent()
+                + ", bytesSent=" + getBytesSent()
+                + ", avgBatchSize=" + String.format("%.2f", getAverageBatchSize())
+                + ", maxBatchSize=" + getMaxBatchSize()
+                + ", sizeFlushes=" + getSizeFlushes()
+                + ", packetsDropped=" + getPacketsDropped()
+                + ", framesReceived=" + getFramesReceived()
+                + ", packetsReceived=" + getPacketsReceived() + '}';
+    }
+}
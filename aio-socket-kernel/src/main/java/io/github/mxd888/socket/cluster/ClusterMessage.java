@@ -0,0 +1,182 @@
+/*
+ *    Copyright 2019 The aio-socket Project
+ *
+ *    The aio-socket Project Licenses this file to you under the Apache License,
+ *    Version 2.0 (the "License"); you may not use this file except in compliance
+ *    with the License. You may obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.mxd888.socket.cluster;
+
+import io.github.mxd888.socket.Packet;
+import io.github.mxd888.socket.ProtocolEnum;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * 集群节点间链路传输的消息，由ClusterHandler以显式的二进制格式编码，不使用Java序列化；
+ * 转发的用户消息包由其所属协议的处理器编解码
+ *
+ * @author MDong
+ * @version 2.10.1.v20211002-RELEASE
+ */
+public class ClusterMessage extends Packet {
+
+    private static final long serialVersionUID = 6052163402135893415L;
+
+    /**
+     * 指令
+     */
+    private ClusterCommandEnum command;
+
+    /**
+     * 发送方节点ID
+     */
+    private String nodeId;
+
+    /**
+     * HELLO携带的集群共享密钥，未配置时为null
+     */
+    private String secret;
+
+    /**
+     * SYNC、BIND、UNBIND携带的用户ID
+     */
+    private List<String> userIds;
+
+    /**
+     * GROUP_SYNC、GROUP_JOIN、GROUP_LEAVE携带的群组ID
+     */
+    private List<String> groupIds;
+
+    /**
+     * FORWARD携带的转发记录，一条消息合并多个消息包
+     */
+    private List<Forward> forwards;
+
+    public ClusterMessage() {
+    }
+
+    public ClusterMessage(ClusterCommandEnum command, String nodeId) {
+        this.command = command;
+        this.nodeId = nodeId;
+    }
+
+    public ClusterCommandEnum getCommand() {
+        return command;
+    }
+
+    public void setCommand(ClusterCommandEnum command) {
+        this.command = command;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public String getSecret() {
+        return secret;
+    }
+
+    public void setSecret(String secret) {
+        this.secret = secret;
+    }
+
+    public List<String> getUserIds() {
+        return userIds;
+    }
+
+    public void setUserIds(List<String> userIds) {
+        this.userIds = userIds;
+    }
+
+    public List<String> getGroupIds() {
+        return groupIds;
+    }
+
+    public void setGroupIds(List<String> groupIds) {
+        this.groupIds = groupIds;
+    }
+
+    public List<Forward> getForwards() {
+        return forwards;
+    }
+
+    public void setForwards(List<Forward> forwards) {
+        this.forwards = forwards;
+    }
+
+    /**
+     * 转发记录，groupId为null时投递给toId对应的用户，否则投递给接收节点上该群组的成员
+     */
+    public static final class Forward {
+
+        /**
+         * 目标群组ID
+         */
+        private final String groupId;
+
+        /**
+         * 目标用户ID
+         */
+        private final String toId;
+
+        /**
+         * 编解码消息包使用的协议
+         */
+        private final ProtocolEnum protocol;
+
+        /**
+         * 消息包
+         */
+        private final Packet packet;
+
+        /**
+         * 消息包按协议编码后的只读缓冲区，转发给多个节点时只编码一次，各链路写入其副本
+         */
+        private volatile ByteBuffer payload;
+
+        public Forward(String groupId, String toId, ProtocolEnum protocol, Packet packet) {
+            this.groupId = groupId;
+            this.toId = toId;
+            this.protocol = protocol;
+            this.packet = packet;
+        }
+
+        public String getGroupId() {
+            return groupId;
+        }
+
+        public String getToId() {
+            return toId;
+        }
+
+        public ProtocolEnum getProtocol() {
+            return protocol;
+        }
+
+        public Packet getPacket() {
+            return packet;
+        }
+
+        ByteBuffer getPayload() {
+            return payload;
+        }
+
+        void setPayload(ByteBuffer payload) {
+            this.payload = payload;
+        }
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ *    Copyright 2019 The aio-socket Project
+ *
+ *    The aio-socket Project Licenses this file to you under the Apache License,
+ *    Version 2.0 (the "License"); you may not use this file except in compliance
+ *    with the License. You may obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.mxd888.socket.core;
+
+import io.github.mxd888.socket.utils.AIOUtil;
+import io.github.mxd888.socket.utils.TimingWheel;
+import io.github.mxd888.socket.utils.pool.memory.MemoryPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 服务端接入控制
+ * 统计存活连接数并周期采样内存池的已用内存，任一项超过上限即进入过载状态，
+ * 全部回落至下限后才退出，避免在阈值附近反复切换；
+ * 过载时按策略暂停accept或接受后立即拒绝，使过载表现为接入变慢而不是内存耗尽
+ *
+ * @author MDong
+ * @version 2.10.1.v20211002-RELEASE
+ */
+final class AdmissionController {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AdmissionController.class);
+
+    /**
+     * 内存采样及暂停后检查恢复的间隔（毫秒）
+     */
+    private static final long CHECK_INTERVAL = 100;
+
+    /**
+     * 配置信息
+     */
+    private final AioConfig config;
+
+    /**
+     * 内存池
+     */
+    private final MemoryPool memoryPool;
+
+    /**
+     * 存活连接数，包含已接受但尚未完成初始化的连接
+     */
+    private final AtomicInteger connections = new AtomicInteger();
+
+    /**
+     * 是否处于过载状态
+     */
+    private volatile boolean overloaded;
+
+    /**
+     * 最近一次采样的内存池已分配内存（字节），包含内存页不足时退化申请的堆内存
+     */
+    private volatile long memoryUsed;
+
+    /**
+     * 是否已暂停accept
+     */
+    private final AtomicBoolean paused = new AtomicBoolean();
+
+    /**
+     * 恢复accept的动作
+     */
+    private volatile Runnable resumeAction;
+
+    /**
+     * 被拒绝的连接数
+     */
+    private final LongAdder rejected = new LongAdder();
+
+    private volatile boolean running = true;
+
+    AdmissionController(AioConfig config, MemoryPool memoryPool) {
+        this.config = config;
+        this.memoryPool = memoryPool;
+        if (config.getMemoryHighWaterMark() > 0) {
+            sampleMemory();
+        }
+    }
+
+    /**
+     * 判断是否接纳新连接，接纳时计入存活连接
+     *
+     * @return 是否接纳
+     */
+    boolean admit() {
+        if (isOverloaded(connections.get())) {
+            return false;
+        }
+        connections.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * 当前负载下是否还能接纳新连接，PAUSE策略据此决定是否继续accept，使过载时新连接留在backlog中
+     *
+     * @return 是否能接纳
+     */
+    boolean canAdmit() {
+        return !isOverloaded(connections.get());
+    }
+
+    /**
+     * 已接纳的连接关闭或初始化失败
+     */
+    void release() {
+        connections.decrementAndGet();
+        if (paused.get()) {
+            tryResume();
+        }
+    }
+
+    /**
+     * 拒绝连接，写出拒绝响应后关闭
+     *
+     * @param channel 被拒绝的连接
+     */
+    void reject(AsynchronousSocketChannel channel) {
+        rejected.increment();
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("aio-socket version: {}; server kernel overloaded, connections: {}, memory used: {}, reject channel",
+                    AioConfig.VERSION, connections.get(), memoryUsed);
+        }
+        byte[] response = config.getRejectResponse();
+        if (response == null || response.length == 0) {
+            AIOUtil.close(channel);
+            return;
+        }
+        try {
+            channel.write(ByteBuffer.wrap(response), channel, new CompletionHandler<Integer, AsynchronousSocketChannel>() {
+                @Override
+                public void completed(Integer result, AsynchronousSocketChannel attachment) {
+                    AIOUtil.close(attachment);
+                }
+
+                @Override
+                public void failed(Throwable exc, AsynchronousSocketChannel attachment) {
+                    AIOUtil.close(attachment);
+                }
+            });
+        } catch (Throwable e) {
+            AIOUtil.close(channel);
+        }
+    }
+
+    /**
+     * 暂停accept，负载回落后执行恢复动作
+     *
+     * @param resumeAction 恢复accept的动作
+     */
+    void pause(Runnable resumeAction) {
+        this.resumeAction = resumeAction;
+        if (paused.compareAndSet(false, true)) {
+            LOGGER.warn("aio-socket version: {}; server kernel overloaded, connections: {}, memory used: {}, accept paused",
+                    AioConfig.VERSION, connections.get(), memoryUsed);
+            // 暂停期间可能不再有连接关闭，以定时检查兜底
+            scheduleCheck();
+            tryResume();
+        }
+    }
+
+    /**
+     * 启动内存采样
+     */
+    void start() {
+        if (config.getMemoryHighWaterMark() > 0) {
+            scheduleSample();
+        }
+    }
+
+    void stop() {
+        running = false;
+    }
+
+    int getConnections() {
+        return connections.get();
+    }
+
+    long getMemoryUsed() {
+        return memoryUsed;
+    }
+
+    long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * 按滞回规则更新过载状态：超过任一上限进入过载，全部回落至下限退出过载
+     */
+    private boolean isOverloaded(int connections) {
+        int maxConnections = config.getMaxConnections();
+        long maxMemory = config.getMemoryHighWaterMark();
+        long memory = this.memoryUsed;
+        if (overloaded) {
+            if ((maxConnections <= 0 || connections <= config.getResumeConnections())
+                    && (maxMemory <= 0 || memory <= config.getMemoryLowWaterMark())) {
+                overloaded = false;
+            }
+        } else if ((maxConnections > 0 && connections >= maxConnections) || (maxMemory > 0 && memory >= maxMemory)) {
+            overloaded = true;
+        }
+        return overloaded;
+    }
+
+    private void tryResume() {
+        if (!isOverloaded(connections.get()) && paused.compareAndSet(true, false)) {
+            LOGGER.info("aio-socket version: {}; server kernel load recovered, connections: {}, memory used: {}, accept resumed",
+                    AioConfig.VERSION, connections.get(), memoryUsed);
+            resumeAction.run();
+        }
+    }
+
+    private void scheduleCheck() {
+        TimingWheel.DEFAULT.newTimeout(() -> {
+            if (running && paused.get()) {
+                tryResume();
+                if (paused.get()) {
+                    scheduleCheck();
+                }
+            }
+        }, CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    private void scheduleSample() {
+        TimingWheel.DEFAULT.newTimeout(() -> {
+            if (running) {
+                sampleMemory();
+                scheduleSample();
+            }
+        }, CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    private void sampleMemory() {
+        // 只读取内存池的分配计数，不遍历回收队列也不争用内存页的锁
+        this.memoryUsed = memoryPool.getAllocatedBytes();
+    }
+}
@@ -16,6 +16,8 @@
 package io.github.mxd888.socket.core;
 
 import io.github.mxd888.socket.Packet;
+import io.github.mxd888.socket.ProtocolEnum;
+import io.github.mxd888.socket.cluster.ClusterBootstrap;
 import io.github.mxd888.socket.maintain.Groups;
 
 /**
@@ -39,6 +41,10 @@ public class Aio {
         AioConfig config = channelContext.getAioConfig();
         config.getIds().join(id, channelContext);
         channelContext.setId(id);
+        ClusterBootstrap cluster = config.getClusterBootstrap();
+        if (cluster != null) {
+            cluster.bind(id);
+        }
     }
 
     /**
@@ -67,9 +73,42 @@ public class Aio {
         channelContext.sendPacket(packet, true);
     }
 
+    /**
+     * 按用户ID发送，用户不在本节点时转发到其所在的集群节点；
+     * 转发时以唯一处理器的协议编码，添加了多个处理器的服务应使用指定协议的重载
+     *
+     * @param channelContextId 接收方用户ID
+     * @param packet           数据包
+     * @param config           配置信息
+     * @throws IllegalStateException 需要转发但添加了多个处理器，无法确定协议
+     */
     public static void sendToID(String channelContextId, Packet packet, AioConfig config) {
+        sendToID(channelContextId, packet, null, config);
+    }
+
+    /**
+     * 按用户ID发送，用户不在本节点时以指定协议编码后转发到其所在的集群节点
+     *
+     * @param channelContextId 接收方用户ID
+     * @param packet           数据包
+     * @param protocol         转发时编解码消息包的协议，通常为发送方通道的协议，为null时使用唯一处理器的协议
+     * @param config           配置信息
+     */
+    public static void sendToID(String channelContextId, Packet packet, ProtocolEnum protocol, AioConfig config) {
         ChannelContext Id = Aio.getChannelContextById(channelContextId, config);
-        Aio.send(Id, packet);
+        if (Id != null) {
+            Aio.send(Id, packet);
+            return;
+        }
+        ClusterBootstrap cluster = config.getClusterBootstrap();
+        if (cluster != null) {
+            packet.setToId(channelContextId);
+            if (protocol == null) {
+                cluster.forward(channelContextId, packet);
+            } else {
+                cluster.forward(channelContextId, packet, protocol);
+            }
+        }
     }
 
     public static ChannelContext getChannelContextById(String channelContextId, AioConfig config) {
@@ -77,14 +116,19 @@ public class Aio {
     }
 
     /**
-     * 群发
+     * 群发，启动集群时同时转发到有该群组成员的其他节点
      *
      * @param groupId        群组ID
      * @param packet         消息包
      * @param channelContext 发送者上下文
      */
     public static void sendGroup(String groupId, Packet packet, ChannelContext channelContext) {
-        channelContext.getAioConfig().getGroups().writeToGroup(groupId, packet, channelContext);
+        AioConfig config = channelContext.getAioConfig();
+        config.getGroups().writeToGroup(groupId, packet, channelContext);
+        ClusterBootstrap cluster = config.getClusterBootstrap();
+        if (cluster != null) {
+            cluster.forwardToGroup(groupId, packet, channelContext.getProtocol());
+        }
     }
 
     public static void removeUserFromAllGroup(ChannelContext channelContext) {
@@ -102,7 +146,16 @@ public class Aio {
      */
     public static void close(ChannelContext channelContext) {
         removeUserFromAllGroup(channelContext);
-        channelContext.getAioConfig().getIds().remove(channelContext.getId());
+        AioConfig config = channelContext.getAioConfig();
+        String id = channelContext.getId();
+        if (id != null) {
+            // 用户已在本节点以新连接重新绑定时只关闭旧连接，不解除绑定
+            boolean removed = config.getIds().remove(id, channelContext);
+            ClusterBootstrap cluster = config.getClusterBootstrap();
+            if (cluster != null && (removed || config.getIds().get(id) == null)) {
+                cluster.unbind(id);
+            }
+        }
         channelContext.close();
     }
 }
@@ -16,11 +16,15 @@
 package io.github.mxd888.socket.core;
 
 import io.github.mxd888.socket.Monitor;
+import io.github.mxd888.socket.AdmissionPolicyEnum;
+import io.github.mxd888.socket.OverflowPolicyEnum;
 import io.github.mxd888.socket.utils.pool.memory.MemoryPoolFactory;
 import io.github.mxd888.socket.intf.Handler;
+import io.github.mxd888.socket.cluster.ClusterBootstrap;
 import io.github.mxd888.socket.maintain.ClusterIds;
 import io.github.mxd888.socket.maintain.Groups;
 import io.github.mxd888.socket.maintain.Ids;
+import io.github.mxd888.socket.metrics.MessageTracer;
 import io.github.mxd888.socket.plugins.Plugins;
 
 import java.net.SocketOption;
@@ -45,11 +49,41 @@ public class AioConfig {
      */
     private int readBufferSize = 2048;
 
+    /**
+     * 自适应读缓冲区的最小值，小于1时关闭自适应，所有连接使用固定的readBufferSize
+     */
+    private int readBufferMinSize = 0;
+
+    /**
+     * 自适应读缓冲区的最大值
+     */
+    private int readBufferMaxSize = 0;
+
     /**
      * 内存块大小限制
      */
     private int writeBufferSize = 2048;
 
+    /**
+     * 聚合写单次最多输出的分片数量，小于2时关闭聚合写
+     */
+    private int gatheringWriteNum = 0;
+
+    /**
+     * 内存池线程本地缓存中每种规格最多缓存的数量，小于2时关闭线程本地缓存
+     */
+    private int threadCacheSize = 0;
+
+    /**
+     * 输出流待发送队列已满时的处理策略，默认暂存到溢出队列
+     */
+    private OverflowPolicyEnum writeOverflowPolicy = OverflowPolicyEnum.SPILL;
+
+    /**
+     * SPILL策略下溢出队列最多暂存的字节数，超过后按REJECT处理，默认4MB，小于1时不限制
+     */
+    private long writeSpillLimit = 4 * 1024 * 1024;
+
     /**
      * 远程服务器IP
      */
@@ -98,12 +132,17 @@ public class AioConfig {
     /**
      * 用户ID和其ChannelContext绑定
      */
-    private final Ids ids = new Ids();
+    private Ids ids = new Ids();
 
     /**
      * 集群服务器：用户ID与集群服务器ID一一对应
      */
-    private final ClusterIds clusterIds = new ClusterIds();
+    private ClusterIds clusterIds = new ClusterIds();
+
+    /**
+     * 集群服务启动器，启动集群后设置，用于用户绑定广播与跨节点转发
+     */
+    private volatile ClusterBootstrap clusterBootstrap;
 
     /**
      * 单台aio-socket最大在线用户量；再启动MonitorPlugin时才生效（通过触发状态机来通知应用层处理）
@@ -114,6 +153,66 @@ public class AioConfig {
 
     private boolean multilevelModel = false;
 
+    /**
+     * 事件循环数量，大于0时启用事件循环模式，每个连接的读、解码、处理、编码、写固定在同一线程上执行
+     */
+    private int eventLoopNum = 0;
+
+    /**
+     * 写低水位（字节），待输出数据回落至该值及以下时恢复可写
+     */
+    private long writeLowWaterMark = 0;
+
+    /**
+     * 写高水位（字节），待输出数据超过该值时不可写并暂停读，小于1时不启用
+     */
+    private long writeHighWaterMark = 0;
+
+    /**
+     * 存活连接数上限，达到后按接入策略暂停或拒绝接入，小于1时不限制
+     */
+    private int maxConnections = 0;
+
+    /**
+     * 过载后存活连接数回落至该值及以下时恢复接入
+     */
+    private int resumeConnections = 0;
+
+    /**
+     * 内存池已用内存上限（字节），达到后按接入策略暂停或拒绝接入，小于1时不限制
+     */
+    private long memoryHighWaterMark = 0;
+
+    /**
+     * 过载后内存池已用内存回落至该值及以下时恢复接入
+     */
+    private long memoryLowWaterMark = 0;
+
+    /**
+     * 过载时的接入策略
+     */
+    private AdmissionPolicyEnum admissionPolicy = AdmissionPolicyEnum.PAUSE;
+
+    /**
+     * REJECT策略下关闭连接前写出的响应
+     */
+    private byte[] rejectResponse;
+
+    /**
+     * 接入控制，服务端启动后创建
+     */
+    private AdmissionController admissionController;
+
+    /**
+     * 消息链路追踪器，为null时不追踪
+     */
+    private MessageTracer messageTracer;
+
+    /**
+     * 是否在虚拟线程上执行handle，JDK不支持虚拟线程时仍使用作业线程池
+     */
+    private boolean virtualThreadHandler = false;
+
     /**
      * 插件
      */
@@ -140,6 +239,42 @@ public class AioConfig {
         return this;
     }
 
+    public int getGatheringWriteNum() {
+        return gatheringWriteNum;
+    }
+
+    public AioConfig setGatheringWriteNum(int gatheringWriteNum) {
+        this.gatheringWriteNum = gatheringWriteNum;
+        return this;
+    }
+
+    public int getThreadCacheSize() {
+        return threadCacheSize;
+    }
+
+    public AioConfig setThreadCacheSize(int threadCacheSize) {
+        this.threadCacheSize = threadCacheSize;
+        return this;
+    }
+
+    public OverflowPolicyEnum getWriteOverflowPolicy() {
+        return writeOverflowPolicy;
+    }
+
+    public AioConfig setWriteOverflowPolicy(OverflowPolicyEnum writeOverflowPolicy) {
+        this.writeOverflowPolicy = writeOverflowPolicy;
+        return this;
+    }
+
+    public long getWriteSpillLimit() {
+        return writeSpillLimit;
+    }
+
+    public AioConfig setWriteSpillLimit(long writeSpillLimit) {
+        this.writeSpillLimit = writeSpillLimit;
+        return this;
+    }
+
     public String getHost() {
         return host;
     }
@@ -173,6 +308,29 @@ public class AioConfig {
         this.readBufferSize = readBufferSize;
     }
 
+    public int getReadBufferMinSize() {
+        return readBufferMinSize;
+    }
+
+    public int getReadBufferMaxSize() {
+        return readBufferMaxSize;
+    }
+
+    public AioConfig setAdaptiveReadBuffer(int readBufferMinSize, int readBufferMaxSize) {
+        this.readBufferMinSize = readBufferMinSize;
+        this.readBufferMaxSize = readBufferMaxSize;
+        return this;
+    }
+
+    /**
+     * 是否启用自适应读缓冲区
+     *
+     * @return 布尔
+     */
+    public boolean isAdaptiveReadBuffer() {
+        return readBufferMinSize > 0 && readBufferMaxSize >= readBufferMinSize;
+    }
+
     public Map<SocketOption<Object>, Object> getSocketOptions() {
         return socketOptions;
     }
@@ -232,6 +390,27 @@ public class AioConfig {
         return clusterIds;
     }
 
+    public AioConfig setCompactIdRegistry(boolean compactIdRegistry) {
+        if (!isServer) {
+            throw new UnsupportedOperationException("ClientBootstrap does not support Setting CompactIdRegistry");
+        }
+        this.ids = new Ids(compactIdRegistry);
+        this.clusterIds = new ClusterIds(compactIdRegistry);
+        return this;
+    }
+
+    public ClusterBootstrap getClusterBootstrap() {
+        return clusterBootstrap;
+    }
+
+    public AioConfig setClusterBootstrap(ClusterBootstrap clusterBootstrap) {
+        if (!isServer) {
+            throw new UnsupportedOperationException("ClientBootstrap does not support Setting ClusterBootstrap");
+        }
+        this.clusterBootstrap = clusterBootstrap;
+        return this;
+    }
+
     public Plugins getPlugins() {
         return plugins;
     }
@@ -254,4 +433,119 @@ public class AioConfig {
         }
         this.multilevelModel = multilevelModel;
     }
+
+    public long getWriteLowWaterMark() {
+        return writeLowWaterMark;
+    }
+
+    public long getWriteHighWaterMark() {
+        return writeHighWaterMark;
+    }
+
+    public AioConfig setWriteWaterMark(long writeLowWaterMark, long writeHighWaterMark) {
+        if (writeLowWaterMark > writeHighWaterMark) {
+            throw new IllegalArgumentException("writeLowWaterMark must not be greater than writeHighWaterMark");
+        }
+        this.writeLowWaterMark = writeLowWaterMark;
+        this.writeHighWaterMark = writeHighWaterMark;
+        return this;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public int getResumeConnections() {
+        return resumeConnections;
+    }
+
+    public AioConfig setConnectionWaterMark(int resumeConnections, int maxConnections) {
+        if (!isServer) {
+            throw new UnsupportedOperationException("ClientBootstrap does not support Setting ConnectionWaterMark");
+        }
+        if (resumeConnections > maxConnections) {
+            throw new IllegalArgumentException("resumeConnections must not be greater than maxConnections");
+        }
+        this.resumeConnections = resumeConnections;
+        this.maxConnections = maxConnections;
+        return this;
+    }
+
+    public long getMemoryLowWaterMark() {
+        return memoryLowWaterMark;
+    }
+
+    public long getMemoryHighWaterMark() {
+        return memoryHighWaterMark;
+    }
+
+    public AioConfig setMemoryWaterMark(long memoryLowWaterMark, long memoryHighWaterMark) {
+        if (!isServer) {
+            throw new UnsupportedOperationException("ClientBootstrap does not support Setting MemoryWaterMark");
+        }
+        if (memoryLowWaterMark > memoryHighWaterMark) {
+            throw new IllegalArgumentException("memoryLowWaterMark must not be greater than memoryHighWaterMark");
+        }
+        this.memoryLowWaterMark = memoryLowWaterMark;
+        this.memoryHighWaterMark = memoryHighWaterMark;
+        return this;
+    }
+
+    public AdmissionPolicyEnum getAdmissionPolicy() {
+        return admissionPolicy;
+    }
+
+    public byte[] getRejectResponse() {
+        return rejectResponse;
+    }
+
+    public AioConfig setAdmissionPolicy(AdmissionPolicyEnum admissionPolicy, byte[] rejectResponse) {
+        if (!isServer) {
+            throw new UnsupportedOperationException("ClientBootstrap does not support Setting AdmissionPolicy");
+        }
+        this.admissionPolicy = admissionPolicy;
+        this.rejectResponse = rejectResponse;
+        return this;
+    }
+
+    AdmissionController getAdmissionController() {
+        return admissionController;
+    }
+
+    void setAdmissionController(AdmissionController admissionController) {
+        this.admissionController = admissionController;
+    }
+
+    public MessageTracer getMessageTracer() {
+        return messageTracer;
+    }
+
+    public AioConfig setMessageTracer(MessageTracer messageTracer) {
+        this.messageTracer = messageTracer;
+        return this;
+    }
+
+    public boolean isVirtualThreadHandler() {
+        return virtualThreadHandler;
+    }
+
+    public AioConfig setVirtualThreadHandler(boolean virtualThreadHandler) {
+        if (!isServer) {
+            throw new UnsupportedOperationException("ClientBootstrap does not support Setting VirtualThreadHandler");
+        }
+        this.virtualThreadHandler = virtualThreadHandler;
+        return this;
+    }
+
+    public int getEventLoopNum() {
+        return eventLoopNum;
+    }
+
+    public AioConfig setEventLoopNum(int eventLoopNum) {
+        if (!isServer) {
+            throw new UnsupportedOperationException("ClientBootstrap does not support Setting EventLoopModel");
+        }
+        this.eventLoopNum = eventLoopNum;
+        return this;
+    }
 }
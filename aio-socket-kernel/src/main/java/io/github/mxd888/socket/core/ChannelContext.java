@@ -17,13 +17,15 @@ package io.github.mxd888.socket.core;
 
 import io.github.mxd888.socket.Packet;
 import io.github.mxd888.socket.ProtocolEnum;
+import io.github.mxd888.socket.exception.AioDecoderException;
+import io.github.mxd888.socket.metrics.MessageTrace;
+import io.github.mxd888.socket.utils.pool.memory.CompositeBuffer;
 import io.github.mxd888.socket.utils.pool.memory.MemoryBlock;
 import io.github.mxd888.socket.utils.pool.memory.MemoryUnit;
-import io.github.mxd888.socket.utils.queue.AioFullWaitQueue;
-import io.github.mxd888.socket.utils.queue.AioQueue;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
 import java.nio.channels.AsynchronousSocketChannel;
 import java.util.HashMap;
 import java.util.Map;
@@ -55,9 +57,14 @@ public abstract class ChannelContext {
     private ProtocolEnum protocol;
 
     /**
-     * 存放当前ChannelContext未解码的虚拟buffer
+     * 存放当前ChannelContext跨越多个读缓冲区的未解码数据
      */
-    private AioQueue<MemoryUnit> oldByteBufferQueue;
+    private volatile CompositeBuffer compositeBuffer;
+
+    /**
+     * 消息链路追踪，未开启时为null
+     */
+    protected MessageTrace messageTrace;
 
     /**
      * 自定义属性Map
@@ -85,21 +92,22 @@ public abstract class ChannelContext {
     protected static final byte CHANNEL_STATUS_ENABLED = 3;
 
     /**
-     * 读取当前ChannelContext未解码的虚拟buffer
+     * 读取当前ChannelContext跨越多个读缓冲区的未解码数据
+     * 单个读缓冲区无法容纳一帧消息时，已读满的缓冲区会依次追加到该组合缓冲区，分片数量不受限制
      *
-     * @return aio-socket自制满等待队列
+     * @return 组合缓冲区
      */
-    public AioQueue<MemoryUnit> getOldByteBuffer() {
-        if (oldByteBufferQueue != null) {
-            return oldByteBufferQueue;
+    public CompositeBuffer getCompositeBuffer() {
+        if (compositeBuffer != null) {
+            return compositeBuffer;
         }
         synchronized (ChannelContext.class) {
-            if (oldByteBufferQueue != null) {
-                return oldByteBufferQueue;
+            if (compositeBuffer != null) {
+                return compositeBuffer;
             }
-            oldByteBufferQueue = new AioFullWaitQueue<>(10);
+            compositeBuffer = new CompositeBuffer();
         }
-        return oldByteBufferQueue;
+        return compositeBuffer;
     }
 
     /**
@@ -108,11 +116,12 @@ public abstract class ChannelContext {
      * @param memoryBlock 输出流所在内存页
      * @param consumer   消费函数
      * @param chunkSize  输出流大小（单位字节）
-     * @param capacity   待输出数组的大小
+     * @param capacity   待输出数组的大小，溢出时按AioConfig中配置的策略处理
      */
     protected void setWriteBuffer(MemoryBlock memoryBlock, Consumer<WriteBuffer> consumer, int chunkSize, int capacity) {
         if (byteBuf == null) {
-            byteBuf = new WriteBuffer(memoryBlock, consumer, chunkSize, capacity);
+            byteBuf = new WriteBuffer(memoryBlock, consumer, chunkSize, capacity,
+                    getAioConfig().getWriteOverflowPolicy(), getAioConfig().getWriteSpillLimit());
         }
     }
 
@@ -135,10 +144,67 @@ public abstract class ChannelContext {
     }
 
     /**
-     * 通道数据输出出
+     * 按当前通道的协议与配置编码消息但不发送，返回只读的共享缓冲区
+     * 用于群发时只编码一次，再通过writeShared()投递给协议相同的多个通道
+     * 编码在已关闭的临时通道上进行，插件的beforeEncode只执行一次且isInvalid()为true，
+     * ACKPlugin因此不会为其登记ACK计时，需要ACK跟踪的消息应逐个通道调用Aio.send()
+     *
+     * @param packet 消息包
+     * @return       读模式的只读缓冲区
+     */
+    public ByteBuffer encodeShared(Packet packet) {
+        return new SharedEncodeContext(this).encode(packet);
+    }
+
+    /**
+     * 按指定配置与协议编码消息但不发送，当前通道只提供编码使用的内存页
+     *
+     * @param packet   消息包
+     * @param config   编码使用的配置，由其中的处理器编码
+     * @param protocol 编码使用的协议
+     * @return         读模式的只读缓冲区
+     */
+    public ByteBuffer encodeShared(Packet packet, AioConfig config, ProtocolEnum protocol) {
+        return new SharedEncodeContext(this, config, protocol).encode(packet);
+    }
+
+    /**
+     * 按指定配置与协议解码encodeShared()得到的数据，不经过插件
+     *
+     * @param buffer   读模式的缓冲区，应恰好包含一条消息
+     * @param config   解码使用的配置
+     * @param protocol 解码使用的协议
+     * @return         消息包，数据不足一条消息时返回null
+     * @throws AioDecoderException 协议未注册或解码失败
+     */
+    public Packet decodeShared(ByteBuffer buffer, AioConfig config, ProtocolEnum protocol) throws AioDecoderException {
+        return new SharedEncodeContext(this, config, protocol).decode(buffer);
+    }
+
+    /**
+     * 将encodeShared()得到的共享缓冲区投递到当前通道的输出流并发送
+     *
+     * @param buffer 共享缓冲区
+     * @return       通道已关闭或输出队列按溢出策略拒绝时返回false
+     */
+    public boolean writeShared(ByteBuffer buffer) {
+        return byteBuf.writeShared(buffer);
+    }
+
+    /**
+     * 通道数据输出出，编码完成后调用，当前线程暂存的数据以完整消息发布
      */
     protected void flush(){
-        byteBuf.flush();
+        byteBuf.flush(true);
+    }
+
+    /**
+     * 当前通道是否可写，待输出数据超过高水位时返回false，生产者应暂缓发送
+     *
+     * @return 布尔
+     */
+    public boolean isWritable() {
+        return true;
     }
 
     /**
@@ -198,6 +264,15 @@ public abstract class ChannelContext {
         this.protocol = protocol;
     }
 
+    /**
+     * 获取消息链路追踪
+     *
+     * @return 未开启追踪时返回null
+     */
+    public MessageTrace getMessageTrace() {
+        return messageTrace;
+    }
+
     /**
      * 读取通道
      * @param flip 是否flip
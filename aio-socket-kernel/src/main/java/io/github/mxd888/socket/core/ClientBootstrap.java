@@ -15,6 +15,7 @@
  */
 package io.github.mxd888.socket.core;
 
+import io.github.mxd888.socket.OverflowPolicyEnum;
 import io.github.mxd888.socket.Packet;
 import io.github.mxd888.socket.intf.AioHandler;
 import io.github.mxd888.socket.plugins.Plugin;
@@ -24,7 +25,8 @@ import io.github.mxd888.socket.utils.pool.memory.MemoryUnit;
 import io.github.mxd888.socket.utils.pool.memory.MemoryUnitFactory;
 import io.github.mxd888.socket.plugins.Plugins;
 import io.github.mxd888.socket.utils.AIOUtil;
-import io.github.mxd888.socket.utils.QuickTimerTask;
+import io.github.mxd888.socket.utils.TimingWheel;
+import io.github.mxd888.socket.metrics.MessageTracer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -195,6 +197,7 @@ public class ClientBootstrap {
         AsynchronousSocketChannel socketChannel = AsynchronousSocketChannel.open(asynchronousChannelGroup);
         if (this.memoryPool == null) {
             this.memoryPool = getConfig().getMemoryPoolFactory().create();
+            this.memoryPool.enableThreadCache(getConfig().getThreadCacheSize(), getConfig().getReadBufferSize(), getConfig().getWriteBufferSize());
         }
         Supplier<MemoryUnit> supplier = () -> readMemoryUnitFactory.createBuffer(memoryPool.allocateBufferPage());
         if (this.config.getSocketOptions() != null) {
@@ -254,7 +257,7 @@ public class ClientBootstrap {
      * 心跳
      */
     private void heartMessage() {
-        QuickTimerTask.SCHEDULED_EXECUTOR_SERVICE.schedule(()-> {
+        TimingWheel.DEFAULT.newTimeout(()-> {
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug("aio-socket version: {}; client kernel are sending heartbeat", AioConfig.VERSION);
             }
@@ -315,6 +318,15 @@ public class ClientBootstrap {
         return this.config;
     }
 
+    /**
+     * 获取内存池，可通过MemoryPool.getStats()查看各内存页的使用情况，启动前为null
+     *
+     * @return 内存池
+     */
+    public MemoryPool getMemoryPool() {
+        return this.memoryPool;
+    }
+
     /**
      * 重连访问项
      *
@@ -335,6 +347,17 @@ public class ClientBootstrap {
         return this;
     }
 
+    /**
+     * 开启内存池线程本地缓存，读写缓冲区回收后优先缓存在当前线程，供同线程再次申请时直接复用
+     *
+     * @param threadCacheSize 每个线程每种规格最多缓存的数量
+     * @return                this
+     */
+    public ClientBootstrap setThreadCache(int threadCacheSize) {
+        getConfig().setThreadCacheSize(threadCacheSize);
+        return this;
+    }
+
     /**
      * 设置写缓冲区大小
      *
@@ -348,6 +371,77 @@ public class ClientBootstrap {
         return this;
     }
 
+    /**
+     * 开启聚合写，一次系统调用输出多个待发送分片，SSL通道下自动关闭
+     *
+     * @param gatheringWriteNum 单次聚合写最多输出的分片数量
+     * @return                  this
+     */
+    public ClientBootstrap setGatheringWrite(int gatheringWriteNum) {
+        getConfig().setGatheringWriteNum(gatheringWriteNum);
+        return this;
+    }
+
+    /**
+     * 设置输出流待发送队列已满时的处理策略，默认SPILL
+     *
+     * @param overflowPolicy 溢出策略
+     * @return               this
+     */
+    public ClientBootstrap setWriteOverflowPolicy(OverflowPolicyEnum overflowPolicy) {
+        getConfig().setWriteOverflowPolicy(overflowPolicy);
+        return this;
+    }
+
+    /**
+     * 设置SPILL策略下每个连接溢出队列最多暂存的字节数，默认4MB，超过后拒绝写入
+     * 小于1时不限制，溢出队列无界，应同时通过setWriteWaterMark()开启写水位，由生产者根据isWritable()自行限流
+     *
+     * @param writeSpillLimit 溢出上限（字节）
+     * @return                this
+     */
+    public ClientBootstrap setWriteSpillLimit(long writeSpillLimit) {
+        getConfig().setWriteSpillLimit(writeSpillLimit);
+        return this;
+    }
+
+    /**
+     * 开启自适应读缓冲区，每个连接根据最近的读取量在[min, max]之间调整下一次读操作的缓冲区大小，
+     * 初始大小为readBufferSize
+     *
+     * @param readBufferMinSize 读缓冲区最小值
+     * @param readBufferMaxSize 读缓冲区最大值
+     * @return                  this
+     */
+    public ClientBootstrap setAdaptiveReadBuffer(int readBufferMinSize, int readBufferMaxSize) {
+        getConfig().setAdaptiveReadBuffer(readBufferMinSize, readBufferMaxSize);
+        return this;
+    }
+
+    /**
+     * 设置写水位，待输出数据超过高水位时通道变为不可写并暂停读，回落至低水位后恢复，
+     * 每次变化都会触发StateMachineEnum.WRITABILITY_CHANGED
+     *
+     * @param writeLowWaterMark  写低水位（字节）
+     * @param writeHighWaterMark 写高水位（字节）
+     * @return                   this
+     */
+    public ClientBootstrap setWriteWaterMark(long writeLowWaterMark, long writeHighWaterMark) {
+        getConfig().setWriteWaterMark(writeLowWaterMark, writeHighWaterMark);
+        return this;
+    }
+
+    /**
+     * 开启消息链路追踪，记录每个消息包在解码、处理、发送各阶段的排队与执行耗时
+     *
+     * @param messageTracer 消息链路追踪器，为null时关闭
+     * @return              this
+     */
+    public ClientBootstrap setMessageTracer(MessageTracer messageTracer) {
+        getConfig().setMessageTracer(messageTracer);
+        return this;
+    }
+
     /**
      * 设置读缓冲区大小
      *
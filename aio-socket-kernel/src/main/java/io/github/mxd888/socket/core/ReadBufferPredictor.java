@@ -0,0 +1,102 @@
+/*
+ *    Copyright 2019 The aio-socket Project
+ *
+ *    The aio-socket Project Licenses this file to you under the Apache License,
+ *    Version 2.0 (the "License"); you may not use this file except in compliance
+ *    with the License. You may obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.mxd888.socket.core;
+
+/**
+ * 单个连接的读缓冲区大小预测器
+ * 按2的幂在[最小值, 最大值]之间划分规格，读满缓冲区时扩大一级，连续两次读取量不足下一级时缩小一级
+ *
+ * @author MDong
+ * @version 2.10.1.v20211002-RELEASE
+ */
+final class ReadBufferPredictor {
+
+    /**
+     * 可选的缓冲区大小
+     */
+    private final int[] sizeTable;
+
+    /**
+     * 当前大小在sizeTable中的下标
+     */
+    private int index;
+
+    /**
+     * 上一次读取量已不足下一级，再次不足时缩小
+     */
+    private boolean decreaseNow;
+
+    /**
+     * 构造预测器
+     *
+     * @param minimum 最小读缓冲区大小
+     * @param initial 初始读缓冲区大小
+     * @param maximum 最大读缓冲区大小
+     */
+    ReadBufferPredictor(int minimum, int initial, int maximum) {
+        int count = 1;
+        for (long size = minimum; size < maximum; size <<= 1) {
+            count++;
+        }
+        this.sizeTable = new int[count];
+        for (int i = 0, size = minimum; i < count - 1; i++, size <<= 1) {
+            sizeTable[i] = size;
+        }
+        sizeTable[count - 1] = maximum;
+        while (index < count - 1 && sizeTable[index] < initial) {
+            index++;
+        }
+    }
+
+    /**
+     * 记录一次读取的字节数
+     *
+     * @param actual 实际读取的字节数
+     */
+    void record(int actual) {
+        if (index > 0 && actual <= sizeTable[index - 1]) {
+            if (decreaseNow) {
+                index--;
+                decreaseNow = false;
+            } else {
+                decreaseNow = true;
+            }
+        } else if (actual >= sizeTable[index]) {
+            index = Math.min(index + 1, sizeTable.length - 1);
+            decreaseNow = false;
+        }
+    }
+
+    /**
+     * 下一次读操作应使用的缓冲区大小
+     *
+     * @return 缓冲区大小
+     */
+    int nextSize() {
+        return sizeTable[index];
+    }
+
+    /**
+     * 当前缓冲区容量是否与预测大小相符，内存池可能分配出略大于申请值的空间
+     *
+     * @param capacity 当前缓冲区容量
+     * @return         布尔
+     */
+    boolean matches(int capacity) {
+        int size = sizeTable[index];
+        return capacity >= size && capacity < size << 1;
+    }
+}
@@ -30,7 +30,11 @@ final class ReadCompletionHandler implements CompletionHandler<Integer, TCPChann
 
     @Override
     public void completed(Integer result, TCPChannelContext channelContext) {
+        if (channelContext.dispatchToEventLoop(() -> completed(result, channelContext))) {
+            return;
+        }
         // 读取完成,result:实际读取的字节数。如果对方关闭连接则result=-1。
+        channelContext.recordRead(result);
         if (channelContext.runDecodeRunnable(result)) {
             return;
         }
@@ -56,6 +60,9 @@ final class ReadCompletionHandler implements CompletionHandler<Integer, TCPChann
      */
     @Override
     public void failed(Throwable exc, TCPChannelContext channelContext) {
+        if (channelContext.dispatchToEventLoop(() -> failed(exc, channelContext))) {
+            return;
+        }
         try {
             channelContext.getAioConfig().getHandler().stateEvent(channelContext, StateMachineEnum.INPUT_EXCEPTION, exc);
         } catch (Exception e) {
@@ -15,6 +15,8 @@
  */
 package io.github.mxd888.socket.core;
 
+import io.github.mxd888.socket.AdmissionPolicyEnum;
+import io.github.mxd888.socket.OverflowPolicyEnum;
 import io.github.mxd888.socket.intf.AioHandler;
 import io.github.mxd888.socket.plugins.Plugin;
 import io.github.mxd888.socket.utils.pool.memory.MemoryPoolFactory;
@@ -25,6 +27,9 @@ import io.github.mxd888.socket.intf.Handler;
 import io.github.mxd888.socket.plugins.Plugins;
 import io.github.mxd888.socket.utils.AIOUtil;
 import io.github.mxd888.socket.utils.ThreadUtils;
+import io.github.mxd888.socket.utils.pool.thread.EventLoop;
+import io.github.mxd888.socket.utils.pool.thread.EventLoopGroup;
+import io.github.mxd888.socket.metrics.MessageTracer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -40,7 +45,7 @@ import java.nio.channels.spi.AsynchronousChannelProvider;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.function.Function;
+import java.util.function.BiFunction;
 import java.util.function.Supplier;
 
 /**
@@ -63,6 +68,11 @@ public class ServerBootstrap {
      */
     private int workerThreadNum;
 
+    /**
+     * 作业线程池是否使用工作窃取线程池
+     */
+    private boolean workStealing;
+
     /**
      * 内存池
      */
@@ -78,6 +88,11 @@ public class ServerBootstrap {
      */
     private ExecutorService workerExecutorService;
 
+    /**
+     * 事件循环组，事件循环模式下使用
+     */
+    private EventLoopGroup eventLoopGroup;
+
     /**
      * 读完成处理类
      */
@@ -98,6 +113,11 @@ public class ServerBootstrap {
      */
     private AsynchronousServerSocketChannel serverSocketChannel;
 
+    /**
+     * 接入控制
+     */
+    private AdmissionController admissionController;
+
     /**
      * 服务器配置类
      */
@@ -106,7 +126,7 @@ public class ServerBootstrap {
     /**
      * socketChannel 和 ChannelContext联系
      */
-    private Function<AsynchronousSocketChannel, TCPChannelContext> aioChannelContextFunction;
+    private BiFunction<AsynchronousSocketChannel, EventLoop, TCPChannelContext> aioChannelContextFunction;
 
     /**
      * 虚拟内存工厂，这里为读操作获取虚拟内存
@@ -130,8 +150,8 @@ public class ServerBootstrap {
      */
     public void start() {
         startExecutorService();
-        start0(channel -> new TCPChannelContext(channel, getConfig(), this.aioReadCompletionHandler,
-                this.aioWriteCompletionHandler, this.memoryPool.allocateBufferPage(), this.workerExecutorService));
+        start0((channel, eventLoop) -> new TCPChannelContext(channel, getConfig(), this.aioReadCompletionHandler,
+                this.aioWriteCompletionHandler, this.memoryPool.allocateBufferPage(), this.workerExecutorService, eventLoop));
     }
 
     /**
@@ -139,7 +159,7 @@ public class ServerBootstrap {
      *
      * @param aioContextFunction 通道和上下文信息的联系
      */
-    private void start0(Function<AsynchronousSocketChannel, TCPChannelContext> aioContextFunction) {
+    private void start0(BiFunction<AsynchronousSocketChannel, EventLoop, TCPChannelContext> aioContextFunction) {
         try {
             checkAndResetConfig();
             this.aioChannelContextFunction = aioContextFunction;
@@ -147,6 +167,7 @@ public class ServerBootstrap {
             this.aioWriteCompletionHandler = new WriteCompletionHandler();
             if (this.memoryPool == null) {
                 this.memoryPool = getConfig().getMemoryPoolFactory().create();
+                this.memoryPool.enableThreadCache(getConfig().getThreadCacheSize(), getConfig().getReadBufferSize(), getConfig().getWriteBufferSize());
             }
             AsynchronousChannelProvider provider = AsynchronousChannelProvider.provider();
             this.asynchronousChannelGroup = provider.openAsynchronousChannelGroup(this.bossExecutorService, 0);
@@ -161,6 +182,9 @@ public class ServerBootstrap {
             } else {
                 this.serverSocketChannel.bind(new InetSocketAddress(getConfig().getPort()), getConfig().getBacklog());
             }
+            this.admissionController = new AdmissionController(getConfig(), this.memoryPool);
+            getConfig().setAdmissionController(this.admissionController);
+            this.admissionController.start();
             startAcceptThread();
             if (LOGGER.isInfoEnabled()) {
                 LOGGER.info("aio-socket version: {}; server kernel started successfully", AioConfig.VERSION);
@@ -173,18 +197,33 @@ public class ServerBootstrap {
 
     /**
      * 启动接受连接请求的监听
+     * 每次accept完成后先经接入控制判断：REJECT策略下过载时拒绝当前连接并继续accept；
+     * PAUSE策略下接纳当前连接后若已达上限则暂停accept，直至负载回落至下限
      */
     private void startAcceptThread() {
         this.serverSocketChannel.accept(null, new CompletionHandler<AsynchronousSocketChannel, Void>() {
             @Override
             public void completed(AsynchronousSocketChannel channel, Void attachment) {
+                boolean admitted = admissionController.admit();
                 try {
-                    serverSocketChannel.accept(attachment, this);
+                    if (getConfig().getAdmissionPolicy() == AdmissionPolicyEnum.REJECT || admissionController.canAdmit()) {
+                        serverSocketChannel.accept(attachment, this);
+                    } else {
+                        admissionController.pause(() -> resumeAccept(this));
+                    }
                 } catch (Throwable throwable) {
                     failed(throwable, attachment);
                     serverSocketChannel.accept(attachment, this);
                 } finally {
-                    initChannelContext(channel);
+                    if (!admitted) {
+                        admissionController.reject(channel);
+                    } else if (eventLoopGroup != null) {
+                        // 事件循环模式下连接的全部逻辑都在分配到的事件循环线程上执行
+                        EventLoop eventLoop = eventLoopGroup.next();
+                        eventLoop.execute(() -> initChannelContext(channel, eventLoop));
+                    } else {
+                        initChannelContext(channel, null);
+                    }
                 }
             }
             @Override
@@ -194,12 +233,30 @@ public class ServerBootstrap {
         });
     }
 
+    /**
+     * 负载回落后恢复accept
+     *
+     * @param acceptHandler accept回调
+     */
+    private void resumeAccept(CompletionHandler<AsynchronousSocketChannel, Void> acceptHandler) {
+        AsynchronousServerSocketChannel serverSocketChannel = this.serverSocketChannel;
+        if (serverSocketChannel == null || !serverSocketChannel.isOpen()) {
+            return;
+        }
+        try {
+            serverSocketChannel.accept(null, acceptHandler);
+        } catch (Throwable throwable) {
+            acceptHandler.failed(throwable, null);
+        }
+    }
+
     /**
      * 初始化每个链接通道
      *
-     * @param channel 用户通道
+     * @param channel   用户通道
+     * @param eventLoop 绑定的事件循环，非事件循环模式下为null
      */
-    private void initChannelContext(AsynchronousSocketChannel channel) {
+    private void initChannelContext(AsynchronousSocketChannel channel, EventLoop eventLoop) {
         //连接成功则构造ChannelContext对象
         Supplier<MemoryUnit> supplier = () -> readMemoryUnitFactory.createBuffer(memoryPool.allocateBufferPage());
         TCPChannelContext context = null;
@@ -210,16 +267,19 @@ public class ServerBootstrap {
             }
             if (acceptChannel != null) {
                 acceptChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
-                context = this.aioChannelContextFunction.apply(acceptChannel);
+                context = this.aioChannelContextFunction.apply(acceptChannel, eventLoop);
                 context.initTCPChannelContext(supplier);
             } else {
                 AIOUtil.close(channel);
+                admissionController.release();
             }
         } catch (Exception e) {
             e.printStackTrace();
             if (context == null) {
                 AIOUtil.close(channel);
+                admissionController.release();
             } else {
+                // 关闭通道时释放接入名额
                 context.close(true);
             }
         }
@@ -247,17 +307,27 @@ public class ServerBootstrap {
         }else {
             this.bossExecutorService = ThreadUtils.getGroupExecutor();
         }
-        if (this.workerThreadNum > 0) {
+        if (this.workStealing) {
+            this.workerExecutorService = this.workerThreadNum > 0
+                    ? ThreadUtils.getWorkStealingAioExecutor(this.workerThreadNum)
+                    : ThreadUtils.getWorkStealingAioExecutor();
+        } else if (this.workerThreadNum > 0) {
             this.workerExecutorService = ThreadUtils.getAioExecutor(this.workerThreadNum);
         }else {
             this.workerExecutorService = ThreadUtils.getAioExecutor();
         }
+        if (getConfig().getEventLoopNum() > 0) {
+            this.eventLoopGroup = new EventLoopGroup(getConfig().getEventLoopNum(), "aio-event-loop");
+        }
     }
 
     /**
      * 停止服务端
      */
     public void shutdown() {
+        if (this.admissionController != null) {
+            this.admissionController.stop();
+        }
         try {
             if (this.serverSocketChannel != null) {
                 this.serverSocketChannel.close();
@@ -281,6 +351,9 @@ public class ServerBootstrap {
         } catch (InterruptedException e) {
             e.printStackTrace();
         }
+        if (this.eventLoopGroup != null) {
+            this.eventLoopGroup.shutdown();
+        }
         if (this.memoryPool != null) {
             this.memoryPool.release();
         }
@@ -305,6 +378,15 @@ public class ServerBootstrap {
         return this.workerExecutorService;
     }
 
+    /**
+     * 获取内存池，可通过MemoryPool.getStats()查看各内存页的使用情况，启动前为null
+     *
+     * @return 内存池
+     */
+    public MemoryPool getMemoryPool() {
+        return this.memoryPool;
+    }
+
     /**
      * 设置线程池线程数量
      *
@@ -318,6 +400,21 @@ public class ServerBootstrap {
         return this;
     }
 
+    /**
+     * 设置线程池线程数量及作业线程池类型
+     * 工作窃取线程池中每个工作线程持有本地队列，连接按哈希归属固定线程，空闲线程窃取繁忙线程积压的连接任务，
+     * 避免所有连接争用同一个任务队列
+     *
+     * @param bossThreadNum   内核IO线程数量
+     * @param workerThreadNum 普通作业线程数量
+     * @param workStealing    是否使用工作窃取线程池
+     * @return                this
+     */
+    public ServerBootstrap setThreadNum(int bossThreadNum, int workerThreadNum, boolean workStealing) {
+        this.workStealing = workStealing;
+        return setThreadNum(bossThreadNum, workerThreadNum);
+    }
+
     /**
      * 设置内存池工厂
      *
@@ -329,6 +426,17 @@ public class ServerBootstrap {
         return this;
     }
 
+    /**
+     * 开启内存池线程本地缓存，读写缓冲区回收后优先缓存在当前线程，供同线程再次申请时直接复用
+     *
+     * @param threadCacheSize 每个线程每种规格最多缓存的数量
+     * @return                this
+     */
+    public ServerBootstrap setThreadCache(int threadCacheSize) {
+        getConfig().setThreadCacheSize(threadCacheSize);
+        return this;
+    }
+
     /**
      * 设置写缓冲区大小
      *
@@ -342,6 +450,179 @@ public class ServerBootstrap {
         return this;
     }
 
+    /**
+     * 开启聚合写，一次系统调用输出多个待发送分片，SSL通道下自动关闭
+     *
+     * @param gatheringWriteNum 单次聚合写最多输出的分片数量
+     * @return                  this
+     */
+    public ServerBootstrap setGatheringWrite(int gatheringWriteNum) {
+        getConfig().setGatheringWriteNum(gatheringWriteNum);
+        return this;
+    }
+
+    /**
+     * 设置输出流待发送队列已满时的处理策略，默认SPILL
+     *
+     * @param overflowPolicy 溢出策略
+     * @return               this
+     */
+    public ServerBootstrap setWriteOverflowPolicy(OverflowPolicyEnum overflowPolicy) {
+        getConfig().setWriteOverflowPolicy(overflowPolicy);
+        return this;
+    }
+
+    /**
+     * 设置SPILL策略下每个连接溢出队列最多暂存的字节数，默认4MB，超过后拒绝写入
+     * 小于1时不限制，溢出队列无界，应同时通过setWriteWaterMark()开启写水位，由生产者根据isWritable()自行限流
+     *
+     * @param writeSpillLimit 溢出上限（字节）
+     * @return                this
+     */
+    public ServerBootstrap setWriteSpillLimit(long writeSpillLimit) {
+        getConfig().setWriteSpillLimit(writeSpillLimit);
+        return this;
+    }
+
+    /**
+     * 开启自适应读缓冲区，每个连接根据最近的读取量在[min, max]之间调整下一次读操作的缓冲区大小，
+     * 初始大小为readBufferSize
+     *
+     * @param readBufferMinSize 读缓冲区最小值
+     * @param readBufferMaxSize 读缓冲区最大值
+     * @return                  this
+     */
+    public ServerBootstrap setAdaptiveReadBuffer(int readBufferMinSize, int readBufferMaxSize) {
+        getConfig().setAdaptiveReadBuffer(readBufferMinSize, readBufferMaxSize);
+        return this;
+    }
+
+    /**
+     * 开启事件循环模式，事件循环数量为CPU核数
+     *
+     * @return this
+     */
+    public ServerBootstrap setEventLoopModel() {
+        return setEventLoopModel(ThreadUtils.AVAILABLE_PROCESSORS);
+    }
+
+    /**
+     * 开启事件循环模式，每个连接在生命周期内固定绑定一个事件循环线程，
+     * 读、解码、处理、编码、写均在该线程上执行，不再经过HandlerTask/SendTask/DecodeTask转交作业线程池
+     *
+     * @param eventLoopNum 事件循环数量
+     * @return             this
+     */
+    public ServerBootstrap setEventLoopModel(int eventLoopNum) {
+        getConfig().setEventLoopNum(eventLoopNum);
+        return this;
+    }
+
+    /**
+     * 开启虚拟线程处理模式（需JDK 21+），每个有待处理消息的连接由一个虚拟线程按序执行handle，
+     * handle中可以直接执行阻塞操作；会同时开启多级处理模式，JDK不支持虚拟线程时回退到作业线程池
+     *
+     * @param virtualThreadHandler 是否开启
+     * @return                     this
+     */
+    public ServerBootstrap setVirtualThreadHandler(boolean virtualThreadHandler) {
+        getConfig().setVirtualThreadHandler(virtualThreadHandler);
+        if (virtualThreadHandler) {
+            getConfig().setMultilevelModel(true);
+        }
+        return this;
+    }
+
+    /**
+     * 设置写水位，待输出数据超过高水位时通道变为不可写并暂停读，回落至低水位后恢复，
+     * 每次变化都会触发StateMachineEnum.WRITABILITY_CHANGED
+     *
+     * @param writeLowWaterMark  写低水位（字节）
+     * @param writeHighWaterMark 写高水位（字节）
+     * @return                   this
+     */
+    public ServerBootstrap setWriteWaterMark(long writeLowWaterMark, long writeHighWaterMark) {
+        getConfig().setWriteWaterMark(writeLowWaterMark, writeHighWaterMark);
+        return this;
+    }
+
+    /**
+     * 设置存活连接数水位，连接数达到上限时按接入策略暂停或拒绝接入，回落至下限后恢复
+     *
+     * @param resumeConnections 恢复接入的连接数
+     * @param maxConnections    连接数上限
+     * @return                  this
+     */
+    public ServerBootstrap setConnectionWaterMark(int resumeConnections, int maxConnections) {
+        getConfig().setConnectionWaterMark(resumeConnections, maxConnections);
+        return this;
+    }
+
+    /**
+     * 设置内存池已用内存水位，已用内存达到上限时按接入策略暂停或拒绝接入，回落至下限后恢复；
+     * 已用内存每100毫秒采样一次
+     *
+     * @param memoryLowWaterMark  恢复接入的已用内存（字节）
+     * @param memoryHighWaterMark 已用内存上限（字节）
+     * @return                    this
+     */
+    public ServerBootstrap setMemoryWaterMark(long memoryLowWaterMark, long memoryHighWaterMark) {
+        getConfig().setMemoryWaterMark(memoryLowWaterMark, memoryHighWaterMark);
+        return this;
+    }
+
+    /**
+     * 设置过载时的接入策略，默认暂停accept
+     *
+     * @param admissionPolicy 接入策略
+     * @param rejectResponse  REJECT策略下关闭连接前写出的响应，可为null
+     * @return                this
+     */
+    public ServerBootstrap setAdmissionPolicy(AdmissionPolicyEnum admissionPolicy, byte[] rejectResponse) {
+        getConfig().setAdmissionPolicy(admissionPolicy, rejectResponse);
+        return this;
+    }
+
+    /**
+     * 开启消息链路追踪，记录每个消息包在解码、处理、发送各阶段的排队与执行耗时
+     *
+     * @param messageTracer 消息链路追踪器，为null时关闭
+     * @return              this
+     */
+    public ServerBootstrap setMessageTracer(MessageTracer messageTracer) {
+        getConfig().setMessageTracer(messageTracer);
+        return this;
+    }
+
+    /**
+     * 当前存活连接数
+     *
+     * @return 连接数，服务端未启动时为0
+     */
+    public int getConnectionCount() {
+        return this.admissionController == null ? 0 : this.admissionController.getConnections();
+    }
+
+    /**
+     * 因过载被拒绝的连接数
+     *
+     * @return 拒绝数
+     */
+    public long getRejectedCount() {
+        return this.admissionController == null ? 0 : this.admissionController.getRejected();
+    }
+
+    /**
+     * 使用紧凑的ID映射保存用户ID与集群ID，纯数字用户ID以long为键保存在开放寻址表中，
+     * 适用于百万级用户绑定的场景
+     *
+     * @return this
+     */
+    public ServerBootstrap setCompactIdRegistry() {
+        getConfig().setCompactIdRegistry(true);
+        return this;
+    }
+
     /**
      * 设置读缓冲区大小
      *
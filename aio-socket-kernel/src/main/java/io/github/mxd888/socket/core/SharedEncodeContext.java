@@ -0,0 +1,188 @@
+/*
+ *    Copyright 2019 The aio-socket Project
+ *
+ *    The aio-socket Project Licenses this file to you under the Apache License,
+ *    Version 2.0 (the "License"); you may not use this file except in compliance
+ *    with the License. You may obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.mxd888.socket.core;
+
+import io.github.mxd888.socket.OverflowPolicyEnum;
+import io.github.mxd888.socket.Packet;
+import io.github.mxd888.socket.ProtocolEnum;
+import io.github.mxd888.socket.exception.AioDecoderException;
+import io.github.mxd888.socket.intf.AioHandler;
+import io.github.mxd888.socket.utils.pool.memory.MemoryBlock;
+import io.github.mxd888.socket.utils.pool.memory.MemoryUnit;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+
+/**
+ * 一次性编解码使用的临时通道上下文，不对应真实连接
+ * 协议、配置、ID与属性默认取自模板通道，编码结果与直接向模板通道发送一致；
+ * 编码后的数据不会发送，而是收集为只读的共享缓冲区。isInvalid()始终为true，插件不应为其保存状态，
+ * 依赖通道状态的插件（如ACKPlugin的ACK计时）会跳过这类编码；
+ * 也可指定配置与协议，此时模板通道只提供内存页，用于集群链路按用户协议编解码转发的消息包；
+ * 编码使用的输出流按线程复用，共享缓冲区为堆外内存，各通道输出时无需再复制到临时的堆外缓冲区
+ *
+ * @author MDong
+ * @version 2.10.1.v20211002-RELEASE
+ */
+final class SharedEncodeContext extends ChannelContext {
+
+    /**
+     * 每个线程缓存一个编码用的输出流，内存页与模板通道一致时复用；使用期间从缓存中取出，嵌套编码时另建
+     */
+    private static final ThreadLocal<WriteBuffer[]> ENCODE_BUFFER = ThreadLocal.withInitial(() -> new WriteBuffer[1]);
+
+    /**
+     * 模板通道
+     */
+    private final ChannelContext template;
+
+    /**
+     * 编解码使用的配置
+     */
+    private final AioConfig config;
+
+    SharedEncodeContext(ChannelContext template) {
+        this(template, template.getAioConfig(), template.getProtocol());
+    }
+
+    SharedEncodeContext(ChannelContext template, AioConfig config, ProtocolEnum protocol) {
+        this.template = template;
+        this.config = config;
+        this.status = CHANNEL_STATUS_CLOSED;
+        setProtocol(protocol);
+    }
+
+    /**
+     * 编码消息并收集为共享缓冲区
+     *
+     * @param packet 消息包
+     * @return       读模式的只读缓冲区
+     */
+    ByteBuffer encode(Packet packet) {
+        WriteBuffer writeBuffer = acquireWriteBuffer();
+        this.byteBuf = writeBuffer;
+        boolean completed = false;
+        try {
+            getAioConfig().getHandler().encode(packet, this);
+            writeBuffer.flush(true);
+            int size = (int) writeBuffer.getPendingBytes();
+            ByteBuffer shared = ByteBuffer.allocateDirect(size);
+            MemoryUnit memoryUnit;
+            while ((memoryUnit = writeBuffer.pollItem()) != null) {
+                shared.put(memoryUnit.buffer());
+                memoryUnit.clean();
+            }
+            writeBuffer.written(size);
+            shared.flip();
+            completed = true;
+            return shared.asReadOnlyBuffer();
+        } finally {
+            this.byteBuf = null;
+            if (completed) {
+                ENCODE_BUFFER.get()[0] = writeBuffer;
+            } else {
+                // 编码失败时暂存区与队列中可能残留数据，不再复用
+                writeBuffer.close();
+            }
+        }
+    }
+
+    /**
+     * 取出当前线程缓存的输出流，内存页与模板通道不一致或正被外层编码使用时新建
+     */
+    private WriteBuffer acquireWriteBuffer() {
+        MemoryBlock memoryBlock = template.getWriteBuffer().memoryBlock();
+        WriteBuffer[] cached = ENCODE_BUFFER.get();
+        WriteBuffer writeBuffer = cached[0];
+        if (writeBuffer != null && writeBuffer.memoryBlock() == memoryBlock) {
+            cached[0] = null;
+            return writeBuffer;
+        }
+        return new WriteBuffer(memoryBlock, buffer -> {
+        }, config.getWriteBufferSize(), 16, OverflowPolicyEnum.SPILL, 0);
+    }
+
+    /**
+     * 以当前协议的处理器解码一条完整的消息，不经过插件
+     *
+     * @param buffer 读模式的缓冲区，应恰好包含一条消息
+     * @return       消息包，数据不足一条消息时返回null
+     * @throws AioDecoderException 协议未注册或解码失败
+     */
+    Packet decode(ByteBuffer buffer) throws AioDecoderException {
+        AioHandler handler = config.getPlugins().getAioHandler(getProtocol());
+        if (handler == null) {
+            throw new AioDecoderException("no handler for protocol: " + getProtocol());
+        }
+        return handler.decode(MemoryUnit.wrap(buffer), this);
+    }
+
+    @Override
+    public String getId() {
+        return template.getId();
+    }
+
+    @Override
+    public Object getAttachment() {
+        return template.getAttachment();
+    }
+
+    @Override
+    public <T> T getAttr(String s, Class<T> t) {
+        return template.getAttr(s, t);
+    }
+
+    @Override
+    public MemoryUnit getVirtualBuffer(int len) {
+        return template.getVirtualBuffer(len);
+    }
+
+    @Override
+    public MemoryUnit getReadBuffer() {
+        return null;
+    }
+
+    @Override
+    public void close(boolean immediate) {
+        // 临时通道始终处于关闭状态，编码用的输出流由encode()管理
+    }
+
+    @Override
+    public void signalRead(boolean flip) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public InetSocketAddress getLocalAddress() throws IOException {
+        return template.getLocalAddress();
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() throws IOException {
+        return template.getRemoteAddress();
+    }
+
+    @Override
+    public AioConfig getAioConfig() {
+        return config;
+    }
+
+    @Override
+    protected void sendPacket(Packet packet, boolean isBlock) {
+        throw new UnsupportedOperationException();
+    }
+}
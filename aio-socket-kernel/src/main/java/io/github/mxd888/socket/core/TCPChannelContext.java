@@ -19,12 +19,16 @@ import io.github.mxd888.socket.Monitor;
 import io.github.mxd888.socket.Packet;
 import io.github.mxd888.socket.StateMachineEnum;
 import io.github.mxd888.socket.exception.AioDecoderException;
+import io.github.mxd888.socket.plugins.ssl.SslAsynchronousSocketChannel;
 import io.github.mxd888.socket.task.DecodeTask;
 import io.github.mxd888.socket.task.HandlerTask;
 import io.github.mxd888.socket.task.SendTask;
+import io.github.mxd888.socket.utils.pool.memory.CompositeBuffer;
 import io.github.mxd888.socket.utils.pool.memory.MemoryBlock;
 import io.github.mxd888.socket.utils.pool.memory.MemoryUnit;
+import io.github.mxd888.socket.utils.pool.thread.EventLoop;
 import io.github.mxd888.socket.intf.Handler;
+import io.github.mxd888.socket.metrics.MessageTrace;
 import io.github.mxd888.socket.utils.AIOUtil;
 
 import java.io.IOException;
@@ -32,8 +36,10 @@ import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.AsynchronousSocketChannel;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
@@ -51,6 +57,11 @@ public final class TCPChannelContext extends ChannelContext{
      */
     private final AsynchronousSocketChannel channel;
 
+    /**
+     * 自适应读缓冲区大小预测器，未启用自适应时为null
+     */
+    private final ReadBufferPredictor readBufferPredictor;
+
     /**
      * 输出信号量,防止并发write导致异常
      */
@@ -86,6 +97,21 @@ public final class TCPChannelContext extends ChannelContext{
      */
     private MemoryUnit writeBuffer;
 
+    /**
+     * 聚合写模式下正在输出的分片
+     */
+    private MemoryUnit[] writeUnits;
+
+    /**
+     * 聚合写模式下正在输出的分片对应的ByteBuffer
+     */
+    private ByteBuffer[] writeBuffers;
+
+    /**
+     * 聚合写模式下正在输出的分片数量
+     */
+    private int writeUnitCount;
+
     /**
      * 消息处理逻辑执行器
      */
@@ -101,6 +127,21 @@ public final class TCPChannelContext extends ChannelContext{
      */
     private DecodeTask decodeTask;
 
+    /**
+     * 是否可写，待输出数据超过高水位时为false
+     */
+    private final AtomicBoolean writable = new AtomicBoolean(true);
+
+    /**
+     * 是否因不可写而暂停了读
+     */
+    private final AtomicBoolean readSuspended = new AtomicBoolean(false);
+
+    /**
+     * 连接绑定的事件循环，非事件循环模式下为null
+     */
+    private final EventLoop eventLoop;
+
     TCPChannelContext(AsynchronousSocketChannel channel,
                       final AioConfig config,
                       ReadCompletionHandler readCompletionHandler,
@@ -109,6 +150,15 @@ public final class TCPChannelContext extends ChannelContext{
         this(channel, config, readCompletionHandler, writeCompletionHandler, memoryBlock, null);
     }
 
+    TCPChannelContext(AsynchronousSocketChannel channel,
+                      final AioConfig config,
+                      ReadCompletionHandler readCompletionHandler,
+                      WriteCompletionHandler writeCompletionHandler,
+                      MemoryBlock memoryBlock,
+                      ExecutorService aioThreadPoolExecutor) {
+        this(channel, config, readCompletionHandler, writeCompletionHandler, memoryBlock, aioThreadPoolExecutor, null);
+    }
+
     /**
      * 构造通道上下文对象
      *
@@ -117,31 +167,60 @@ public final class TCPChannelContext extends ChannelContext{
      * @param readCompletionHandler  读回调
      * @param writeCompletionHandler 写回调
      * @param memoryBlock            绑定内存页
+     * @param aioThreadPoolExecutor  作业线程池
+     * @param eventLoop              绑定的事件循环，不为null时不再使用作业线程池，全部逻辑在事件循环线程上执行
      */
     TCPChannelContext(AsynchronousSocketChannel channel,
                       final AioConfig config,
                       ReadCompletionHandler readCompletionHandler,
                       WriteCompletionHandler writeCompletionHandler,
                       MemoryBlock memoryBlock,
-                      ExecutorService aioThreadPoolExecutor) {
+                      ExecutorService aioThreadPoolExecutor,
+                      EventLoop eventLoop) {
         this.channel = channel;
         this.readCompletionHandler = readCompletionHandler;
         this.writeCompletionHandler = writeCompletionHandler;
         this.aioConfig = config;
-        setAioExecutor(aioThreadPoolExecutor);
+        this.readBufferPredictor = config.isAdaptiveReadBuffer()
+                ? new ReadBufferPredictor(config.getReadBufferMinSize(), config.getReadBufferSize(), config.getReadBufferMaxSize())
+                : null;
+        this.eventLoop = eventLoop;
+        if (config.getMessageTracer() != null) {
+            this.messageTrace = config.getMessageTracer().newTrace(this);
+        }
+        setAioExecutor(eventLoop == null ? aioThreadPoolExecutor : null);
 
         // Java8 函数式编程的无返回函数
-        Consumer<WriteBuffer> flushConsumer = var -> {
-            if (!semaphore.tryAcquire()) {
-                return;
-            }
-            this.writeBuffer = var.poll();
-            if (writeBuffer == null) {
-                semaphore.release();
-            } else {
-                continueWrite(writeBuffer);
-            }
-        };
+        Consumer<WriteBuffer> flushConsumer;
+        if (isGatheringWrite()) {
+            this.writeUnits = new MemoryUnit[config.getGatheringWriteNum()];
+            this.writeBuffers = new ByteBuffer[config.getGatheringWriteNum()];
+            flushConsumer = var -> {
+                updateWritability();
+                if (!semaphore.tryAcquire()) {
+                    return;
+                }
+                this.writeUnitCount = var.pollItems(writeUnits, 0);
+                if (writeUnitCount == 0) {
+                    semaphore.release();
+                } else {
+                    continueGatheringWrite();
+                }
+            };
+        } else {
+            flushConsumer = var -> {
+                updateWritability();
+                if (!semaphore.tryAcquire()) {
+                    return;
+                }
+                this.writeBuffer = var.pollItem();
+                if (writeBuffer == null) {
+                    semaphore.release();
+                } else {
+                    continueWrite(writeBuffer);
+                }
+            };
+        }
         // 为当前ChannelContext添加对外输出流
         setWriteBuffer(memoryBlock, flushConsumer, getAioConfig().getWriteBufferSize(), 16);
         // 触发状态机
@@ -166,25 +245,37 @@ public final class TCPChannelContext extends ChannelContext{
         if (status == CHANNEL_STATUS_CLOSED) {
             return;
         }
-        final ByteBuffer readBuffer = this.readBuffer.buffer();
         final Handler handler = getAioConfig().getHandler();
-        while (readBuffer.hasRemaining() && status == CHANNEL_STATUS_ENABLED) {
-            Packet packet = null;
-            try {
-                if (getOldByteBuffer().isEmpty()) {
+        if (messageTrace != null) {
+            messageTrace.decodeStarted();
+        }
+        CompositeBuffer compositeBuffer = getCompositeBuffer();
+        if (!compositeBuffer.isEmpty()) {
+            // 大包拼接中，本次读到的数据交由组合缓冲区管理
+            compositeBuffer.addComponent(this.readBuffer);
+            this.readBuffer = null;
+            decodeComposite(handler, compositeBuffer);
+        }
+        if (this.readBuffer != null) {
+            final ByteBuffer readBuffer = this.readBuffer.buffer();
+            while (readBuffer.hasRemaining() && status == CHANNEL_STATUS_ENABLED) {
+                Packet packet = null;
+                try {
                     packet = handler.decode(this.readBuffer, this);
-                }else {
-                    getOldByteBuffer().offer(this.readBuffer);
-                    packet = handler.decode(getOldByteBuffer().peek(), this);
+                } catch (AioDecoderException e) {
+                    handler.stateEvent(this, StateMachineEnum.DECODE_EXCEPTION, e);
+                    e.printStackTrace();
                 }
-            } catch (AioDecoderException e) {
-                handler.stateEvent(this, StateMachineEnum.DECODE_EXCEPTION, e);
-                e.printStackTrace();
-            }
-            if (packet == null) {
-                break;
+                if (packet == null) {
+                    break;
+                }
+                aioHandler(packet);
             }
-            aioHandler(packet);
+        }
+        if (this.readBuffer != null && compositeBuffer.first() == this.readBuffer) {
+            // 解码时切出了读缓冲区的切片，读缓冲区已转交组合缓冲区管理，切片未释放前不能压缩
+            compositeBuffer.discardReadComponents();
+            this.readBuffer = compositeBuffer.detach();
         }
         if (eof || status == CHANNEL_STATUS_CLOSING) {
             close(false);
@@ -194,25 +285,85 @@ public final class TCPChannelContext extends ChannelContext{
         if (status == CHANNEL_STATUS_CLOSED) {
             return;
         }
-        if (readBuffer.capacity() == readBuffer.remaining()) {
-            // buffer 满了
-            if (getOldByteBuffer().isFull()) {
-                RuntimeException exception = new RuntimeException("readBuffer queue has overflow");
-                handler.stateEvent(this, StateMachineEnum.DECODE_EXCEPTION, exception);
-                throw exception;
-            }
-            if (getOldByteBuffer().isEmpty()) {
-                // 空间太小，申请一份空间继续读
-                getOldByteBuffer().offer(this.readBuffer);
-            }
-            this.readBuffer = getVirtualBuffer(getAioConfig().getReadBufferSize());
+        if (this.readBuffer == null) {
+            // 组合缓冲区仍在拼接，申请新的读缓冲区继续读
+            this.readBuffer = getVirtualBuffer(nextReadBufferSize());
             this.readBuffer.buffer().clear();
-        }else {
-            readBuffer.compact();
+        } else if (this.readBuffer.buffer().capacity() == this.readBuffer.buffer().remaining()) {
+            // buffer 满了，单个读缓冲区容纳不下一帧消息，转入组合缓冲区拼接
+            compositeBuffer.addComponent(this.readBuffer);
+            this.readBuffer = getVirtualBuffer(nextReadBufferSize());
+            this.readBuffer.buffer().clear();
+        } else if (!this.readBuffer.buffer().hasRemaining()
+                && readBufferPredictor != null
+                && !readBufferPredictor.matches(this.readBuffer.buffer().capacity())) {
+            // 数据已全部消费且预测大小发生变化，按新的大小更换读缓冲区
+            this.readBuffer.clean();
+            this.readBuffer = getVirtualBuffer(readBufferPredictor.nextSize());
+            this.readBuffer.buffer().clear();
+        } else {
+            this.readBuffer.buffer().compact();
+        }
+        if (!writable.get()) {
+            // 待输出数据超过高水位，暂停读直至回落到低水位
+            readSuspended.set(true);
+            if (!writable.get() || !readSuspended.compareAndSet(true, false)) {
+                return;
+            }
         }
         continueRead(this.readBuffer);
     }
 
+    /**
+     * 记录一次读操作实际读取的字节数，用于预测下一次读缓冲区的大小
+     *
+     * @param result 实际读取的字节数
+     */
+    void recordRead(int result) {
+        if (messageTrace != null) {
+            messageTrace.readCompleted();
+        }
+        if (readBufferPredictor != null && result > 0) {
+            readBufferPredictor.record(result);
+        }
+    }
+
+    /**
+     * 下一次读操作申请的读缓冲区大小，未启用自适应时为固定的readBufferSize
+     *
+     * @return 读缓冲区大小
+     */
+    private int nextReadBufferSize() {
+        return readBufferPredictor == null ? getAioConfig().getReadBufferSize() : readBufferPredictor.nextSize();
+    }
+
+    /**
+     * 从组合缓冲区中解码，剩余数据回落到单个分片时将其交还为读缓冲区
+     *
+     * @param handler         处理器
+     * @param compositeBuffer 组合缓冲区
+     */
+    private void decodeComposite(Handler handler, CompositeBuffer compositeBuffer) {
+        while (status == CHANNEL_STATUS_ENABLED && compositeBuffer.readableBytes() > 0) {
+            compositeBuffer.discardReadComponents();
+            Packet packet = null;
+            try {
+                packet = handler.decode(compositeBuffer.first(), this);
+            } catch (AioDecoderException e) {
+                handler.stateEvent(this, StateMachineEnum.DECODE_EXCEPTION, e);
+                e.printStackTrace();
+            }
+            if (packet == null) {
+                // 避免消息头被分片边界截断
+                compositeBuffer.consolidate();
+                break;
+            }
+            aioHandler(packet);
+        }
+        compositeBuffer.discardReadComponents();
+        this.readBuffer = compositeBuffer.detach();
+    }
+
     /**
      * 触发通道读方法
      *
@@ -230,7 +381,12 @@ public final class TCPChannelContext extends ChannelContext{
      * 触发AIO的写操作,
      * 需要调用控制同步
      */
-    void writeCompleted() {
+    void writeCompleted(int result) {
+        byteBuf.written(result);
+        if (messageTrace != null) {
+            messageTrace.written(byteBuf.getDrainedBytes());
+        }
+        updateWritability();
         if (writeBuffer == null) {
             writeBuffer = byteBuf.pollItem();
         } else if (!writeBuffer.buffer().hasRemaining()) {
@@ -241,13 +397,95 @@ public final class TCPChannelContext extends ChannelContext{
             continueWrite(writeBuffer);
             return;
         }
+        releaseWrite();
+    }
+
+    /**
+     * 聚合写完成后触发，回收已输出完毕的分片，
+     * 未输出完毕的分片前移，并从待输出队列中补齐后继续聚合写
+     */
+    void gatheringWriteCompleted(long result) {
+        byteBuf.written(result);
+        if (messageTrace != null) {
+            messageTrace.written(byteBuf.getDrainedBytes());
+        }
+        updateWritability();
+        int written = 0;
+        while (written < writeUnitCount && !writeBuffers[written].hasRemaining()) {
+            writeUnits[written].clean();
+            written++;
+        }
+        if (written > 0) {
+            int remain = writeUnitCount - written;
+            System.arraycopy(writeUnits, written, writeUnits, 0, remain);
+            for (int i = remain; i < writeUnitCount; i++) {
+                writeUnits[i] = null;
+                writeBuffers[i] = null;
+            }
+            writeUnitCount = remain;
+        }
+        writeUnitCount += byteBuf.pollItems(writeUnits, writeUnitCount);
+        if (writeUnitCount > 0) {
+            continueGatheringWrite();
+            return;
+        }
+        releaseWrite();
+    }
+
+    /**
+     * 根据待输出数据量与水位切换可写状态，状态变化时触发WRITABILITY_CHANGED，恢复可写时继续被暂停的读
+     * 生产者与输出线程可能并发调用，每次切换后重新读取待输出数据量，保证最终状态与数据量一致
+     */
+    private void updateWritability() {
+        long highWaterMark = aioConfig.getWriteHighWaterMark();
+        if (highWaterMark <= 0) {
+            return;
+        }
+        for (;;) {
+            long pendingBytes = byteBuf.getPendingBytes();
+            if (writable.get()) {
+                if (pendingBytes <= highWaterMark || !writable.compareAndSet(true, false)) {
+                    return;
+                }
+                aioConfig.getHandler().stateEvent(this, StateMachineEnum.WRITABILITY_CHANGED, null);
+            } else {
+                if (pendingBytes > aioConfig.getWriteLowWaterMark() || !writable.compareAndSet(false, true)) {
+                    return;
+                }
+                aioConfig.getHandler().stateEvent(this, StateMachineEnum.WRITABILITY_CHANGED, null);
+                if (readSuspended.compareAndSet(true, false)) {
+                    resumeRead();
+                }
+            }
+        }
+    }
+
+    /**
+     * 恢复被暂停的读，可能在输出线程上执行，
+     * 与close互斥并在锁内重新检查状态，避免向已归还内存池的读缓冲区发起读操作
+     */
+    private synchronized void resumeRead() {
+        if (status == CHANNEL_STATUS_ENABLED && readBuffer != null) {
+            continueRead(readBuffer);
+        }
+    }
+
+    @Override
+    public boolean isWritable() {
+        return writable.get();
+    }
+
+    /**
+     * 释放输出信号量，并检查是否存在遗留的待输出数据
+     */
+    private void releaseWrite() {
         semaphore.release();
         //此时可能是Closing或Closed状态
         if (status != CHANNEL_STATUS_ENABLED) {
             close();
         } else {
-            //也许此时有新的消息通过write方法添加到writeCacheQueue中
-            flush();
+            //也许此时有新的消息通过write方法添加到待输出队列中
+            byteBuf.flushItems();
         }
     }
 
@@ -264,6 +502,29 @@ public final class TCPChannelContext extends ChannelContext{
         channel.write(writeBuffer.buffer(), 0L, TimeUnit.MILLISECONDS, this, writeCompletionHandler);
     }
 
+    /**
+     * 触发聚合写操作，一次系统调用输出writeUnits中的全部分片
+     */
+    private void continueGatheringWrite() {
+        for (int i = 0; i < writeUnitCount; i++) {
+            writeBuffers[i] = writeUnits[i].buffer();
+        }
+        Monitor monitor = getAioConfig().getMonitor();
+        if (monitor != null) {
+            monitor.beforeWrite(this);
+        }
+        channel.write(writeBuffers, 0, writeUnitCount, 0L, TimeUnit.MILLISECONDS, this, writeCompletionHandler.gathering());
+    }
+
+    /**
+     * 是否启用聚合写，SSL通道不支持ByteBuffer[]写操作
+     *
+     * @return 是否启用
+     */
+    private boolean isGatheringWrite() {
+        return aioConfig.getGatheringWriteNum() > 1 && !(channel instanceof SslAsynchronousSocketChannel);
+    }
+
     private void flipRead(boolean eof) {
         this.eof = eof;
         this.readBuffer.buffer().flip();
@@ -280,6 +541,24 @@ public final class TCPChannelContext extends ChannelContext{
         }
     }
 
+    /**
+     * 事件循环模式下，将IO回调转交连接绑定的事件循环线程执行
+     *
+     * @param task 回调逻辑
+     * @return     是否已转交，非事件循环模式或已处于事件循环线程时返回false
+     */
+    boolean dispatchToEventLoop(Runnable task) {
+        if (eventLoop == null || eventLoop.inEventLoop()) {
+            return false;
+        }
+        try {
+            eventLoop.execute(task);
+        } catch (RejectedExecutionException e) {
+            close(true);
+        }
+        return true;
+    }
+
     /**
      * 设置aio-socket线程池
      * @param aioThreadPoolExecutor 线程池
@@ -298,23 +577,42 @@ public final class TCPChannelContext extends ChannelContext{
      * @param packet 消息包
      */
     private void aioHandler(Packet packet) {
+        MessageTrace messageTrace = this.messageTrace;
+        if (messageTrace != null) {
+            messageTrace.decoded(packet);
+        }
         if (getAioConfig().isMultilevelModel() && handlerTask != null && handlerTask.addTask(packet)) {
             handlerTask.execute();
         }else {
-            Packet handle = getAioConfig().getHandler().handle(this, packet);
-            if (handle != null) {
-                sendPacket(handle, false);
+            Handler handler = getAioConfig().getHandler();
+            if (messageTrace != null) {
+                messageTrace.handleStarted(packet);
+            }
+            try {
+                Packet handle = handler.handle(this, packet);
+                if (handle != null) {
+                    sendPacket(handle, false);
+                }
+            } finally {
+                if (messageTrace != null) {
+                    messageTrace.handleEnded();
+                }
+                handler.handleCompleted(this, packet);
             }
         }
+        if (messageTrace != null) {
+            // 同一次读出的下一个消息包从此刻开始解码
+            messageTrace.decodeStarted();
+        }
     }
 
     /**
      * 调用解码处理器
-     * @param integer 读结果
-     * @return        如果不存在解码处理器则返回false
+     * @param result 读结果
+     * @return       如果不存在解码处理器则返回false
      */
-    protected boolean runDecodeRunnable(Integer integer) {
-        if (this.decodeTask != null && this.decodeTask.addTask(integer)) {
+    protected boolean runDecodeRunnable(int result) {
+        if (this.decodeTask != null && this.decodeTask.addTask(result)) {
             this.decodeTask.execute();
             return true;
         }else {
@@ -331,16 +629,29 @@ public final class TCPChannelContext extends ChannelContext{
         if (immediate) {
             try {
                 this.byteBuf.close();
-                readBuffer.clean();
+                if (readBuffer != null) {
+                    readBuffer.clean();
+                }
+                getCompositeBuffer().release();
                 if (writeBuffer != null) {
                     writeBuffer.clean();
                     writeBuffer = null;
                 }
+                for (int i = 0; i < writeUnitCount; i++) {
+                    writeUnits[i].clean();
+                    writeUnits[i] = null;
+                    writeBuffers[i] = null;
+                }
+                writeUnitCount = 0;
             } finally {
                 AIOUtil.close(channel);
+                AdmissionController admissionController = getAioConfig().getAdmissionController();
+                if (admissionController != null) {
+                    admissionController.release();
+                }
                 getAioConfig().getHandler().stateEvent(this, StateMachineEnum.CHANNEL_CLOSED, null);
             }
-        } else if ((writeBuffer == null || !writeBuffer.buffer().hasRemaining()) && byteBuf.isEmpty()) {
+        } else if ((writeBuffer == null || !writeBuffer.buffer().hasRemaining()) && writeUnitCount == 0 && byteBuf.isEmpty()) {
             close(true);
         } else {
             getAioConfig().getHandler().stateEvent(this, StateMachineEnum.CHANNEL_CLOSING, null);
@@ -367,11 +678,17 @@ public final class TCPChannelContext extends ChannelContext{
 
     @Override
     protected void sendPacket(Packet packet, boolean isBlock) {
+        if (messageTrace != null) {
+            messageTrace.sent(packet);
+        }
         if (!isBlock && this.sendTask != null && this.sendTask.addTask(packet)) {
             this.sendTask.execute();
         }else {
             synchronized (this) {
                 getAioConfig().getHandler().encode(packet, this);
+                if (messageTrace != null) {
+                    messageTrace.encoded(packet, byteBuf.getStreamPosition());
+                }
             }
             flush();
         }
@@ -379,7 +696,8 @@ public final class TCPChannelContext extends ChannelContext{
 
     @Override
     public MemoryUnit getReadBuffer() {
-        return this.readBuffer;
+        MemoryUnit readBuffer = this.readBuffer;
+        return readBuffer != null ? readBuffer : getCompositeBuffer().first();
     }
 
 }
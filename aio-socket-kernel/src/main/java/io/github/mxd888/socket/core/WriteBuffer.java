@@ -15,19 +15,27 @@
  */
 package io.github.mxd888.socket.core;
 
+import io.github.mxd888.socket.OverflowPolicyEnum;
 import io.github.mxd888.socket.utils.pool.memory.MemoryBlock;
 import io.github.mxd888.socket.utils.pool.memory.MemoryUnit;
+import io.github.mxd888.socket.utils.queue.AioRingQueue;
 
 import java.io.IOException;
-import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
 /**
  * 包装当前会话分配到的虚拟Buffer,提供流式操作方式
- * 首先将待发送的数据暂存到writeInBuf
- * 在执行发送，若没有人往这个通道写入数据则立刻发送
- * 否则存进待发送队列items
+ * 每个写入线程把数据暂存到线程独享的暂存分片中，flush时整块发布到无锁待发送队列items，再尝试触发发送；
+ * 暂存分片不足时按倍数扩容而不是提前发布，因此两次flush之间写入的数据总在同一个分片中，多个线程同时写入也不会交错，
+ * 写入与发布都不需要所属通道的对象锁，队列本身是多生产者环形队列
+ * items已满时按溢出策略处理，不会阻塞写入线程
+ *
+ * 暂存分片只对写入它的线程可见：同一条消息必须在同一线程中写入并flush，其他线程的flush、poll与close不会发布它
  *
  * @author MDong
  * @version 2.10.1.v20211002-RELEASE
@@ -35,68 +43,94 @@ import java.util.function.Consumer;
 public final class WriteBuffer {
 
     /**
-     * 存储已就绪待输出的数据
+     * 每个写入线程独享的暂存区，同一时刻只服务于一个输出流
      */
-    private final MemoryUnit[] items;
+    private static final ThreadLocal<Staging> STAGING = ThreadLocal.withInitial(Staging::new);
 
     /**
-     * 为当前 WriteBuffer 提供数据存放功能的缓存页 用于申请内存空间
+     * 存储已就绪待输出的数据，多生产者无锁环形队列
      */
-    private final MemoryBlock memoryBlock;
+    private final AioRingQueue<MemoryUnit> items;
 
     /**
-     * 缓冲区数据刷新Function，执行发送的具体逻辑函数
+     * 溢出队列，SPILL策略下items已满时暂存溢出的数据
      */
-    private final Consumer<WriteBuffer> consumer;
+    private final ConcurrentLinkedQueue<MemoryUnit> spills = new ConcurrentLinkedQueue<>();
 
     /**
-     * 默认内存块大小 写操作所申请的空间初始大小，默认128字节
+     * 溢出队列中的字节数
      */
-    private final int chunkSize;
+    private final AtomicLong spilledBytes = new AtomicLong();
 
     /**
-     * items 读索引位
+     * SPILL策略下溢出队列的字节数上限，小于1时不限制
      */
-    private int takeIndex;
+    private final long spillLimit;
 
     /**
-     * items 写索引位
+     * DROP_OLDEST策略下不是以完整消息开头和结尾的分片，这些分片不可丢弃
      */
-    private int putIndex;
+    private final Set<MemoryUnit> fragments;
 
     /**
-     * items 中存放的缓冲数据数量
+     * 已发布到待输出队列但尚未输出到网络的字节数
      */
-    private int count;
+    private final AtomicLong pendingBytes = new AtomicLong();
 
     /**
-     * 暂存当前业务正在输出的数据,输出完毕后会存放到items中
+     * 累计发布到待输出队列的字节数
      */
-    private MemoryUnit writeInBuf;
+    private final AtomicLong publishedBytes = new AtomicLong();
 
     /**
-     * 当前WriteBuffer是否已关闭
+     * 累计离开待输出队列的字节数，包括已输出到网络的和按溢出策略丢弃的
+     */
+    private final AtomicLong drainedBytes = new AtomicLong();
+
+    /**
+     * items已满时的处理策略
+     */
+    private final OverflowPolicyEnum overflowPolicy;
+
+    /**
+     * 为当前 WriteBuffer 提供数据存放功能的缓存页 用于申请内存空间
+     */
+    private final MemoryBlock memoryBlock;
+
+    /**
+     * 缓冲区数据刷新Function，执行发送的具体逻辑函数
+     */
+    private final Consumer<WriteBuffer> consumer;
+
+    /**
+     * 默认内存块大小 写操作所申请的空间初始大小，默认128字节
      */
-    private boolean closed = false;
+    private final int chunkSize;
 
     /**
-     * 辅助数组
+     * 当前WriteBuffer是否已关闭
      */
-    private byte[] bytes;
+    private volatile boolean closed = false;
 
     /**
      * 输出流对象
      *
-     * @param memoryBlock 所在内存块
-     * @param consumer    调用底层IO通讯
-     * @param chunkSize   输出流大小（单位字节）
-     * @param capacity    最大带输出队列容量
+     * @param memoryBlock    所在内存块
+     * @param consumer       调用底层IO通讯
+     * @param chunkSize      输出流大小（单位字节）
+     * @param capacity       最大带输出队列容量
+     * @param overflowPolicy 待输出队列已满时的处理策略
+     * @param spillLimit     SPILL策略下溢出队列的字节数上限，小于1时不限制
      */
-    WriteBuffer(MemoryBlock memoryBlock, Consumer<WriteBuffer> consumer, int chunkSize, int capacity) {
+    WriteBuffer(MemoryBlock memoryBlock, Consumer<WriteBuffer> consumer, int chunkSize, int capacity,
+                OverflowPolicyEnum overflowPolicy, long spillLimit) {
         this.memoryBlock = memoryBlock;
         this.consumer = consumer;
-        this.items = new MemoryUnit[capacity];
+        this.items = new AioRingQueue<>(capacity);
         this.chunkSize = chunkSize;
+        this.overflowPolicy = overflowPolicy == null ? OverflowPolicyEnum.SPILL : overflowPolicy;
+        this.spillLimit = spillLimit;
+        this.fragments = this.overflowPolicy == OverflowPolicyEnum.DROP_OLDEST ? ConcurrentHashMap.newKeySet() : null;
     }
 
     /**
@@ -123,7 +157,7 @@ public final class WriteBuffer {
      * @throws IOException 写异常
      */
     public void writeShort(short v) throws IOException {
-        byte[] bytes = initCacheBytes();
+        byte[] bytes = staging().bytes;
         bytes[0] = (byte) ((v >>> 8) & 0xFF);
         bytes[1] = (byte) (v & 0xFF);
         write(bytes, 0, 2);
@@ -133,12 +167,8 @@ public final class WriteBuffer {
      * 写byte
      * @param b byte数值
      */
-    public synchronized void writeByte(byte b) {
-        if (writeInBuf == null) {
-            writeInBuf = memoryBlock.allocate(chunkSize);
-        }
-        writeInBuf.buffer().put(b);
-        flushWriteBuffer(false);
+    public void writeByte(byte b) {
+        reserve(staging(), 1).put(b);
     }
 
     /**
@@ -147,7 +177,7 @@ public final class WriteBuffer {
      * @throws IOException 写异常
      */
     public void writeInt(int v) throws IOException {
-        byte[] bytes = initCacheBytes();
+        byte[] bytes = staging().bytes;
         bytes[0] = (byte) ((v >>> 24) & 0xFF);
         bytes[1] = (byte) ((v >>> 16) & 0xFF);
         bytes[2] = (byte) ((v >>> 8) & 0xFF);
@@ -162,7 +192,7 @@ public final class WriteBuffer {
      * @throws IOException IO异常
      */
     public void writeLong(long v) throws IOException {
-        byte[] bytes = initCacheBytes();
+        byte[] bytes = staging().bytes;
         bytes[0] = (byte) ((v >>> 56) & 0xFF);
         bytes[1] = (byte) ((v >>> 48) & 0xFF);
         bytes[2] = (byte) ((v >>> 40) & 0xFF);
@@ -179,173 +209,463 @@ public final class WriteBuffer {
     }
 
     /**
-     * 高并发的难处理之处（极易发生死锁），当传入int后离开write方法，但没有传输完成所以就没有flush（即，没有释放锁）；
-     * 因为离开了write方法，所以另一个线程可以进来了，它进来后由于没有获得锁所以处于等待中，
-     * 而由于之前的还没传输完所以它有来传输，由于write方法被锁住所以进不来
-     * 即服务器处于死锁状态
+     * 写入byte数组，暂存分片不足时扩容，直到flush才发布
      * @param b                 待输出的byte数组
      * @param off               相对位置
      * @param len               有效长度
      * @throws IOException      IO异常
      */
-    public synchronized void write(byte[] b, int off, int len) throws IOException {
-        if (writeInBuf == null) {
-            writeInBuf = memoryBlock.allocate(Math.max(chunkSize, len));
-        }
-        ByteBuffer writeBuffer = writeInBuf.buffer();
+    public void write(byte[] b, int off, int len) throws IOException {
+        Staging staging = staging();
         if (closed) {
-            writeInBuf.clean();
-            writeInBuf = null;
+            if (staging.chunk != null) {
+                staging.chunk.clean();
+                staging.chunk = null;
+            }
             throw new IOException("writeBuffer has closed");
         }
-        int remaining = writeBuffer.remaining();
-        if (remaining > len) {
-            writeBuffer.put(b, off, len);
-        } else {
-            writeBuffer.put(b, off, remaining);
-            flushWriteBuffer(true);
-            if (len > remaining) {
-                write(b, off + remaining, len - remaining);
+        reserve(staging, len).put(b, off, len);
+    }
+
+    /**
+     * 写入ByteBuffer中的剩余数据，写入后src的position移动到limit
+     *
+     * @param src          读模式的缓冲区
+     * @throws IOException IO异常
+     */
+    public void write(ByteBuffer src) throws IOException {
+        Staging staging = staging();
+        if (closed) {
+            if (staging.chunk != null) {
+                staging.chunk.clean();
+                staging.chunk = null;
             }
+            throw new IOException("writeBuffer has closed");
         }
-
+        reserve(staging, src.remaining()).put(src);
     }
 
-    private byte[] initCacheBytes() {
-        if (bytes != null) {
-            return bytes;
+    /**
+     * 获取当前线程的暂存区并切换到当前输出流
+     * 线程在另一个输出流中尚有未flush的数据时，先将其作为不完整的分片发布给原输出流
+     *
+     * @return 暂存区
+     */
+    private Staging staging() {
+        Staging staging = STAGING.get();
+        WriteBuffer owner = staging.owner;
+        if (owner == this) {
+            return staging;
         }
-        synchronized (WriteBuffer.class) {
-            if (bytes != null) {
-                return bytes;
+        if (owner != null) {
+            if (staging.chunk != null && staging.chunk.buffer().position() > 0) {
+                owner.publishStaging(staging, false);
+            } else if (staging.chunk != null) {
+                staging.chunk.clean();
+                staging.chunk = null;
+            }
+            if (!staging.boundary) {
+                staging.interrupted = owner;
             }
-            bytes = new byte[8];
-            return bytes;
         }
+        staging.owner = this;
+        // 回到此前在消息中途离开的输出流时，后续数据不是从消息边界开始
+        staging.boundary = staging.interrupted != this;
+        if (!staging.boundary) {
+            staging.interrupted = null;
+        }
+        return staging;
     }
 
     /**
-     * 把暂存的buffer发送出去
+     * 确保暂存分片至少还能写入len个字节，不足时申请更大的分片并迁移已写入的数据
      *
-     * @param forceFlush 是否立刻发送  强制冲洗，若通道正在被使用则将数据存入items数组
+     * @param staging 当前线程的暂存区
+     * @param len     待写入的字节数
+     * @return        写模式的暂存缓冲区
      */
-    private void flushWriteBuffer(boolean forceFlush) {
-        if (!forceFlush && writeInBuf.buffer().hasRemaining()) {
-            return;
+    private ByteBuffer reserve(Staging staging, int len) {
+        MemoryUnit chunk = staging.chunk;
+        if (chunk == null) {
+            chunk = memoryBlock.allocate(Math.max(chunkSize, len));
+            staging.chunk = chunk;
+            return chunk.buffer();
         }
-        consumer.accept(this);
-        // 检查是否已经发送出去了
-        if (writeInBuf == null || writeInBuf.buffer().position() == 0) {
+        ByteBuffer buffer = chunk.buffer();
+        if (buffer.remaining() >= len) {
+            return buffer;
+        }
+        MemoryUnit larger = memoryBlock.allocate(Math.max(buffer.capacity() << 1, buffer.position() + len));
+        buffer.flip();
+        larger.buffer().put(buffer);
+        chunk.clean();
+        staging.chunk = larger;
+        return larger.buffer();
+    }
+
+    /**
+     * 发布当前线程的暂存分片
+     *
+     * @param staging    当前线程的暂存区，owner为当前输出流
+     * @param messageEnd 分片是否在消息边界结束
+     */
+    private void publishStaging(Staging staging, boolean messageEnd) {
+        MemoryUnit memoryUnit = staging.chunk;
+        staging.chunk = null;
+        boolean start = staging.boundary;
+        staging.boundary = messageEnd;
+        if (messageEnd) {
+            // 停在消息边界时不再需要记住输出流，避免线程长期引用已关闭的连接
+            staging.owner = null;
+        }
+        memoryUnit.buffer().flip();
+        publish(memoryUnit, start, messageEnd);
+    }
+
+    /**
+     * 将分片放入待输出队列，队列已满时按溢出策略处理
+     * 从消息中途开始的分片，其前半部分已经入队，拒绝它会使对端收到被截断的消息，因此不受溢出策略约束，直接进入溢出队列
+     *
+     * @param memoryUnit 已切换为读模式的分片
+     * @param start      分片是否从消息边界开始
+     * @param end        分片是否在消息边界结束
+     */
+    private void publish(MemoryUnit memoryUnit, boolean start, boolean end) {
+        //防止因close诱发内存泄露
+        if (closed) {
+            memoryUnit.clean();
             return;
         }
-        // 有人在发送，这个消息进入等待队列  writeInBuf修改为读模式
-        writeInBuf.buffer().flip();
-        MemoryUnit memoryUnit = writeInBuf;
-        writeInBuf = null;
-        try {
-            while (count == items.length) {
-                this.wait();
-                //防止因close诱发内存泄露
-                if (closed) {
-                    memoryUnit.clean();
-                    return;
-                }
+        int bytes = memoryUnit.buffer().remaining();
+        publishedBytes.addAndGet(bytes);
+        pendingBytes.addAndGet(bytes);
+        if (!(start && end) && fragments != null) {
+            // 先登记再入队，分片一旦对丢弃方可见就已被标记
+            fragments.add(memoryUnit);
+        }
+        if (!start) {
+            if (!spills.isEmpty() || !items.offer(memoryUnit)) {
+                spill(memoryUnit, bytes);
             }
-
-            items[putIndex] = memoryUnit;
-            if (++putIndex == items.length) {
-                putIndex = 0;
+        } else if (!offer(memoryUnit, bytes)) {
+            if (fragments != null) {
+                fragments.remove(memoryUnit);
             }
-            count++;
+            publishedBytes.addAndGet(-bytes);
+            pendingBytes.addAndGet(-bytes);
+            memoryUnit.clean();
+            throw new RuntimeException("writeBuffer queue has overflow");
+        }
+        if (closed) {
+            // 与close并发时，close可能已清空队列，由发布方回收遗留的分片
+            discard();
+        }
+    }
 
-        } catch (InterruptedException e1) {
-            throw new RuntimeException(e1);
+    /**
+     * 按溢出策略入队
+     *
+     * @param memoryUnit 分片
+     * @param bytes      分片字节数
+     * @return           false:按策略拒绝
+     */
+    private boolean offer(MemoryUnit memoryUnit, int bytes) {
+        // 溢出队列非空时新数据也必须进入溢出队列，保证输出顺序
+        if (spills.isEmpty()) {
+            if (items.offer(memoryUnit)) {
+                return true;
+            }
+        } else if (overflowPolicy != OverflowPolicyEnum.SPILL) {
+            // 溢出队列中是必须按序输出的消息后半部分，当前分片从消息边界开始，可以直接拒绝
+            return false;
         }
+        switch (overflowPolicy) {
+            case SPILL:
+                if (spillLimit > 0 && spilledBytes.get() + bytes > spillLimit) {
+                    return false;
+                }
+                spill(memoryUnit, bytes);
+                return true;
+            case DROP_OLDEST:
+                for (;;) {
+                    if (items.offer(memoryUnit)) {
+                        return true;
+                    }
+                    // 只丢弃由完整消息组成的分片，队头是消息片段时拒绝当前分片
+                    MemoryUnit oldest = items.pollIf(unit -> !fragments.contains(unit));
+                    if (oldest != null) {
+                        int dropped = oldest.buffer().remaining();
+                        pendingBytes.addAndGet(-dropped);
+                        drainedBytes.addAndGet(dropped);
+                        oldest.clean();
+                        continue;
+                    }
+                    MemoryUnit head = items.peek();
+                    if (head != null && fragments.contains(head)) {
+                        return false;
+                    }
+                }
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 放入溢出队列
+     *
+     * @param memoryUnit 分片
+     * @param bytes      分片字节数
+     */
+    private void spill(MemoryUnit memoryUnit, int bytes) {
+        spilledBytes.addAndGet(bytes);
+        spills.offer(memoryUnit);
     }
 
     /**
-     * 刷新缓冲区，将数据发送出去
+     * 刷新缓冲区，将当前线程暂存的数据发布并发送出去
+     * 业务直接调用时不能确定数据是否停在消息边界，DROP_OLDEST策略下这部分数据不会被丢弃
      */
     public void flush() {
+        flush(false);
+    }
+
+    /**
+     * 刷新缓冲区
+     *
+     * @param messageEnd 暂存的数据是否停在消息边界，内核在编码完成后以true调用
+     */
+    void flush(boolean messageEnd) {
         if (closed) {
             throw new RuntimeException("OutputStream has closed");
         }
-        if (this.count > 0) {
+        Staging staging = STAGING.get();
+        if (staging.owner == this && staging.chunk != null && staging.chunk.buffer().position() > 0) {
+            publishStaging(staging, messageEnd);
+        }
+        if (hasItems()) {
             consumer.accept(this);
-            return;
         }
-        if (writeInBuf != null && writeInBuf.buffer().position() > 0) {
+    }
+
+    /**
+     * 仅发送待输出队列中已发布的数据，不触碰暂存区
+     * 供输出线程在释放输出权后检查遗留数据使用
+     */
+    void flushItems() {
+        if (!closed && hasItems()) {
             consumer.accept(this);
         }
     }
 
-    public synchronized void close() {
+    public void close() {
         if (closed) {
             return;
         }
         flush();
         closed = true;
-        if (writeInBuf != null) {
-            writeInBuf.clean();
-            writeInBuf = null;
+        Staging staging = STAGING.get();
+        if (staging.owner == this) {
+            if (staging.chunk != null) {
+                staging.chunk.clean();
+                staging.chunk = null;
+            }
+            staging.owner = null;
         }
+        discard();
+    }
+
+    /**
+     * 回收队列中全部已发布的分片
+     */
+    private void discard() {
         MemoryUnit byteBuf;
-        while ((byteBuf = poll()) != null) {
+        while ((byteBuf = pollItem()) != null) {
             byteBuf.clean();
         }
     }
 
+    /**
+     * 将只读的共享缓冲区投递到待输出队列，投递前先发布当前线程暂存的数据以保证输出顺序
+     * 共享缓冲区以独立的视图投递，多个输出流可同时输出同一份数据，输出完毕后无需回收
+     *
+     * @param buffer 读模式的共享缓冲区
+     * @return       已关闭或按溢出策略拒绝时返回false
+     */
+    boolean writeShared(ByteBuffer buffer) {
+        if (closed) {
+            return false;
+        }
+        try {
+            Staging staging = STAGING.get();
+            if (staging.owner == this && staging.chunk != null && staging.chunk.buffer().position() > 0) {
+                publishStaging(staging, false);
+            }
+            publish(MemoryUnit.wrap(buffer.duplicate()), true, true);
+        } catch (RuntimeException e) {
+            return false;
+        }
+        consumer.accept(this);
+        return true;
+    }
+
+    /**
+     * 为当前输出流提供内存空间的内存页
+     *
+     * @return 内存页
+     */
+    MemoryBlock memoryBlock() {
+        return memoryBlock;
+    }
+
+    /**
+     * 已发布但尚未输出到网络的字节数，包含正在输出中的数据
+     *
+     * @return 字节数
+     */
+    public long getPendingBytes() {
+        return pendingBytes.get();
+    }
+
+    /**
+     * 输出线程每完成一次写操作后扣减已输出的字节数
+     *
+     * @param bytes 本次输出的字节数
+     */
+    void written(long bytes) {
+        pendingBytes.addAndGet(-bytes);
+        drainedBytes.addAndGet(bytes);
+    }
+
+    /**
+     * 累计写入输出流的字节数，包含当前线程暂存尚未发布的数据
+     * 其他线程在此之后、当前线程发布之前发布的数据会排在前面，因此并发写入时只是近似的结束位置
+     *
+     * @return 字节数
+     */
+    public long getStreamPosition() {
+        Staging staging = STAGING.get();
+        long position = publishedBytes.get();
+        if (staging.owner == this && staging.chunk != null) {
+            position += staging.chunk.buffer().position();
+        }
+        return position;
+    }
+
+    /**
+     * 累计离开待输出队列的字节数，不小于某条消息编码完成时的{@link #getStreamPosition()}即表示该消息已输出或被丢弃
+     *
+     * @return 字节数
+     */
+    public long getDrainedBytes() {
+        return drainedBytes.get();
+    }
+
+    /**
+     * 待输出队列或溢出队列中是否存在已发布的数据
+     *
+     * @return true:有,false:无
+     */
+    private boolean hasItems() {
+        return !items.isEmpty() || !spills.isEmpty();
+    }
 
     /**
-     * 是否存在待输出的数据
+     * 是否存在已发布或当前线程暂存的待输出数据
      *
      * @return true:有,false:无
      */
     boolean isEmpty() {
-        return count == 0 && (writeInBuf == null || writeInBuf.buffer().position() == 0);
+        if (hasItems()) {
+            return false;
+        }
+        Staging staging = STAGING.get();
+        return staging.owner != this || staging.chunk == null || staging.chunk.buffer().position() == 0;
     }
 
     /**
-     * 从带输出队列获取一个待发送消息
+     * 从带输出队列获取一个待发送消息，items消费完后再消费溢出队列
      *
      * @return VirtualBuffer类型的消息
      */
     MemoryUnit pollItem() {
-        if (count == 0) {
-            return null;
-        }
-        synchronized (this) {
-            MemoryUnit x = items[takeIndex];
-            items[takeIndex] = null;
-            if (++takeIndex == items.length) {
-                takeIndex = 0;
-            }
-            if (count-- == items.length) {
-                this.notifyAll();
+        MemoryUnit item = items.poll();
+        if (item == null && !spills.isEmpty()) {
+            item = spills.poll();
+            if (item != null) {
+                spilledBytes.addAndGet(-item.buffer().remaining());
             }
-            return x;
         }
+        if (item != null && fragments != null && !fragments.isEmpty()) {
+            fragments.remove(item);
+        }
+        return item;
     }
 
     /**
-     * 获取并移除当前缓冲队列中头部的VirtualBuffer
+     * 从待输出队列批量获取待发送消息，供聚合写使用
+     *
+     * @param units  存放消息的数组
+     * @param offset 数组中开始存放的位置
+     * @return       本次获取到的消息数量
+     */
+    int pollItems(MemoryUnit[] units, int offset) {
+        int num = 0;
+        MemoryUnit item;
+        while (offset + num < units.length && (item = pollItem()) != null) {
+            units[offset + num++] = item;
+        }
+        return num;
+    }
+
+    /**
+     * 获取并移除当前缓冲队列中头部的VirtualBuffer，队列为空时取出当前线程暂存的数据
      *
      * @return 待输出的VirtualBuffer
      */
-    public synchronized MemoryUnit poll() {
+    public MemoryUnit poll() {
         MemoryUnit item = pollItem();
         if (item != null) {
             return item;
         }
-        if (writeInBuf != null && writeInBuf.buffer().position() > 0) {
+        Staging staging = STAGING.get();
+        MemoryUnit chunk = staging.chunk;
+        if (staging.owner == this && chunk != null && chunk.buffer().position() > 0) {
             // 将暂存器里面的数据更改为读模式，一会将其读出来并发送
-            writeInBuf.buffer().flip();
-            MemoryUnit buffer = writeInBuf;
-            writeInBuf = null;
-            return buffer;
-        } else {
-            return null;
+            chunk.buffer().flip();
+            staging.chunk = null;
+            return chunk;
         }
+        return null;
     }
 
-}
\ No newline at end of file
+    /**
+     * 写入线程的暂存区
+     */
+    private static final class Staging {
+
+        /**
+         * 暂存分片当前服务的输出流
+         */
+        private WriteBuffer owner;
+
+        /**
+         * 暂存分片，写模式
+         */
+        private MemoryUnit chunk;
+
+        /**
+         * 暂存分片的起点是否为消息边界
+         */
+        private boolean boundary = true;
+
+        /**
+         * 在消息中途被切换走的输出流
+         */
+        private WriteBuffer interrupted;
+
+        /**
+         * 编码基本类型使用的辅助数组
+         */
+        private final byte[] bytes = new byte[8];
+    }
+}
@@ -28,14 +28,53 @@ import java.nio.channels.CompletionHandler;
  */
 final class WriteCompletionHandler implements CompletionHandler<Integer, TCPChannelContext> {
 
+    /**
+     * 聚合写回调，ByteBuffer[]的写结果为long类型
+     */
+    private final CompletionHandler<Long, TCPChannelContext> gatheringHandler = new CompletionHandler<Long, TCPChannelContext>() {
+        @Override
+        public void completed(Long result, TCPChannelContext channelContext) {
+            if (channelContext.dispatchToEventLoop(() -> completed(result, channelContext))) {
+                return;
+            }
+            try {
+                Monitor monitor = channelContext.getAioConfig().getMonitor();
+                if (monitor != null) {
+                    monitor.afterWrite(channelContext, result.intValue());
+                }
+                // 回收已写完的分片，未写完的分片继续参与下一次聚合写
+                channelContext.gatheringWriteCompleted(result);
+            } catch (Exception e) {
+                failed(e, channelContext);
+            }
+        }
+
+        @Override
+        public void failed(Throwable exc, TCPChannelContext channelContext) {
+            WriteCompletionHandler.this.failed(exc, channelContext);
+        }
+    };
+
+    /**
+     * 获取聚合写回调
+     *
+     * @return 聚合写回调
+     */
+    CompletionHandler<Long, TCPChannelContext> gathering() {
+        return gatheringHandler;
+    }
+
     @Override
     public void completed(Integer result, TCPChannelContext channelContext) {
+        if (channelContext.dispatchToEventLoop(() -> completed(result, channelContext))) {
+            return;
+        }
         try {
             Monitor monitor = channelContext.getAioConfig().getMonitor();
             if (monitor != null) {
                 monitor.afterWrite(channelContext, result);
             }
-            channelContext.writeCompleted();
+            channelContext.writeCompleted(result);
         } catch (Exception e) {
             failed(e, channelContext);
         }
@@ -43,6 +82,9 @@ final class WriteCompletionHandler implements CompletionHandler<Integer, TCPChan
 
     @Override
     public void failed(Throwable exc, TCPChannelContext channelContext) {
+        if (channelContext.dispatchToEventLoop(() -> failed(exc, channelContext))) {
+            return;
+        }
         try {
             channelContext.getAioConfig().getHandler().stateEvent(channelContext, StateMachineEnum.OUTPUT_EXCEPTION, exc);
             channelContext.close();
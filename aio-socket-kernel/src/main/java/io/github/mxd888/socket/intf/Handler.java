@@ -47,6 +47,17 @@ public interface Handler extends StateMachineEvent{
      */
     Packet decode(final MemoryUnit readBuffer, ChannelContext channelContext) throws AioDecoderException;
 
+    /**
+     * 消息处理完毕回调，在handle执行完成后触发（无论是否成功）
+     * 解码时通过AIOUtil.getSliceFromByteBuffer持有读缓冲区切片的消息包应在此释放切片，
+     * 切片全部释放前其覆盖的读缓冲区不会被压缩或复用
+     *
+     * @param channelContext 用户上下文
+     * @param packet         已处理的消息包
+     */
+    default void handleCompleted(ChannelContext channelContext, Packet packet) {
+    }
+
     /**
      * 编码回调方法
      *
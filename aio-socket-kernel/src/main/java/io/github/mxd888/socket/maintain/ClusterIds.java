@@ -15,8 +15,14 @@
  */
 package io.github.mxd888.socket.maintain;
 
-import java.util.HashMap;
+import io.github.mxd888.socket.utils.map.IdMap;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 /**
  * 集群消息业务逻辑类
@@ -29,7 +35,25 @@ public class ClusterIds {
     /**
      * 将用户ID与所在集群服务器ID进行映射、存储到Map中
      */
-    private final Map<String, String> users = new HashMap<>();
+    private final IdMap<String> users;
+
+    /**
+     * 集群服务器ID的唯一实例，集群规模有限，大量用户共享同一个服务器ID对象
+     */
+    private final Map<String, String> serverIds = new ConcurrentHashMap<>();
+
+    public ClusterIds() {
+        this(false);
+    }
+
+    /**
+     * 集群消息业务逻辑类
+     *
+     * @param compact 是否使用紧凑的ID映射，纯数字用户ID不再保留String键
+     */
+    public ClusterIds(boolean compact) {
+        this.users = compact ? IdMap.compact() : IdMap.concurrent();
+    }
 
     /**
      * 绑定用户与集群服务器ID的关系
@@ -37,8 +61,21 @@ public class ClusterIds {
      * @param userId   用户ID
      * @param serverId 用户所在机器编号
      */
-    public final synchronized void join(String userId, String serverId) {
-        users.put(userId, serverId);
+    public final void join(String userId, String serverId) {
+        users.put(userId, intern(serverId));
+    }
+
+    /**
+     * 批量绑定用户与集群服务器ID的关系
+     *
+     * @param userIds  用户ID
+     * @param serverId 用户所在机器编号
+     */
+    public final void joinAll(Collection<String> userIds, String serverId) {
+        serverId = intern(serverId);
+        for (String userId : userIds) {
+            users.put(userId, serverId);
+        }
     }
 
     /**
@@ -47,13 +84,20 @@ public class ClusterIds {
      * @param userId 用户ID
      */
     public final void remove(String userId) {
-        String context = users.get(userId);
-        if (context == null) {
-            return;
-        }
         users.remove(userId);
     }
 
+    /**
+     * 批量删除用户
+     *
+     * @param userIds 用户ID
+     */
+    public final void removeAll(Collection<String> userIds) {
+        for (String userId : userIds) {
+            users.remove(userId);
+        }
+    }
+
     /**
      * 根据用户ID获取所在集群服务器的ID
      *
@@ -63,4 +107,46 @@ public class ClusterIds {
     public final String get(String userId) {
         return users.get(userId);
     }
+
+    /**
+     * 遍历绑定在指定集群服务器上的用户
+     *
+     * @param serverId 集群服务器ID
+     * @param consumer 用户ID消费者
+     */
+    public final void forEachUser(String serverId, Consumer<String> consumer) {
+        users.forEach((userId, server) -> {
+            if (server.equals(serverId)) {
+                consumer.accept(userId);
+            }
+        });
+    }
+
+    /**
+     * 解除绑定在指定集群服务器上的全部用户，集群服务器下线时使用
+     *
+     * @param serverId 集群服务器ID
+     */
+    public final void removeServer(String serverId) {
+        // 紧凑映射遍历时持有分段读锁，先收集再删除
+        List<String> userIds = new ArrayList<>();
+        forEachUser(serverId, userIds::add);
+        for (String userId : userIds) {
+            users.remove(userId, serverId);
+        }
+    }
+
+    /**
+     * 已绑定的用户数量
+     *
+     * @return 数量
+     */
+    public int size() {
+        return users.size();
+    }
+
+    private String intern(String serverId) {
+        String existing = serverIds.putIfAbsent(serverId, serverId);
+        return existing == null ? serverId : existing;
+    }
 }
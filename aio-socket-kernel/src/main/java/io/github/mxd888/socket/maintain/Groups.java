@@ -16,16 +16,22 @@
 package io.github.mxd888.socket.maintain;
 
 import io.github.mxd888.socket.Packet;
-import io.github.mxd888.socket.core.Aio;
+import io.github.mxd888.socket.ProtocolEnum;
 import io.github.mxd888.socket.core.ChannelContext;
 
-import java.util.HashSet;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 群组业务逻辑类
+ * 群组与成员集合均为并发容器，加入与退出只锁定群组所在的哈希桶；
+ * 维护通道到所属群组的反向索引，断开连接时只需遍历该通道加入过的群组；
+ * 群发时每种协议只编码一次，编码结果以只读共享缓冲区投递给各成员的输出流；
+ * 群组创建或清空时通知监听器，集群据此向其他节点同步本节点持有成员的群组
  *
  * @author MDong
  * @version 2.10.1.v20211002-RELEASE
@@ -34,19 +40,37 @@ public class Groups {
 
     private final Map<String, GroupUnit> channelGroup = new ConcurrentHashMap<>();
 
+    /**
+     * 通道所加入的群组
+     */
+    private final Map<ChannelContext, Set<String>> channelToGroups = new ConcurrentHashMap<>();
+
+    /**
+     * 群组创建或清空的监听器
+     */
+    private volatile GroupStateListener groupStateListener;
+
     /**
      * 将ChannelContext加入群组group
      *
      * @param group 群组ID
      * @param context 用户上下文
      */
-    public final synchronized void join(String group, ChannelContext context) {
-        GroupUnit groupUnit = channelGroup.get(group);
-        if (groupUnit == null) {
-            groupUnit = new GroupUnit();
-            channelGroup.put(group, groupUnit);
+    public final void join(String group, ChannelContext context) {
+        boolean[] created = new boolean[1];
+        channelGroup.compute(group, (key, groupUnit) -> {
+            if (groupUnit == null) {
+                groupUnit = new GroupUnit();
+                created[0] = true;
+            }
+            groupUnit.groupList.add(context);
+            // 在群组所在哈希桶的锁内更新反向索引，与同一群组的退出操作保持一致
+            channelToGroups.computeIfAbsent(context, channel -> ConcurrentHashMap.newKeySet()).add(group);
+            return groupUnit;
+        });
+        if (created[0]) {
+            fireStateChanged(group);
         }
-        groupUnit.groupList.add(context);
     }
 
     /**
@@ -54,14 +78,19 @@ public class Groups {
      * @param group    群组ID
      * @param context  被移除的ChannelContext
      */
-    public final synchronized void remove(String group, ChannelContext context) {
-        GroupUnit groupUnit = channelGroup.get(group);
-        if (groupUnit == null) {
-            return;
-        }
-        groupUnit.groupList.remove(context);
-        if (groupUnit.groupList.isEmpty()) {
-            channelGroup.remove(group);
+    public final void remove(String group, ChannelContext context) {
+        boolean[] removed = new boolean[1];
+        channelGroup.computeIfPresent(group, (key, groupUnit) -> {
+            channelToGroups.computeIfPresent(context, (channel, groups) -> {
+                groups.remove(group);
+                return groups.isEmpty() ? null : groups;
+            });
+            GroupUnit result = removeMember(groupUnit, context);
+            removed[0] = result == null;
+            return result;
+        });
+        if (removed[0]) {
+            fireStateChanged(group);
         }
     }
 
@@ -71,13 +100,50 @@ public class Groups {
      * @param context 被移除的ChannelContext
      */
     public final void remove(ChannelContext context) {
-        for (String group : channelGroup.keySet()) {
-            remove(group, context);
+        Set<String> groups = channelToGroups.remove(context);
+        if (groups == null) {
+            return;
         }
+        for (String group : groups) {
+            boolean[] removed = new boolean[1];
+            channelGroup.computeIfPresent(group, (key, groupUnit) -> {
+                GroupUnit result = removeMember(groupUnit, context);
+                removed[0] = result == null;
+                return result;
+            });
+            if (removed[0]) {
+                fireStateChanged(group);
+            }
+        }
+    }
+
+    /**
+     * 群组在本节点是否有成员
+     *
+     * @param group 群组ID
+     * @return      布尔
+     */
+    public final boolean contains(String group) {
+        return channelGroup.containsKey(group);
+    }
+
+    /**
+     * 本节点有成员的群组
+     *
+     * @return 群组ID的只读视图
+     */
+    public final Set<String> groupIds() {
+        return Collections.unmodifiableSet(channelGroup.keySet());
+    }
+
+    public void setGroupStateListener(GroupStateListener groupStateListener) {
+        this.groupStateListener = groupStateListener;
     }
 
     /**
      * 群发
+     * 同一协议的成员共享一次编码，插件只在编码时执行一次，不会针对每个成员执行；
+     * 与逐个成员调用Aio.send()不同，群发的消息不经过ACKPlugin的ACK跟踪，也不会超时重发
      *
      * @param group          群组ID
      * @param packet         消息包
@@ -88,20 +154,48 @@ public class Groups {
         if (groupUnit == null) {
             return;
         }
-        if (channelContext == null) {
-            for (ChannelContext context : groupUnit.groupList) {
-                Aio.send(context, packet);
-            }
-            return;
-        }
+        // 同一协议的成员共享一份编码结果
+        Map<ProtocolEnum, ByteBuffer> encoded = new HashMap<>(4);
         for (ChannelContext context : groupUnit.groupList) {
-            if (channelContext != context) {
-                Aio.send(context, packet);
+            if (channelContext == context || context.isInvalid()) {
+                continue;
             }
+            ByteBuffer buffer = encoded.get(context.getProtocol());
+            if (buffer == null) {
+                buffer = context.encodeShared(packet);
+                encoded.put(context.getProtocol(), buffer);
+            }
+            context.writeShared(buffer);
+        }
+    }
+
+    /**
+     * 从群组的成员集合中移除用户
+     *
+     * @return 群组为空时返回null，使群组一并被移除
+     */
+    private static GroupUnit removeMember(GroupUnit groupUnit, ChannelContext context) {
+        groupUnit.groupList.remove(context);
+        return groupUnit.groupList.isEmpty() ? null : groupUnit;
+    }
+
+    private void fireStateChanged(String group) {
+        GroupStateListener listener = this.groupStateListener;
+        if (listener != null) {
+            listener.stateChanged(group);
         }
     }
 
+    /**
+     * 群组创建或清空的监听器，回调在锁外执行，监听器应以contains读取群组的最新状态
+     */
+    @FunctionalInterface
+    public interface GroupStateListener {
+
+        void stateChanged(String group);
+    }
+
     private static class GroupUnit {
-        Set<ChannelContext> groupList = new HashSet<>();
+        Set<ChannelContext> groupList = ConcurrentHashMap.newKeySet();
     }
 }
@@ -16,9 +16,10 @@
 package io.github.mxd888.socket.maintain;
 
 import io.github.mxd888.socket.core.ChannelContext;
+import io.github.mxd888.socket.utils.map.IdMap;
 
+import java.util.Collection;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * ID业务逻辑类
@@ -28,7 +29,20 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public class Ids {
 
-    private final Map<String, ChannelContext> channelIds = new ConcurrentHashMap<>();
+    private final IdMap<ChannelContext> channelIds;
+
+    public Ids() {
+        this(false);
+    }
+
+    /**
+     * ID业务逻辑类
+     *
+     * @param compact 是否使用紧凑的ID映射，纯数字用户ID不再保留String键
+     */
+    public Ids(boolean compact) {
+        this.channelIds = compact ? IdMap.compact() : IdMap.concurrent();
+    }
 
     /**
      * 将ChannelContext加入channelIds
@@ -36,23 +50,52 @@ public class Ids {
      * @param userId 用户ID
      * @param context 用户上下文
      */
-    public final synchronized void join(String userId, ChannelContext context) {
+    public final void join(String userId, ChannelContext context) {
         channelIds.put(userId, context);
     }
 
+    /**
+     * 批量绑定用户ID
+     *
+     * @param contexts 用户ID与用户上下文
+     */
+    public final void joinAll(Map<String, ChannelContext> contexts) {
+        for (Map.Entry<String, ChannelContext> entry : contexts.entrySet()) {
+            channelIds.put(entry.getKey(), entry.getValue());
+        }
+    }
+
     /**
      * 移除指定ID
      *
      * @param userId 用户ID
      */
     public final void remove(String userId) {
-        ChannelContext context = channelIds.get(userId);
-        if (context == null) {
-            return;
-        }
         channelIds.remove(userId);
     }
 
+    /**
+     * 仅当ID仍绑定在指定上下文上时移除，避免移除同一用户新连接的绑定
+     *
+     * @param userId  用户ID
+     * @param context 用户上下文
+     * @return        是否移除
+     */
+    public final boolean remove(String userId, ChannelContext context) {
+        return channelIds.remove(userId, context);
+    }
+
+    /**
+     * 批量移除ID
+     *
+     * @param userIds 用户ID
+     */
+    public final void removeAll(Collection<String> userIds) {
+        for (String userId : userIds) {
+            channelIds.remove(userId);
+        }
+    }
+
     /**
      * 根据ID获取ChannelContext
      *
@@ -63,4 +106,13 @@ public class Ids {
         return channelIds.get(userId);
     }
 
+    /**
+     * 已绑定的ID数量
+     *
+     * @return 数量
+     */
+    public int size() {
+        return channelIds.size();
+    }
+
 }
@@ -0,0 +1,54 @@
+/*
+ *    Copyright 2019 The aio-socket Project
+ *
+ *    The aio-socket Project Licenses this file to you under the Apache License,
+ *    Version 2.0 (the "License"); you may not use this file except in compliance
+ *    with the License. You may obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.mxd888.socket.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 计数器，只增不减，从不重置；吞吐量由采集端对相邻两次采样相减得到
+ *
+ * @author MDong
+ * @version 2.10.1.v20211002-RELEASE
+ */
+public final class Counter {
+
+    /**
+     * 累计值
+     */
+    private final LongAdder value = new LongAdder();
+
+    Counter() {
+    }
+
+    public void increment() {
+        value.increment();
+    }
+
+    /**
+     * 累加
+     *
+     * @param delta 增量，不能为负数
+     */
+    public void add(long delta) {
+        if (delta > 0) {
+            value.add(delta);
+        }
+    }
+
+    public long get() {
+        return value.sum();
+    }
+}
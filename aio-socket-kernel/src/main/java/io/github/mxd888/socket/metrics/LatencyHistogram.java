@@ -0,0 +1,169 @@
+/*
+ *    Copyright 2019 The aio-socket Project
+ *
+ *    The aio-socket Project Licenses this file to you under the Apache License,
+ *    Version 2.0 (the "License"); you may not use this file except in compliance
+ *    with the License. You may obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.mxd888.socket.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 延迟直方图，参照HdrHistogram的对数线性分桶
+ * 每个2的幂区间再等分为32个子桶，任意记录值的相对误差不超过1/32；桶在构造时一次分配，记录时只做一次原子自增，
+ * 不分配对象也不加锁；记录值为纳秒，超过上限的值计入最后一个桶
+ *
+ * @author MDong
+ * @version 2.10.1.v20211002-RELEASE
+ */
+public final class LatencyHistogram {
+
+    /**
+     * 子桶精度位数
+     */
+    private static final int SUB_BUCKET_BITS = 5;
+
+    /**
+     * 每个2的幂区间的子桶数
+     */
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * 可区分的最大值的位数，2^36纳秒约68秒
+     */
+    private static final int MAX_VALUE_BITS = 36;
+
+    /**
+     * 桶数量
+     */
+    private static final int BUCKET_COUNT = (MAX_VALUE_BITS - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+
+    /**
+     * 各桶的记录数
+     */
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+    /**
+     * 记录总数
+     */
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * 记录值之和（纳秒）
+     */
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * 最大记录值（纳秒）
+     */
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    LatencyHistogram() {
+    }
+
+    /**
+     * 记录一次耗时
+     *
+     * @param nanos 耗时（纳秒），负数按0记录
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        buckets.incrementAndGet(bucketIndex(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * 记录值之和
+     *
+     * @return 纳秒
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * 最大记录值
+     *
+     * @return 纳秒
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * 计算分位值，返回所在桶的上界，与HdrHistogram的highestEquivalentValue一致
+     *
+     * @param quantile 分位，取值0~1
+     * @return         纳秒，无记录时返回0
+     */
+    public long getQuantile(double quantile) {
+        return getQuantiles(quantile)[0];
+    }
+
+    /**
+     * 基于同一份快照计算多个分位值
+     *
+     * @param quantiles 升序排列的分位，取值0~1
+     * @return          与quantiles一一对应的纳秒值
+     */
+    public long[] getQuantiles(double... quantiles) {
+        long[] snapshot = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = buckets.get(i);
+            total += snapshot[i];
+        }
+        long[] values = new long[quantiles.length];
+        if (total == 0) {
+            return values;
+        }
+        int index = 0;
+        long seen = 0;
+        for (int i = 0; i < quantiles.length; i++) {
+            long rank = Math.max(1, (long) Math.ceil(quantiles[i] * total));
+            while (index < BUCKET_COUNT - 1 && seen + snapshot[index] < rank) {
+                seen += snapshot[index++];
+            }
+            values[i] = Math.min(bucketUpperBound(index), max.get());
+        }
+        return values;
+    }
+
+    /**
+     * 小于子桶数的值各占一个桶，其余值保留最高的SUB_BUCKET_BITS + 1位
+     */
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int index = (shift + 1) * SUB_BUCKET_COUNT + (int) (value >>> shift) - SUB_BUCKET_COUNT;
+        return Math.min(index, BUCKET_COUNT - 1);
+    }
+
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long lower = (long) (SUB_BUCKET_COUNT + index % SUB_BUCKET_COUNT) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
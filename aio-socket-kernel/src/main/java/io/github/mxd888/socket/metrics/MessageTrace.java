@@ -0,0 +1,331 @@
+/*
+ *    Copyright 2019 The aio-socket Project
+ *
+ *    The aio-socket Project Licenses this file to you under the Apache License,
+ *    Version 2.0 (the "License"); you may not use this file except in compliance
+ *    with the License. You may obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.mxd888.socket.metrics;
+
+import io.github.mxd888.socket.Packet;
+import io.github.mxd888.socket.core.ChannelContext;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * 单个连接的消息链路追踪
+ * 在构造时预分配固定容量的环形槽位，每个解码出的消息包占用一个槽位记录各阶段的时间戳，时间戳不保存在Packet上；
+ * 各阶段分别由读线程、处理线程、写入线程、输出线程推进，消息包在每个阶段都按先进先出的顺序流转，
+ * 因此每个阶段只需一个游标并以对象引用核对，核对失败的消息包（如积压超出容量被覆盖、发送被丢弃）不再追踪；
+ * 响应以编码完成时在输出流中的结束位置与已输出字节数比较来判断是否写出
+ *
+ * @author MDong
+ * @version 2.10.1.v20211002-RELEASE
+ */
+public final class MessageTrace {
+
+    static final int READ = 0;
+
+    static final int DECODE_START = 1;
+
+    static final int DECODED = 2;
+
+    static final int HANDLE_START = 3;
+
+    static final int SENT = 4;
+
+    static final int HANDLE_END = 5;
+
+    static final int ENCODED = 6;
+
+    static final int WRITTEN = 7;
+
+    /**
+     * 每个槽位的时间戳数量
+     */
+    private static final int STAMPS = 8;
+
+    /**
+     * 所属追踪器
+     */
+    private final MessageTracer tracer;
+
+    /**
+     * 所属连接
+     */
+    private final ChannelContext channelContext;
+
+    /**
+     * 槽位数量
+     */
+    private final int capacity;
+
+    /**
+     * 槽位下标掩码
+     */
+    private final int mask;
+
+    /**
+     * 时间戳，每个槽位占STAMPS项
+     */
+    private final long[] stamps;
+
+    /**
+     * 请求消息包，处理开始时用于核对
+     */
+    private final Object[] packets;
+
+    /**
+     * 响应消息包，编码完成时用于核对
+     */
+    private final Object[] responses;
+
+    /**
+     * 响应在输出流中的结束位置
+     */
+    private final long[] marks;
+
+    /**
+     * 槽位完成追踪前还需等待的阶段数：处理结束，以及存在响应时的写完成
+     */
+    private final AtomicIntegerArray remaining;
+
+    /**
+     * 最近一次读完成的时间，读线程使用
+     */
+    private long readTime;
+
+    /**
+     * 当前消息包开始解码的时间，读线程使用
+     */
+    private long decodeStartTime;
+
+    /**
+     * 下一个分配的槽位序号
+     */
+    private volatile long decodeSeq;
+
+    /**
+     * 下一个待处理的槽位序号
+     */
+    private volatile long handleSeq;
+
+    /**
+     * 正在处理的槽位序号，没有时为-1
+     */
+    private long handling = -1;
+
+    /**
+     * 正在处理消息包的线程，只有该线程发出的消息包视为响应
+     */
+    private Thread handlerThread;
+
+    /**
+     * 下一个待编码的槽位序号
+     */
+    private volatile long encodeSeq;
+
+    /**
+     * 下一个待写完成的槽位序号，输出线程使用
+     */
+    private long writeSeq;
+
+    MessageTrace(MessageTracer tracer, ChannelContext channelContext, int capacity) {
+        this.tracer = tracer;
+        this.channelContext = channelContext;
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.stamps = new long[capacity * STAMPS];
+        this.packets = new Object[capacity];
+        this.responses = new Object[capacity];
+        this.marks = new long[capacity];
+        this.remaining = new AtomicIntegerArray(capacity);
+    }
+
+    /**
+     * 读完成
+     */
+    public void readCompleted() {
+        readTime = System.nanoTime();
+    }
+
+    /**
+     * 开始解码下一个消息包
+     */
+    public void decodeStarted() {
+        decodeStartTime = System.nanoTime();
+    }
+
+    /**
+     * 解码出消息包，分配槽位
+     *
+     * @param packet 消息包
+     */
+    public void decoded(Packet packet) {
+        long seq = decodeSeq;
+        int index = (int) seq & mask;
+        int base = index * STAMPS;
+        Arrays.fill(stamps, base, base + STAMPS, 0);
+        stamps[base + READ] = readTime;
+        stamps[base + DECODE_START] = decodeStartTime;
+        stamps[base + DECODED] = System.nanoTime();
+        packets[index] = packet;
+        responses[index] = null;
+        marks[index] = 0;
+        remaining.set(index, 1);
+        decodeSeq = seq + 1;
+    }
+
+    /**
+     * 开始处理消息包
+     *
+     * @param packet 消息包
+     */
+    public void handleStarted(Packet packet) {
+        handling = -1;
+        long end = decodeSeq;
+        for (long seq = Math.max(handleSeq, end - capacity); seq < end; seq++) {
+            int index = (int) seq & mask;
+            if (packets[index] == packet) {
+                packets[index] = null;
+                stamps[index * STAMPS + HANDLE_START] = System.nanoTime();
+                handling = seq;
+                handlerThread = Thread.currentThread();
+                handleSeq = seq + 1;
+                return;
+            }
+        }
+    }
+
+    /**
+     * 发出消息包，处理线程在处理期间发出的第一个消息包视为响应
+     *
+     * @param packet 消息包
+     */
+    public void sent(Packet packet) {
+        if (handling < 0 || handlerThread != Thread.currentThread()) {
+            return;
+        }
+        int index = (int) handling & mask;
+        if (responses[index] == null) {
+            stamps[index * STAMPS + SENT] = System.nanoTime();
+            remaining.incrementAndGet(index);
+            responses[index] = packet;
+        }
+    }
+
+    /**
+     * 消息包处理结束
+     */
+    public void handleEnded() {
+        if (handling < 0) {
+            return;
+        }
+        int index = (int) handling & mask;
+        stamps[index * STAMPS + HANDLE_END] = System.nanoTime();
+        handling = -1;
+        handlerThread = null;
+        finish(index);
+    }
+
+    /**
+     * 消息包编码完成，须在写入线程中编码后立即调用
+     *
+     * @param packet   消息包
+     * @param position 编码完成后输出流的累计写入字节数
+     */
+    public void encoded(Packet packet, long position) {
+        long end = handleSeq;
+        for (long seq = Math.max(encodeSeq, end - capacity); seq < end; seq++) {
+            int index = (int) seq & mask;
+            if (responses[index] == packet) {
+                responses[index] = null;
+                marks[index] = position;
+                stamps[index * STAMPS + ENCODED] = System.nanoTime();
+                encodeSeq = seq + 1;
+                return;
+            }
+        }
+    }
+
+    /**
+     * 写操作完成，结束位置不超过已输出字节数的响应均已写出
+     *
+     * @param drainedBytes 输出流累计输出的字节数
+     */
+    public void written(long drainedBytes) {
+        long end = encodeSeq;
+        long seq = Math.max(writeSeq, end - capacity);
+        long now = 0;
+        for (; seq < end; seq++) {
+            int index = (int) seq & mask;
+            int base = index * STAMPS;
+            if (stamps[base + ENCODED] == 0) {
+                // 没有响应或响应未被编码
+                continue;
+            }
+            if (marks[index] > drainedBytes) {
+                break;
+            }
+            if (now == 0) {
+                now = System.nanoTime();
+            }
+            stamps[base + WRITTEN] = now;
+            finish(index);
+        }
+        writeSeq = seq;
+    }
+
+    public ChannelContext getChannelContext() {
+        return channelContext;
+    }
+
+    private void finish(int index) {
+        if (remaining.decrementAndGet(index) == 0) {
+            tracer.complete(this, stamps, index * STAMPS);
+        }
+    }
+
+    /**
+     * 计算阶段耗时
+     *
+     * @param stamps 时间戳
+     * @param base   消息包的时间戳起始下标
+     * @param stage  阶段
+     * @return       纳秒，未经过该阶段时返回-1
+     */
+    static long duration(long[] stamps, int base, TraceStageEnum stage) {
+        switch (stage) {
+            case DECODE_QUEUE:
+                return between(stamps, base, READ, DECODE_START);
+            case DECODE:
+                return between(stamps, base, DECODE_START, DECODED);
+            case HANDLER_QUEUE:
+                return between(stamps, base, DECODED, HANDLE_START);
+            case HANDLE:
+                return between(stamps, base, HANDLE_START, HANDLE_END);
+            case SEND_QUEUE:
+                return between(stamps, base, SENT, ENCODED);
+            case WRITE:
+                return between(stamps, base, ENCODED, WRITTEN);
+            default:
+                int start = stamps[base + READ] != 0 ? READ : DECODE_START;
+                return between(stamps, base, start, stamps[base + WRITTEN] != 0 ? WRITTEN : HANDLE_END);
+        }
+    }
+
+    private static long between(long[] stamps, int base, int from, int to) {
+        long start = stamps[base + from];
+        long end = stamps[base + to];
+        return start == 0 || end == 0 ? -1 : Math.max(0, end - start);
+    }
+}
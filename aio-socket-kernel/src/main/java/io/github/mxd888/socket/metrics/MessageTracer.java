@@ -0,0 +1,218 @@
+/*
+ *    Copyright 2019 The aio-socket Project
+ *
+ *    The aio-socket Project Licenses this file to you under the Apache License,
+ *    Version 2.0 (the "License"); you may not use this file except in compliance
+ *    with the License. You may obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.mxd888.socket.metrics;
+
+import io.github.mxd888.socket.core.ChannelContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 消息链路追踪器
+ * 为每个连接创建预分配的{@link MessageTrace}，汇总各消息包在读完成、解码、处理、编码、写完成之间各阶段的耗时，
+ * 写入按阶段区分的延迟直方图；总耗时超过阈值的消息包按阶段展开后保留最近的若干条，并限频输出WARN日志
+ *
+ * @author MDong
+ * @version 2.10.1.v20211002-RELEASE
+ */
+public final class MessageTracer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MessageTracer.class);
+
+    /**
+     * 保留的慢消息条数
+     */
+    private static final int SLOW_MESSAGE_CAPACITY = 64;
+
+    /**
+     * 全部阶段
+     */
+    private static final TraceStageEnum[] STAGES = TraceStageEnum.values();
+
+    /**
+     * 慢消息日志的最小间隔（纳秒）
+     */
+    private static final long LOG_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * 指标注册表
+     */
+    private final MetricsRegistry registry;
+
+    /**
+     * 各阶段的延迟直方图，下标为阶段序号
+     */
+    private final LatencyHistogram[] histograms = new LatencyHistogram[STAGES.length];
+
+    /**
+     * 慢消息阈值（纳秒）
+     */
+    private final long slowThreshold;
+
+    /**
+     * 每个连接同时追踪的消息包数量
+     */
+    private final int traceCapacity;
+
+    /**
+     * 完成追踪的消息包数
+     */
+    private final Counter traced;
+
+    /**
+     * 慢消息数
+     */
+    private final Counter slow;
+
+    /**
+     * 最近的慢消息
+     */
+    private final AtomicReferenceArray<String> slowMessages = new AtomicReferenceArray<>(SLOW_MESSAGE_CAPACITY);
+
+    /**
+     * 慢消息写入序号
+     */
+    private final AtomicLong slowIndex = new AtomicLong();
+
+    /**
+     * 上一次输出慢消息日志的时间
+     */
+    private final AtomicLong lastLogTime = new AtomicLong(System.nanoTime() - LOG_INTERVAL);
+
+    public MessageTracer(long slowThreshold, TimeUnit unit) {
+        this(new MetricsRegistry(), slowThreshold, unit, 64);
+    }
+
+    /**
+     * 构造消息链路追踪器
+     *
+     * @param registry      指标注册表，可与MetricsPlugin共用
+     * @param slowThreshold 慢消息阈值
+     * @param unit          阈值单位
+     * @param traceCapacity 每个连接同时追踪的消息包数量，向上取整为2的幂；积压超出时最早的消息包不再追踪
+     */
+    public MessageTracer(MetricsRegistry registry, long slowThreshold, TimeUnit unit, int traceCapacity) {
+        if (traceCapacity <= 0) {
+            throw new IllegalArgumentException("traceCapacity should bigger than zero");
+        }
+        this.registry = registry;
+        this.slowThreshold = unit.toNanos(slowThreshold);
+        int capacity = 1;
+        while (capacity < traceCapacity) {
+            capacity <<= 1;
+        }
+        this.traceCapacity = capacity;
+        for (TraceStageEnum stage : STAGES) {
+            histograms[stage.ordinal()] = registry.histogram(stage.getMetricName(), stage.getHelp());
+        }
+        this.traced = registry.counter("aio_socket_trace_messages_total", "Messages traced through the pipeline");
+        this.slow = registry.counter("aio_socket_trace_slow_messages_total", "Traced messages slower than the threshold");
+    }
+
+    /**
+     * 为连接创建链路追踪
+     *
+     * @param channelContext 连接
+     * @return               链路追踪
+     */
+    public MessageTrace newTrace(ChannelContext channelContext) {
+        return new MessageTrace(this, channelContext, traceCapacity);
+    }
+
+    public MetricsRegistry getRegistry() {
+        return registry;
+    }
+
+    public LatencyHistogram getHistogram(TraceStageEnum stage) {
+        return histograms[stage.ordinal()];
+    }
+
+    public long getTracedCount() {
+        return traced.get();
+    }
+
+    public long getSlowCount() {
+        return slow.get();
+    }
+
+    /**
+     * 读取最近的慢消息
+     *
+     * @return 按发生先后排列的阶段耗时明细
+     */
+    public List<String> getSlowMessages() {
+        long end = slowIndex.get();
+        List<String> messages = new ArrayList<>(SLOW_MESSAGE_CAPACITY);
+        for (long i = Math.max(0, end - SLOW_MESSAGE_CAPACITY); i < end; i++) {
+            String message = slowMessages.get((int) (i % SLOW_MESSAGE_CAPACITY));
+            if (message != null) {
+                messages.add(message);
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * 消息包追踪完成，按阶段记录耗时
+     *
+     * @param trace  所属连接的链路追踪
+     * @param stamps 时间戳
+     * @param base   该消息包的时间戳在stamps中的起始下标
+     */
+    void complete(MessageTrace trace, long[] stamps, int base) {
+        traced.increment();
+        for (TraceStageEnum stage : STAGES) {
+            long nanos = MessageTrace.duration(stamps, base, stage);
+            if (nanos >= 0) {
+                histograms[stage.ordinal()].record(nanos);
+            }
+        }
+        long total = MessageTrace.duration(stamps, base, TraceStageEnum.TOTAL);
+        if (slowThreshold <= 0 || total < slowThreshold) {
+            return;
+        }
+        slow.increment();
+        String message = describe(trace, stamps, base);
+        slowMessages.set((int) (slowIndex.getAndIncrement() % SLOW_MESSAGE_CAPACITY), message);
+        long now = System.nanoTime();
+        long last = lastLogTime.get();
+        if (now - last >= LOG_INTERVAL && lastLogTime.compareAndSet(last, now)) {
+            LOGGER.warn("aio-socket slow message, {}", message);
+        }
+    }
+
+    private static String describe(MessageTrace trace, long[] stamps, int base) {
+        StringBuilder builder = new StringBuilder(160);
+        ChannelContext channelContext = trace.getChannelContext();
+        builder.append("channel: ").append(channelContext.getId() == null ? channelContext.toString() : channelContext.getId())
+                .append(", protocol: ").append(channelContext.getProtocol());
+        for (TraceStageEnum stage : STAGES) {
+            long nanos = MessageTrace.duration(stamps, base, stage);
+            builder.append(", ").append(stage.name().toLowerCase()).append(": ");
+            if (nanos < 0) {
+                builder.append('-');
+            } else {
+                builder.append(TimeUnit.NANOSECONDS.toMicros(nanos)).append("us");
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ *    Copyright 2019 The aio-socket Project
+ *
+ *    The aio-socket Project Licenses this file to you under the Apache License,
+ *    Version 2.0 (the "License"); you may not use this file except in compliance
+ *    with the License. You may obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.mxd888.socket.metrics;
+
+import io.github.mxd888.socket.ProtocolEnum;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * 指标注册表
+ * 以指标名与协议标签定位计数器、瞬时值和延迟直方图，同名同标签重复注册返回同一实例；
+ * 调用方可直接读取各项指标，也可通过{@link #scrape()}导出Prometheus文本格式，延迟直方图以summary类型导出，单位为秒
+ *
+ * @author MDong
+ * @version 2.10.1.v20211002-RELEASE
+ */
+public final class MetricsRegistry {
+
+    /**
+     * 导出的分位
+     */
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    /**
+     * 协议未确定时使用的标签值
+     */
+    private static final String UNKNOWN_PROTOCOL = "unknown";
+
+    /**
+     * 无协议标签的序列键
+     */
+    private static final String NO_LABEL = "";
+
+    /**
+     * 指标族，按名称排序导出
+     */
+    private final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+    /**
+     * 注册或获取无协议标签的计数器
+     *
+     * @param name 指标名
+     * @param help 说明
+     * @return     计数器
+     */
+    public Counter counter(String name, String help) {
+        return family(name, help, Type.COUNTER).series(NO_LABEL, Counter::new);
+    }
+
+    /**
+     * 注册或获取指定协议的计数器
+     *
+     * @param name     指标名
+     * @param help     说明
+     * @param protocol 协议，为null时标签值为unknown
+     * @return         计数器
+     */
+    public Counter counter(String name, String help, ProtocolEnum protocol) {
+        return family(name, help, Type.COUNTER).series(label(protocol), Counter::new);
+    }
+
+    /**
+     * 注册瞬时值，导出时读取；同名重复注册时替换原有的取值函数
+     *
+     * @param name     指标名
+     * @param help     说明
+     * @param supplier 取值函数
+     */
+    public void gauge(String name, String help, LongSupplier supplier) {
+        family(name, help, Type.GAUGE).series.put(NO_LABEL, supplier);
+    }
+
+    /**
+     * 注册或获取无协议标签的延迟直方图
+     *
+     * @param name 指标名
+     * @param help 说明
+     * @return     延迟直方图
+     */
+    public LatencyHistogram histogram(String name, String help) {
+        return family(name, help, Type.SUMMARY).series(NO_LABEL, LatencyHistogram::new);
+    }
+
+    /**
+     * 注册或获取指定协议的延迟直方图
+     *
+     * @param name     指标名
+     * @param help     说明
+     * @param protocol 协议，为null时标签值为unknown
+     * @return         延迟直方图
+     */
+    public LatencyHistogram histogram(String name, String help, ProtocolEnum protocol) {
+        return family(name, help, Type.SUMMARY).series(label(protocol), LatencyHistogram::new);
+    }
+
+    /**
+     * 读取计数器
+     *
+     * @param name     指标名
+     * @param protocol 协议，为null时读取无协议标签的计数器
+     * @return         计数器，未注册时返回null
+     */
+    public Counter getCounter(String name, ProtocolEnum protocol) {
+        return get(name, Type.COUNTER, protocol == null ? NO_LABEL : label(protocol));
+    }
+
+    /**
+     * 读取计数器在所有协议上的累计值
+     *
+     * @param name 指标名
+     * @return     累计值，未注册时返回0
+     */
+    public long getCounterTotal(String name) {
+        Family family = families.get(name);
+        long total = 0;
+        if (family != null && family.type == Type.COUNTER) {
+            for (Object counter : family.series.values()) {
+                total += ((Counter) counter).get();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 读取瞬时值
+     *
+     * @param name 指标名
+     * @return     当前值，未注册时返回0
+     */
+    public long getGauge(String name) {
+        LongSupplier supplier = get(name, Type.GAUGE, NO_LABEL);
+        return supplier == null ? 0 : supplier.getAsLong();
+    }
+
+    /**
+     * 读取延迟直方图
+     *
+     * @param name     指标名
+     * @param protocol 协议，为null时读取协议未确定的直方图
+     * @return         延迟直方图，未注册时返回null
+     */
+    public LatencyHistogram getHistogram(String name, ProtocolEnum protocol) {
+        return get(name, Type.SUMMARY, label(protocol));
+    }
+
+    /**
+     * 导出Prometheus文本格式（0.0.4）
+     *
+     * @return 文本
+     */
+    public String scrape() {
+        StringBuilder builder = new StringBuilder(4096);
+        for (Map.Entry<String, Family> entry : families.entrySet()) {
+            entry.getValue().write(entry.getKey(), builder);
+        }
+        return builder.toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T get(String name, Type type, String label) {
+        Family family = families.get(name);
+        if (family == null || family.type != type) {
+            return null;
+        }
+        return (T) family.series.get(label);
+    }
+
+    private Family family(String name, String help, Type type) {
+        Family family = families.computeIfAbsent(name, key -> new Family(help, type));
+        if (family.type != type) {
+            throw new IllegalArgumentException("metric " + name + " already registered as " + family.type.name);
+        }
+        return family;
+    }
+
+    private static String label(ProtocolEnum protocol) {
+        return protocol == null ? UNKNOWN_PROTOCOL : protocol.name();
+    }
+
+    /**
+     * 指标类型
+     */
+    private enum Type {
+
+        COUNTER("counter"),
+
+        GAUGE("gauge"),
+
+        SUMMARY("summary");
+
+        private final String name;
+
+        Type(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * 指标族，同名指标按协议标签区分的各条序列
+     */
+    private static final class Family {
+
+        private final String help;
+
+        private final Type type;
+
+        /**
+         * 协议标签 -> Counter、LongSupplier或LatencyHistogram
+         */
+        private final Map<String, Object> series = new ConcurrentSkipListMap<>();
+
+        Family(String help, Type type) {
+            this.help = help;
+            this.type = type;
+        }
+
+        @SuppressWarnings("unchecked")
+        <T> T series(String label, Supplier<T> factory) {
+            return (T) series.computeIfAbsent(label, key -> factory.get());
+        }
+
+        void write(String name, StringBuilder builder) {
+            if (series.isEmpty()) {
+                return;
+            }
+            builder.append("# HELP ").append(name).append(' ').append(escapeHelp(help)).append('\n');
+            builder.append("# TYPE ").append(name).append(' ').append(type.name).append('\n');
+            for (Map.Entry<String, Object> entry : series.entrySet()) {
+                String label = entry.getKey();
+                Object metric = entry.getValue();
+                switch (type) {
+                    case COUNTER:
+                        sample(builder, name, label, null, Long.toString(((Counter) metric).get()));
+                        break;
+                    case GAUGE:
+                        sample(builder, name, label, null, Long.toString(((LongSupplier) metric).getAsLong()));
+                        break;
+                    default:
+                        LatencyHistogram histogram = (LatencyHistogram) metric;
+                        long[] values = histogram.getQuantiles(QUANTILES);
+                        for (int i = 0; i < QUANTILES.length; i++) {
+                            sample(builder, name, label, Double.toString(QUANTILES[i]), seconds(values[i]));
+                        }
+                        sample(builder, name + "_sum", label, null, seconds(histogram.getSum()));
+                        sample(builder, name + "_count", label, null, Long.toString(histogram.getCount()));
+                        break;
+                }
+            }
+        }
+
+        private static void sample(StringBuilder builder, String name, String label, String quantile, String value) {
+            builder.append(name);
+            if (!label.isEmpty() || quantile != null) {
+                builder.append('{');
+                if (!label.isEmpty()) {
+                    builder.append("protocol=\"").append(label).append('"');
+                }
+                if (quantile != null) {
+                    builder.append(label.isEmpty() ? "" : ",").append("quantile=\"").append(quantile).append('"');
+                }
+                builder.append('}');
+            }
+            builder.append(' ').append(value).append('\n');
+        }
+
+        private static String seconds(long nanos) {
+            return Double.toString(nanos / 1e9);
+        }
+
+        private static String escapeHelp(String help) {
+            return help.replace("\\", "\\\\").replace("\n", "\\n");
+        }
+    }
+}
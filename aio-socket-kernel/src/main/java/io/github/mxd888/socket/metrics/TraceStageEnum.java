@@ -0,0 +1,77 @@
+/*
+ *    Copyright 2019 The aio-socket Project
+ *
+ *    The aio-socket Project Licenses this file to you under the Apache License,
+ *    Version 2.0 (the "License"); you may not use this file except in compliance
+ *    with the License. You may obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.mxd888.socket.metrics;
+
+/**
+ * 消息链路追踪的阶段
+ *
+ * @author MDong
+ * @version 2.10.1.v20211002-RELEASE
+ */
+public enum TraceStageEnum {
+
+    /**
+     * 读完成至开始解码，即在DecodeTask队列中等待的时间；同一次读出的后续消息包还包含前面消息包的解码与处理
+     */
+    DECODE_QUEUE("aio_socket_trace_decode_queue_seconds", "Read completion to decode start"),
+
+    /**
+     * 解码
+     */
+    DECODE("aio_socket_trace_decode_seconds", "Decode start to packet decoded"),
+
+    /**
+     * 解码完成至开始处理，即在HandlerTask队列中等待的时间
+     */
+    HANDLER_QUEUE("aio_socket_trace_handler_queue_seconds", "Packet decoded to handler start"),
+
+    /**
+     * 处理器执行
+     */
+    HANDLE("aio_socket_trace_handle_seconds", "Handler start to handler end"),
+
+    /**
+     * 响应交付发送至编码完成，即在SendTask队列中等待及编码的时间
+     */
+    SEND_QUEUE("aio_socket_trace_send_queue_seconds", "Response sent to response encoded"),
+
+    /**
+     * 编码完成至响应的最后一个字节写出，即在输出流中等待及WriteCompletionHandler回调的时间
+     */
+    WRITE("aio_socket_trace_write_seconds", "Response encoded to write completion"),
+
+    /**
+     * 读完成至响应写出，没有响应时至处理结束
+     */
+    TOTAL("aio_socket_trace_total_seconds", "Read completion to response written");
+
+    private final String metricName;
+
+    private final String help;
+
+    TraceStageEnum(String metricName, String help) {
+        this.metricName = metricName;
+        this.help = help;
+    }
+
+    public String getMetricName() {
+        return metricName;
+    }
+
+    public String getHelp() {
+        return help;
+    }
+}
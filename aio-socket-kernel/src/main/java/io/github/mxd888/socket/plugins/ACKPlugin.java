@@ -16,19 +16,31 @@
 package io.github.mxd888.socket.plugins;
 
 import io.github.mxd888.socket.Packet;
+import io.github.mxd888.socket.StateMachineEnum;
+import io.github.mxd888.socket.core.Aio;
 import io.github.mxd888.socket.core.AioConfig;
 import io.github.mxd888.socket.core.ChannelContext;
-import io.github.mxd888.socket.utils.QuickTimerTask;
+import io.github.mxd888.socket.utils.TimingWheel;
+import io.github.mxd888.socket.utils.map.ConcurrentLongHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashMap;
 import java.util.Map;
-import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * Created by DELL(mxd) on 2022/7/28 17:48
+ * ACK确认插件
+ * 跟踪已发出但未确认的消息，序号取自Packet的reqSeq/respSeq，未设置时使用req/resp：
+ * 纯数字的ID转为long序号，其他ID按字符串跟踪；
+ * 待确认消息按连接分别保存，序号只需在单个连接内唯一，确认消息须从发出请求的连接返回；
+ * 超时由时间轮驱动，超时后可按配置重发，超过重发次数后回调并移除；
+ * 每个连接的在途消息数受窗口限制，窗口已满时消息不再被跟踪，可通过hasWindow()在发送前判断
+ *
+ * @author MDong
+ * @version 2.10.1.v20211002-RELEASE
  */
 public class ACKPlugin extends AbstractPlugin{
 
@@ -36,12 +48,43 @@ public class ACKPlugin extends AbstractPlugin{
 
     private static final TimeoutCallback DEFAULT_TIMEOUT_CALLBACK = (packet, lastTime) -> LOGGER.info(packet.getReq() + " : has timeout");
 
-    private final Map<String, Packet> idToPacket = new HashMap<>();
+    /**
+     * 每个连接的窗口，持有该连接的在途消息数与待确认消息
+     */
+    private final Map<ChannelContext, Window> windows = new ConcurrentHashMap<>();
+
+    /**
+     * 已确认数
+     */
+    private final LongAdder ackedCount = new LongAdder();
+
+    /**
+     * 超时数
+     */
+    private final LongAdder timeoutCount = new LongAdder();
 
-    private final Map<String, Long> timePacket = new HashMap<>();
+    /**
+     * 重发数
+     */
+    private final LongAdder retransmitCount = new LongAdder();
+
+    /**
+     * 因窗口已满或序号重复未被跟踪的消息数
+     */
+    private final LongAdder rejectedCount = new LongAdder();
 
     private final long timeout;
 
+    /**
+     * 每个连接最大在途消息数
+     */
+    private final int maxInFlight;
+
+    /**
+     * 超时后最大重发次数
+     */
+    private final int maxRetransmits;
+
     private final TimeoutCallback timeoutCallback;
 
     public ACKPlugin(int timeout, TimeUnit timeUnit) {
@@ -49,10 +92,28 @@ public class ACKPlugin extends AbstractPlugin{
     }
 
     public ACKPlugin(int timeout, TimeUnit timeUnit, TimeoutCallback timeoutCallback) {
+        this(timeout, timeUnit, Integer.MAX_VALUE, 0, timeoutCallback);
+    }
+
+    /**
+     * ACK确认插件
+     *
+     * @param timeout         每次发送等待确认的时间
+     * @param timeUnit        时间单位
+     * @param maxInFlight     每个连接最大在途消息数
+     * @param maxRetransmits  超时后最大重发次数，为0时不重发
+     * @param timeoutCallback 最终超时回调
+     */
+    public ACKPlugin(int timeout, TimeUnit timeUnit, int maxInFlight, int maxRetransmits, TimeoutCallback timeoutCallback) {
         if (timeout <= 0) {
             throw new IllegalArgumentException("timeout should bigger than zero");
         }
+        if (maxInFlight <= 0 || maxRetransmits < 0) {
+            throw new IllegalArgumentException("maxInFlight should bigger than zero and maxRetransmits should not be negative");
+        }
         this.timeout = timeUnit.toMillis(timeout);
+        this.maxInFlight = maxInFlight;
+        this.maxRetransmits = maxRetransmits;
         this.timeoutCallback = timeoutCallback;
         if (LOGGER.isInfoEnabled()) {
             LOGGER.info("aio-socket "+"version: " + AioConfig.VERSION + "; server kernel's ACK plugin added successfully");
@@ -62,44 +123,219 @@ public class ACKPlugin extends AbstractPlugin{
     @Override
     public void afterDecode(Packet packet, ChannelContext channelContext) {
         // 解码后得到的数据进行处理ACK确认
-        String resp = packet.getResp();
-        if (resp != null && resp.length() != 0) {
-            idToPacket.remove(resp);
+        long seq = sequence(packet.getRespSeq(), packet.getResp());
+        String id = seq < 0 ? packet.getResp() : null;
+        if (seq < 0 && id == null) {
+            return;
+        }
+        Window window = windows.get(channelContext);
+        if (window == null) {
+            return;
+        }
+        PendingPacket pendingPacket = window.remove(seq, id);
+        if (pendingPacket != null) {
+            pendingPacket.timeout.cancel();
+            window.inFlight.decrementAndGet();
+            ackedCount.increment();
         }
     }
 
     @Override
     public void beforeEncode(Packet packet, ChannelContext channelContext) {
         // 编码前对数据进行ACK码计时
-        String req = packet.getReq();
-        if (req != null && req.length() != 0) {
-            idToPacket.put(req, packet);
-            timePacket.put(req, System.currentTimeMillis());
-            registerACK(req, packet);
-        }
-    }
-
-    private void registerACK(final String key, Packet packet) {
-        QuickTimerTask.SCHEDULED_EXECUTOR_SERVICE.schedule(new TimerTask() {
-            @Override
-            public void run() {
-                if (idToPacket.get(key) == null) {
-                    return;
-                }
-                Long lastTime = timePacket.get(key);
-                if (lastTime == null) {
-                    lastTime = System.currentTimeMillis();
-                    timePacket.put(key, lastTime);
-                }
-                long current = System.currentTimeMillis();
-                //超时未收到消息，关闭连接
-                if (timeout > 0 && (current - lastTime) > timeout) {
-                    timeoutCallback.callback(packet, lastTime);
-                    return;
-                }
-                registerACK(key, packet);
+        long seq = sequence(packet.getReqSeq(), packet.getReq());
+        String id = seq < 0 ? packet.getReq() : null;
+        if ((seq < 0 && id == null) || channelContext.isInvalid()) {
+            return;
+        }
+        Window window = windows.computeIfAbsent(channelContext, Window::new);
+        PendingPacket existing = window.get(seq, id);
+        if (existing != null && existing.packet == packet) {
+            // 超时重发，已在跟踪中
+            return;
+        }
+        if (window.inFlight.incrementAndGet() > maxInFlight) {
+            window.inFlight.decrementAndGet();
+            rejectedCount.increment();
+            return;
+        }
+        PendingPacket pendingPacket = new PendingPacket(window, seq, id, packet);
+        pendingPacket.timeout = TimingWheel.DEFAULT.newTimeout(pendingPacket, timeout, TimeUnit.MILLISECONDS);
+        if (window.putIfAbsent(pendingPacket) != null) {
+            // 同一连接上仍有相同序号的消息未确认，新消息不被跟踪
+            pendingPacket.timeout.cancel();
+            window.inFlight.decrementAndGet();
+            rejectedCount.increment();
+        }
+    }
+
+    @Override
+    public void stateEvent(StateMachineEnum stateMachineEnum, ChannelContext channelContext, Throwable throwable) {
+        if (stateMachineEnum == StateMachineEnum.CHANNEL_CLOSED) {
+            windows.remove(channelContext);
+        }
+    }
+
+    /**
+     * 连接的在途消息数是否未达到窗口上限
+     *
+     * @param channelContext 连接
+     * @return               布尔
+     */
+    public boolean hasWindow(ChannelContext channelContext) {
+        Window window = windows.get(channelContext);
+        return window == null || window.inFlight.get() < maxInFlight;
+    }
+
+    /**
+     * 获取仍在跟踪的连接的在途消息总数
+     *
+     * @return 在途消息数
+     */
+    public int getInFlightCount() {
+        int count = 0;
+        for (Window window : windows.values()) {
+            count += window.inFlight.get();
+        }
+        return count;
+    }
+
+    public long getAckedCount() {
+        return ackedCount.sum();
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount.sum();
+    }
+
+    public long getRetransmitCount() {
+        return retransmitCount.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    /**
+     * 获取消息序号，优先使用long序号，未设置时解析纯数字的字符串ID
+     *
+     * @param seq long序号
+     * @param id  字符串ID
+     * @return    序号，ID为空或不是纯数字时返回-1，此时按字符串ID跟踪
+     */
+    private static long sequence(long seq, String id) {
+        if (seq > 0) {
+            return seq;
+        }
+        if (id == null || id.isEmpty() || id.length() > 18) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * 单个连接的窗口，数字序号与字符串ID分别保存
+     */
+    private static final class Window {
+
+        private final ChannelContext channelContext;
+
+        /**
+         * 在途消息数
+         */
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        private final ConcurrentLongHashMap<PendingPacket> seqPackets = new ConcurrentLongHashMap<>(16, 4);
+
+        private final Map<String, PendingPacket> idPackets = new ConcurrentHashMap<>();
+
+        Window(ChannelContext channelContext) {
+            this.channelContext = channelContext;
+        }
+
+        PendingPacket get(long seq, String id) {
+            return id == null ? seqPackets.get(seq) : idPackets.get(id);
+        }
+
+        PendingPacket putIfAbsent(PendingPacket pendingPacket) {
+            return pendingPacket.id == null
+                    ? seqPackets.putIfAbsent(pendingPacket.seq, pendingPacket)
+                    : idPackets.putIfAbsent(pendingPacket.id, pendingPacket);
+        }
+
+        PendingPacket remove(long seq, String id) {
+            return id == null ? seqPackets.remove(seq) : idPackets.remove(id);
+        }
+
+        boolean remove(PendingPacket pendingPacket) {
+            return pendingPacket.id == null
+                    ? seqPackets.remove(pendingPacket.seq, pendingPacket)
+                    : idPackets.remove(pendingPacket.id, pendingPacket);
+        }
+    }
+
+    /**
+     * 待确认的消息，同时作为时间轮中的超时任务
+     */
+    private final class PendingPacket implements Runnable {
+
+        private final Window window;
+
+        private final long seq;
+
+        /**
+         * 非数字的字符串ID，使用long序号时为null
+         */
+        private final String id;
+
+        private final Packet packet;
+
+        /**
+         * 首次发送时间
+         */
+        private final long sendTime = System.currentTimeMillis();
+
+        /**
+         * 已重发次数，仅在时间轮执行线程中访问
+         */
+        private int retransmits;
+
+        private volatile TimingWheel.Timeout timeout;
+
+        PendingPacket(Window window, long seq, String id, Packet packet) {
+            this.window = window;
+            this.seq = seq;
+            this.id = id;
+            this.packet = packet;
+        }
+
+        @Override
+        public void run() {
+            if (window.get(seq, id) != this) {
+                return;
+            }
+            ChannelContext channelContext = window.channelContext;
+            if (retransmits < maxRetransmits && !channelContext.isInvalid()) {
+                retransmits++;
+                retransmitCount.increment();
+                timeout = TimingWheel.DEFAULT.newTimeout(this, ACKPlugin.this.timeout, TimeUnit.MILLISECONDS);
+                Aio.send(channelContext, packet);
+                return;
             }
-        }, 3000, TimeUnit.MILLISECONDS);
+            if (window.remove(this)) {
+                window.inFlight.decrementAndGet();
+                timeoutCount.increment();
+                timeoutCallback.callback(packet, sendTime);
+            }
+        }
     }
 
     public interface TimeoutCallback {
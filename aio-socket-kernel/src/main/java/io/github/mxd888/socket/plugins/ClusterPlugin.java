@@ -16,14 +16,15 @@
 package io.github.mxd888.socket.plugins;
 
 import io.github.mxd888.socket.Packet;
-import io.github.mxd888.socket.core.Aio;
+import io.github.mxd888.socket.StateMachineEnum;
+import io.github.mxd888.socket.cluster.ClusterBootstrap;
 import io.github.mxd888.socket.core.AioConfig;
 import io.github.mxd888.socket.core.ChannelContext;
 
-import java.util.Objects;
-
 /**
  * 集群插件
+ * 接收方不在本节点时将消息包交给ClusterBootstrap转发到其所在节点，本节点不再处理；
+ * 已绑定ID的用户连接断开时通知其他节点解除绑定
  *
  * @author MDong
  * @version 2.10.1.v20211002-RELEASE
@@ -36,41 +37,34 @@ public class ClusterPlugin extends AbstractPlugin {
 
     @Override
     public boolean beforeProcess(ChannelContext channelContext, Packet packet) {
-        if (!channelContext.getAioConfig().isServer()) {
-            return true;
-        }
         AioConfig config = channelContext.getAioConfig();
-        if (Objects.nonNull(packet.getEntity())) {
-            // 是否新机器绑定到现有集群机器中、将其他机器的用户告知别的集群机器
-            if (packet.getEntity().isAuth()) {
-                // 绑定到集群组
-//                config.getGroups().join("ClusterServer", channelContext);
-                // 绑定集群ID
-//                config.getIds().join(packet.getFromId(), channelContext);
-                // 设置通道ID
-                channelContext.setId(packet.getFromId());
-            }else {
-                // 该消息为绑定消息，将用户与指定集群中的机器进行绑定
-                config.getClusterIds().join(packet.getToId(), channelContext.getId());
-            }
-            return false;
-        }
-        // 获取接收方所在ServerIP
-        String s = config.getClusterIds().get(packet.getToId());
-        if (Objects.isNull(s)) {
-//            Aio.bindID(packet.getToId(), channelContext);
+        ClusterBootstrap cluster = config.getClusterBootstrap();
+        String toId = packet.getToId();
+        if (!config.isServer() || cluster == null || toId == null) {
             return true;
         }
-        // 判断接收方是否在本服务器
-        if (s.equals(config.getHost())) {
-            // 执行处理逻辑
+        // 接收方在本服务器，执行处理逻辑
+        if (config.getIds().get(toId) != null) {
             return true;
         }
-        // 否则发送到集群服务器
-        Aio.send(config.getIds().get(s), packet);
-        // 本服务器不做处理逻辑
-        return false;
+        // 否则发送到接收方所在的集群服务器，本服务器不做处理逻辑
+        return !cluster.forward(toId, packet, channelContext.getProtocol());
     }
 
-
+    @Override
+    public void stateEvent(StateMachineEnum stateMachineEnum, ChannelContext channelContext, Throwable throwable) {
+        if (stateMachineEnum != StateMachineEnum.CHANNEL_CLOSED) {
+            return;
+        }
+        ClusterBootstrap cluster = channelContext.getAioConfig().getClusterBootstrap();
+        String id = channelContext.getId();
+        if (cluster == null || id == null) {
+            return;
+        }
+        // 用户已在本节点以新连接重新绑定时不解除
+        ChannelContext bound = channelContext.getAioConfig().getIds().get(id);
+        if (bound == null || bound == channelContext) {
+            cluster.unbind(id);
+        }
+    }
 }
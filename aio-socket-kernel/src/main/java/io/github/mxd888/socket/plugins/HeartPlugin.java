@@ -19,13 +19,12 @@ import io.github.mxd888.socket.Packet;
 import io.github.mxd888.socket.StateMachineEnum;
 import io.github.mxd888.socket.core.AioConfig;
 import io.github.mxd888.socket.core.ChannelContext;
-import io.github.mxd888.socket.utils.QuickTimerTask;
+import io.github.mxd888.socket.utils.TimingWheel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.TimerTask;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -108,7 +107,7 @@ public abstract class HeartPlugin extends AbstractPlugin {
     public abstract boolean isHeartMessage(Packet packet);
 
     private void registerHeart(final ChannelContext channelContext) {
-        QuickTimerTask.SCHEDULED_EXECUTOR_SERVICE.schedule(new TimerTask() {
+        TimingWheel.DEFAULT.newTimeout(new Runnable() {
             @Override
             public void run() {
                 if (channelContext.isInvalid()) {
@@ -0,0 +1,201 @@
+/*
+ *    Copyright 2019 The aio-socket Project
+ *
+ *    The aio-socket Project Licenses this file to you under the Apache License,
+ *    Version 2.0 (the "License"); you may not use this file except in compliance
+ *    with the License. You may obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.mxd888.socket.plugins;
+
+import io.github.mxd888.socket.Packet;
+import io.github.mxd888.socket.ProtocolEnum;
+import io.github.mxd888.socket.StateMachineEnum;
+import io.github.mxd888.socket.core.ChannelContext;
+import io.github.mxd888.socket.metrics.Counter;
+import io.github.mxd888.socket.metrics.LatencyHistogram;
+import io.github.mxd888.socket.metrics.MetricsRegistry;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 指标采集插件
+ * 由Monitor钩子和状态机采集流量、消息数、连接数与异常数，由{@link Plugins}在解码、处理、编码前后计时，
+ * 均按协议区分写入{@link MetricsRegistry}；所有计数只增不减，通过{@link #getRegistry()}拉取或导出Prometheus文本
+ *
+ * @author MDong
+ * @version 2.10.1.v20211002-RELEASE
+ */
+public final class MetricsPlugin extends AbstractPlugin {
+
+    /**
+     * 指标注册表
+     */
+    private final MetricsRegistry registry;
+
+    /**
+     * 各协议的指标，下标为协议序号，最后一项为协议未确定的连接
+     */
+    private final ProtocolMetrics[] protocolMetrics = new ProtocolMetrics[ProtocolEnum.values().length + 1];
+
+    /**
+     * read 操作次数
+     */
+    private final Counter reads;
+
+    /**
+     * write 操作次数
+     */
+    private final Counter writes;
+
+    /**
+     * 新建连接数
+     */
+    private final Counter connections;
+
+    /**
+     * 断开连接数
+     */
+    private final Counter disconnections;
+
+    /**
+     * 存活连接数
+     */
+    private final AtomicLong activeConnections = new AtomicLong();
+
+    public MetricsPlugin() {
+        this(new MetricsRegistry());
+    }
+
+    /**
+     * 构造指标采集插件，多个启动器可共用同一个注册表，同名指标合并累计
+     *
+     * @param registry 指标注册表
+     */
+    public MetricsPlugin(MetricsRegistry registry) {
+        this.registry = registry;
+        this.reads = registry.counter("aio_socket_reads_total", "Read operations issued");
+        this.writes = registry.counter("aio_socket_writes_total", "Write operations issued");
+        this.connections = registry.counter("aio_socket_connections_total", "Channels opened");
+        this.disconnections = registry.counter("aio_socket_disconnections_total", "Channels closed");
+        registry.gauge("aio_socket_connections_active", "Channels currently open", activeConnections::get);
+    }
+
+    public MetricsRegistry getRegistry() {
+        return registry;
+    }
+
+    @Override
+    public boolean beforeProcess(ChannelContext channelContext, Packet packet) {
+        metrics(channelContext.getProtocol()).packets.increment();
+        return true;
+    }
+
+    @Override
+    public void stateEvent(StateMachineEnum stateMachineEnum, ChannelContext channelContext, Throwable throwable) {
+        switch (stateMachineEnum) {
+            case NEW_CHANNEL:
+                activeConnections.incrementAndGet();
+                connections.increment();
+                break;
+            case CHANNEL_CLOSED:
+                activeConnections.decrementAndGet();
+                disconnections.increment();
+                break;
+            case PROCESS_EXCEPTION:
+                metrics(channelContext.getProtocol()).processErrors.increment();
+                break;
+            case DECODE_EXCEPTION:
+                metrics(channelContext.getProtocol()).decodeErrors.increment();
+                break;
+            default:
+                //ignore other state
+                break;
+        }
+    }
+
+    @Override
+    public void afterRead(ChannelContext channelContext, int readSize) {
+        metrics(channelContext.getProtocol()).readBytes.add(readSize);
+    }
+
+    @Override
+    public void beforeRead(ChannelContext channelContext) {
+        reads.increment();
+    }
+
+    @Override
+    public void afterWrite(ChannelContext channelContext, int writeSize) {
+        metrics(channelContext.getProtocol()).writtenBytes.add(writeSize);
+    }
+
+    @Override
+    public void beforeWrite(ChannelContext channelContext) {
+        writes.increment();
+    }
+
+    void recordDecode(ProtocolEnum protocol, long nanos) {
+        metrics(protocol).decodeLatency.record(nanos);
+    }
+
+    void recordHandle(ProtocolEnum protocol, long nanos) {
+        metrics(protocol).handleLatency.record(nanos);
+    }
+
+    void recordEncode(ProtocolEnum protocol, long nanos) {
+        metrics(protocol).encodeLatency.record(nanos);
+    }
+
+    /**
+     * 获取协议的指标，首次使用时注册；并发首次使用时注册表返回同一实例，重复赋值无害
+     */
+    private ProtocolMetrics metrics(ProtocolEnum protocol) {
+        int index = protocol == null ? protocolMetrics.length - 1 : protocol.ordinal();
+        ProtocolMetrics metrics = protocolMetrics[index];
+        if (metrics == null) {
+            metrics = new ProtocolMetrics(registry, protocol);
+            protocolMetrics[index] = metrics;
+        }
+        return metrics;
+    }
+
+    /**
+     * 单个协议的指标
+     */
+    private static final class ProtocolMetrics {
+
+        private final Counter readBytes;
+
+        private final Counter writtenBytes;
+
+        private final Counter packets;
+
+        private final Counter processErrors;
+
+        private final Counter decodeErrors;
+
+        private final LatencyHistogram decodeLatency;
+
+        private final LatencyHistogram handleLatency;
+
+        private final LatencyHistogram encodeLatency;
+
+        ProtocolMetrics(MetricsRegistry registry, ProtocolEnum protocol) {
+            this.readBytes = registry.counter("aio_socket_read_bytes_total", "Bytes read from channels", protocol);
+            this.writtenBytes = registry.counter("aio_socket_written_bytes_total", "Bytes written to channels", protocol);
+            this.packets = registry.counter("aio_socket_packets_total", "Packets handed to handlers", protocol);
+            this.processErrors = registry.counter("aio_socket_process_errors_total", "Packets whose handling failed", protocol);
+            this.decodeErrors = registry.counter("aio_socket_decode_errors_total", "Decode failures", protocol);
+            this.decodeLatency = registry.histogram("aio_socket_decode_seconds", "Time to decode one packet", protocol);
+            this.handleLatency = registry.histogram("aio_socket_handle_seconds", "Time spent in handler for one packet", protocol);
+            this.encodeLatency = registry.histogram("aio_socket_encode_seconds", "Time to encode one packet", protocol);
+        }
+    }
+}
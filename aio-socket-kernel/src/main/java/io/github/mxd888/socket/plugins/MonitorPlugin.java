@@ -24,10 +24,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.LongAdder;
 
 /**
- * 服务器运行状态监控插件
+ * 服务器运行状态监控插件，按周期以DEBUG日志输出各项计数；
+ * 需要延迟分位、按协议区分或供监控系统采集的指标时使用{@link MetricsPlugin}
  *
  * @author MDong
  * @version 2.10.1.v20211002-RELEASE
@@ -66,6 +68,11 @@ public final class MonitorPlugin extends AbstractPlugin implements Runnable {
      */
     private final LongAdder disConnect = new LongAdder();
 
+    /**
+     * 存活连接数
+     */
+    private final AtomicLong liveConnect = new AtomicLong();
+
     /**
      * 当前周期内执行 read 操作次数
      */
@@ -124,12 +131,14 @@ public final class MonitorPlugin extends AbstractPlugin implements Runnable {
                 break;
             case NEW_CHANNEL:
                 AioConfig config = channelContext.getAioConfig();
-                if (newConnect.longValue() > config.getMaxOnlineNum()) {
+                // 以存活连接数而不是周期内的新建连接数判断，实际的接入控制由ServerBootstrap的连接水位完成
+                if (liveConnect.incrementAndGet() > config.getMaxOnlineNum()) {
                     config.getHandler().stateEvent(channelContext, StateMachineEnum.REJECT_ACCEPT, throwable);
                 }
                 newConnect.increment();
                 break;
             case CHANNEL_CLOSED:
+                liveConnect.decrementAndGet();
                 disConnect.increment();
                 break;
             default:
@@ -54,6 +54,11 @@ public class Plugins implements Handler, Monitor {
      */
     private final Map<ProtocolEnum, AioHandler> handlers = new HashMap<>();
 
+    /**
+     * 指标采集插件，存在时对解码、处理、编码计时
+     */
+    private MetricsPlugin metricsPlugin;
+
     @Override
     public AsynchronousSocketChannel shouldAccept(AsynchronousSocketChannel channel) {
         AsynchronousSocketChannel acceptChannel = channel;
@@ -102,15 +107,33 @@ public class Plugins implements Handler, Monitor {
                 flag = false;
             }
         }
-        if (flag) {
-            return handlers.get(channelContext.getProtocol()).handle(channelContext, packet);
+        if (!flag) {
+            return null;
+        }
+        ProtocolEnum protocol = channelContext.getProtocol();
+        if (metricsPlugin == null) {
+            return handlers.get(protocol).handle(channelContext, packet);
+        }
+        long start = System.nanoTime();
+        try {
+            return handlers.get(protocol).handle(channelContext, packet);
+        } finally {
+            metricsPlugin.recordHandle(protocol, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void handleCompleted(ChannelContext channelContext, Packet packet) {
+        AioHandler handler = handlers.get(channelContext.getProtocol());
+        if (handler != null) {
+            handler.handleCompleted(channelContext, packet);
         }
-        return null;
     }
 
     @Override
     public Packet decode(MemoryUnit readBuffer, ChannelContext channelContext) throws AioDecoderException {
         Packet packet;
+        long start = metricsPlugin == null ? 0 : System.nanoTime();
         ProtocolEnum protocol = channelContext.getProtocol();
         if (protocol != null) {
             packet = handlers.get(protocol).decode(readBuffer, channelContext);
@@ -133,6 +156,10 @@ public class Plugins implements Handler, Monitor {
             }
         }
         if (packet != null) {
+            if (metricsPlugin != null) {
+                // 只记录解出消息包的调用，半包时的空解码不计入
+                metricsPlugin.recordDecode(channelContext.getProtocol(), System.nanoTime() - start);
+            }
             for (Plugin plugin : plugins) {
                 plugin.afterDecode(packet, channelContext);
             }
@@ -145,7 +172,17 @@ public class Plugins implements Handler, Monitor {
         for (Plugin plugin : plugins) {
             plugin.beforeEncode(packet, channelContext);
         }
-        handlers.get(channelContext.getProtocol()).encode(packet, channelContext);
+        ProtocolEnum protocol = channelContext.getProtocol();
+        if (metricsPlugin == null) {
+            handlers.get(protocol).encode(packet, channelContext);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            handlers.get(protocol).encode(packet, channelContext);
+        } finally {
+            metricsPlugin.recordEncode(protocol, System.nanoTime() - start);
+        }
     }
 
     @Override
@@ -179,8 +216,30 @@ public class Plugins implements Handler, Monitor {
         }
     }
 
+    /**
+     * 获取指定协议的处理器
+     *
+     * @param protocol 协议
+     * @return         处理器，未注册时返回null
+     */
+    public AioHandler getAioHandler(ProtocolEnum protocol) {
+        return handlers.get(protocol);
+    }
+
+    /**
+     * 只添加了一个处理器时获取其协议，此时无需指定协议即可确定消息包的编码方式
+     *
+     * @return 协议，未添加或添加了多个处理器时返回null
+     */
+    public ProtocolEnum getSoleProtocol() {
+        return handlers.size() == 1 ? aioHandler.name() : null;
+    }
+
     public final Plugins addPlugin(Plugin plugin) {
         this.plugins.add(plugin);
+        if (plugin instanceof MetricsPlugin) {
+            this.metricsPlugin = (MetricsPlugin) plugin;
+        }
         return this;
     }
 }
@@ -19,12 +19,11 @@ import io.github.mxd888.socket.StateMachineEnum;
 import io.github.mxd888.socket.core.AioConfig;
 import io.github.mxd888.socket.core.ChannelContext;
 import io.github.mxd888.socket.core.ClientBootstrap;
-import io.github.mxd888.socket.utils.QuickTimerTask;
+import io.github.mxd888.socket.utils.TimingWheel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.nio.channels.AsynchronousChannelGroup;
-import java.util.TimerTask;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -61,7 +60,7 @@ public class ReconnectPlugin extends AbstractPlugin {
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("aio-socket "+"version: " + AioConfig.VERSION + "; client kernel starting reconnect");
         }
-        QuickTimerTask.SCHEDULED_EXECUTOR_SERVICE.schedule(new TimerTask() {
+        TimingWheel.DEFAULT.newTimeout(new Runnable() {
             @Override
             public void run() {
                 try {
@@ -4,9 +4,10 @@ import io.github.mxd888.socket.Monitor;
 import io.github.mxd888.socket.StateMachineEnum;
 import io.github.mxd888.socket.core.AioConfig;
 import io.github.mxd888.socket.core.ChannelContext;
-import io.github.mxd888.socket.utils.pool.thread.AbstractQueueRunnable;
-import io.github.mxd888.socket.utils.queue.AioFullNotifyQueue;
-import io.github.mxd888.socket.utils.queue.AioQueue;
+import io.github.mxd888.socket.utils.pool.thread.AbstractAioRunnable;
+import io.github.mxd888.socket.utils.queue.AioIntSpscQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.concurrent.Executor;
 
@@ -16,38 +17,58 @@ import java.util.concurrent.Executor;
  * @author MDong
  * @version 2.10.1.v20211002-RELEASE
  */
-public class DecodeTask extends AbstractQueueRunnable<Integer> {
+public class DecodeTask extends AbstractAioRunnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DecodeTask.class);
 
     private final ChannelContext channelContext;
 
     private final AioConfig aioConfig;
 
-    private AioQueue<Integer> msgQueue = null;
+    /**
+     * 读结果队列，读操作在连接上串行发生，只有一个生产者
+     */
+    private final AioIntSpscQueue msgQueue;
 
     public DecodeTask(ChannelContext channelContext, Executor executor) {
         super(executor);
         this.channelContext = channelContext;
         this.aioConfig = channelContext.getAioConfig();
-        getTaskQueue();
+        this.msgQueue = new AioIntSpscQueue(aioConfig.getMaxWaitNum());
     }
 
     public DecodeTask(ChannelContext channelContext, Executor executor, int maxExecuteNum) {
         super(executor, maxExecuteNum);
         this.channelContext = channelContext;
         this.aioConfig = channelContext.getAioConfig();
-        getTaskQueue();
+        this.msgQueue = new AioIntSpscQueue(aioConfig.getMaxWaitNum());
     }
 
-    @Override
-    public AioQueue<Integer> getTaskQueue() {
-        if (msgQueue == null) {
-            synchronized (this) {
-                if (msgQueue == null) {
-                    msgQueue = new AioFullNotifyQueue<>(aioConfig.getMaxWaitNum());
-                }
-            }
+    /**
+     * 添加读结果
+     *
+     * @param result 读取的字节数，-1表示对端关闭
+     * @return       任务已取消或队列已满时返回false
+     */
+    public boolean addTask(int result) {
+        if (this.isCanceled()) {
+            LOGGER.error("task has been cancel");
+            return false;
         }
-        return msgQueue;
+        return msgQueue.offer(result);
+    }
+
+    @Override
+    public boolean isNeededExecute() {
+        return !msgQueue.isEmpty() && !this.isCanceled();
+    }
+
+    /**
+     * 同一连接的解码、处理、发送任务使用相同的亲和值，在工作窃取线程池中归属同一线程
+     */
+    @Override
+    public int getAffinity() {
+        return System.identityHashCode(channelContext);
     }
 
     @Override
@@ -56,13 +77,13 @@ public class DecodeTask extends AbstractQueueRunnable<Integer> {
             return;
         }
 
-        Integer integer;
-        while ((integer = msgQueue.poll()) != null) {
-            decode(integer);
+        int result;
+        while ((result = msgQueue.poll()) != AioIntSpscQueue.EMPTY) {
+            decode(result);
         }
     }
 
-    private void decode(Integer result) {
+    private void decode(int result) {
         try {
             // 接收到的消息进行预处理
             Monitor monitor = channelContext.getAioConfig().getMonitor();
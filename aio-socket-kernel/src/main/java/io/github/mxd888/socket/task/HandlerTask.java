@@ -20,11 +20,15 @@ import io.github.mxd888.socket.StateMachineEnum;
 import io.github.mxd888.socket.core.Aio;
 import io.github.mxd888.socket.core.AioConfig;
 import io.github.mxd888.socket.core.ChannelContext;
+import io.github.mxd888.socket.metrics.MessageTrace;
+import io.github.mxd888.socket.utils.ThreadUtils;
 import io.github.mxd888.socket.utils.pool.thread.AbstractQueueRunnable;
-import io.github.mxd888.socket.utils.queue.AioFullNotifyQueue;
+import io.github.mxd888.socket.utils.queue.AioSpscQueue;
 import io.github.mxd888.socket.utils.queue.AioQueue;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * 消息处理逻辑执行器
@@ -38,16 +42,88 @@ public class HandlerTask extends AbstractQueueRunnable<Packet> {
 
     private final AioConfig aioConfig;
 
+    /**
+     * 待处理消息队列，消息包只由当前连接的解码逻辑入队，单生产者单消费者
+     */
     private AioQueue<Packet> msgQueue = null;
 
+    /**
+     * 是否运行在虚拟线程上
+     */
+    private final boolean virtual;
+
+    /**
+     * 虚拟线程模式下，当前连接是否已有虚拟线程在处理队列
+     */
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
     public HandlerTask(ChannelContext channelContext, Executor executor) {
-        super(executor);
+        super(selectExecutor(channelContext, executor));
         this.channelContext = channelContext;
         aioConfig = channelContext.getAioConfig();
+        virtual = this.executor != executor;
         getTaskQueue();
     }
 
+    /**
+     * 开启虚拟线程模式且JDK支持时使用虚拟线程执行器，否则使用传入的作业线程池
+     *
+     * @param channelContext 用户上下文
+     * @param executor       作业线程池
+     * @return               实际使用的执行器
+     */
+    private static Executor selectExecutor(ChannelContext channelContext, Executor executor) {
+        if (channelContext.getAioConfig().isVirtualThreadHandler()) {
+            ExecutorService virtualThreadExecutor = ThreadUtils.getVirtualThreadExecutor();
+            if (virtualThreadExecutor != null) {
+                return virtualThreadExecutor;
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * 虚拟线程模式下每个连接同一时刻最多只有一个虚拟线程处理队列，保证消息按序处理；
+     * 处理逻辑可以阻塞，阻塞的只是当前连接的虚拟线程
+     */
+    @Override
+    public void execute() {
+        if (!virtual) {
+            super.execute();
+            return;
+        }
+        if (scheduled.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+
+    /**
+     * 虚拟线程中处理当前连接的全部待处理消息，释放调度标记后再次检查，避免遗漏并发加入的消息；
+     * 处理逻辑抛出Error时同样释放调度标记并为剩余消息重新调度，避免该连接的消息不再被处理
+     */
+    private void drain() {
+        boolean drained = false;
+        try {
+            do {
+                runTask();
+                scheduled.set(false);
+            } while (!msgQueue.isEmpty() && scheduled.compareAndSet(false, true));
+            drained = true;
+        } finally {
+            if (!drained) {
+                scheduled.set(false);
+                if (!msgQueue.isEmpty()) {
+                    execute();
+                }
+            }
+        }
+    }
+
     public void handler(Packet packet) {
+        MessageTrace messageTrace = channelContext.getMessageTrace();
+        if (messageTrace != null) {
+            messageTrace.handleStarted(packet);
+        }
         try {
             Packet handle = aioConfig.getHandler().handle(channelContext, packet);
             if (handle != null) {
@@ -55,10 +131,23 @@ public class HandlerTask extends AbstractQueueRunnable<Packet> {
             }
         } catch (Exception e) {
             aioConfig.getHandler().stateEvent(channelContext, StateMachineEnum.PROCESS_EXCEPTION, e);
+        } finally {
+            if (messageTrace != null) {
+                messageTrace.handleEnded();
+            }
+            aioConfig.getHandler().handleCompleted(channelContext, packet);
         }
 
     }
 
+    /**
+     * 以所属连接计算亲和值，与该连接的解码任务归属同一工作线程
+     */
+    @Override
+    public int getAffinity() {
+        return System.identityHashCode(channelContext);
+    }
+
     @Override
     public void runTask() {
         if (msgQueue.isEmpty()) {
@@ -81,7 +170,7 @@ public class HandlerTask extends AbstractQueueRunnable<Packet> {
         if (msgQueue == null) {
             synchronized (this) {
                 if (msgQueue == null) {
-                    msgQueue = new AioFullNotifyQueue<>(aioConfig.getMaxWaitNum());
+                    msgQueue = new AioSpscQueue<>(aioConfig.getMaxWaitNum());
                 }
             }
         }
@@ -18,8 +18,9 @@ package io.github.mxd888.socket.task;
 import io.github.mxd888.socket.Packet;
 import io.github.mxd888.socket.core.ChannelContext;
 import io.github.mxd888.socket.intf.Handler;
+import io.github.mxd888.socket.metrics.MessageTrace;
 import io.github.mxd888.socket.utils.pool.thread.AbstractQueueRunnable;
-import io.github.mxd888.socket.utils.queue.AioFullNotifyQueue;
+import io.github.mxd888.socket.utils.queue.AioMpscQueue;
 import io.github.mxd888.socket.utils.queue.AioQueue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -43,6 +44,9 @@ public class SendTask extends AbstractQueueRunnable<Packet> {
 
     private final Consumer<Boolean> consumer;
 
+    /**
+     * 待发送消息队列，任意线程都可能发送消息，多生产者单消费者
+     */
     private AioQueue<Packet> msgQueue = null;
 
     public SendTask(ChannelContext channelContext, Executor executor, Consumer<Boolean> consumer) {
@@ -71,12 +75,24 @@ public class SendTask extends AbstractQueueRunnable<Packet> {
         try {
             synchronized (this.channelContext) {
                 aioHandler.encode(packet, channelContext);
+                MessageTrace messageTrace = channelContext.getMessageTrace();
+                if (messageTrace != null) {
+                    messageTrace.encoded(packet, channelContext.getWriteBuffer().getStreamPosition());
+                }
             }
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * 以所属连接计算亲和值
+     */
+    @Override
+    public int getAffinity() {
+        return System.identityHashCode(channelContext);
+    }
+
     @Override
     public void runTask() {
         if (msgQueue.isEmpty()) {
@@ -104,7 +120,7 @@ public class SendTask extends AbstractQueueRunnable<Packet> {
         if (msgQueue == null) {
             synchronized (this) {
                 if (msgQueue == null) {
-                    msgQueue = new AioFullNotifyQueue<>(channelContext.getAioConfig().getMaxWaitNum());
+                    msgQueue = new AioMpscQueue<>(channelContext.getAioConfig().getMaxWaitNum());
                 }
             }
         }
@@ -21,6 +21,7 @@ import io.github.mxd888.socket.StateMachineEnum;
 import io.github.mxd888.socket.core.Aio;
 import io.github.mxd888.socket.core.ChannelContext;
 import io.github.mxd888.socket.exception.AioDecoderException;
+import io.github.mxd888.socket.utils.pool.memory.CompositeBuffer;
 import io.github.mxd888.socket.utils.pool.memory.MemoryPool;
 import io.github.mxd888.socket.utils.pool.memory.MemoryUnit;
 import io.github.mxd888.socket.core.AioConfig;
@@ -186,9 +187,13 @@ public final class Worker implements Runnable {
                             config.getHandler().stateEvent(session, StateMachineEnum.DECODE_EXCEPTION, new AioDecoderException("decode result is null, buffer size: " + buffer.remaining()));
                             break;
                         } else {
-                            Packet handle = config.getHandler().handle(session, request);
-                            if (handle != null) {
-                                Aio.send(session, handle);
+                            try {
+                                Packet handle = config.getHandler().handle(session, request);
+                                if (handle != null) {
+                                    Aio.send(session, handle);
+                                }
+                            } finally {
+                                config.getHandler().handleCompleted(session, request);
                             }
                         }
                     } while (buffer.hasRemaining());
@@ -197,7 +202,13 @@ public final class Worker implements Runnable {
                     config.getHandler().stateEvent(session, StateMachineEnum.DECODE_EXCEPTION, e);
                 } finally {
 //                    session.getWriteBuffer().flush();
-                    readyBuffer.clean();
+                    CompositeBuffer compositeBuffer = session.getCompositeBuffer();
+                    if (compositeBuffer.first() == readyBuffer) {
+                        // 解码时切出了切片，由组合缓冲区按引用计数回收
+                        compositeBuffer.release();
+                    } else {
+                        readyBuffer.clean();
+                    }
                 }
             };
             if (!requestQueue.offer(runnable)) {
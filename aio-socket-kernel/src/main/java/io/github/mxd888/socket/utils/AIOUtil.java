@@ -16,6 +16,7 @@
 package io.github.mxd888.socket.utils;
 
 import io.github.mxd888.socket.core.ChannelContext;
+import io.github.mxd888.socket.utils.pool.memory.CompositeBuffer;
 import io.github.mxd888.socket.utils.pool.memory.MemoryUnit;
 
 import java.io.IOException;
@@ -35,6 +36,7 @@ public class AIOUtil {
 
     /**
      * aio-socket 作者自研超大包解决方案
+     * 消息跨越多个读缓冲区时从组合缓冲区中读取，不再受分片数量限制
      *
      * @param len            待输出数组长度
      * @param buffer         虚拟buffer
@@ -42,8 +44,9 @@ public class AIOUtil {
      * @return               byte数组
      */
     public static byte[] getBytesFromByteBuffer(int len, MemoryUnit buffer, ChannelContext channelContext) {
+        CompositeBuffer compositeBuffer = channelContext.getCompositeBuffer();
         // 小包消息处理
-        if (channelContext.getOldByteBuffer().isEmpty()) {
+        if (compositeBuffer.first() != buffer) {
             // 数据够用，直接读
             if (len <= buffer.buffer().remaining()) {
                 byte[] bytes = new byte[len];
@@ -53,27 +56,41 @@ public class AIOUtil {
             // 数据不够
             return null;
         }
-        // 大包消息处理，检查队列数据是否足够
-        final int readBufferSize = channelContext.getAioConfig().getReadBufferSize();
-        if (len + Integer.BYTES <= channelContext.getOldByteBuffer().size() * readBufferSize) {
-            // 队列数据够，则读数据
+        // 大包消息处理，检查组合缓冲区数据是否足够
+        if (len <= compositeBuffer.readableBytes()) {
             byte[] bytes = new byte[len];
-            int index = 0;
-            MemoryUnit oldBuffer;
-            while ((oldBuffer = channelContext.getOldByteBuffer().poll()) != null && index <= len) {
-                int relatable = Math.min(len - index, oldBuffer.buffer().remaining());
-                oldBuffer.buffer().get(bytes, index, relatable);
-                index += relatable;
-                if (channelContext.getReadBuffer() != oldBuffer) {
-                    oldBuffer.clean();
-                }
-            }
+            compositeBuffer.readBytes(bytes, 0, len);
             return bytes;
         }
-        // 若队列数据不够则继续读
+        // 若数据不够则继续读
         return null;
     }
 
+    /**
+     * 零拷贝读取，返回当前读缓冲区中长度为len的切片并移动读位置，不申请byte数组
+     * 首次切片时读缓冲区转交组合缓冲区按引用计数管理，切片未释放前读缓冲区不会被压缩或复用；
+     * 切片使用完毕后必须调用release()，通常在Handler.handleCompleted中释放
+     *
+     * @param len            切片长度
+     * @param buffer         虚拟buffer
+     * @param channelContext 用户通道上下文信息
+     * @return               切片，数据不够时返回null
+     */
+    public static CompositeBuffer getSliceFromByteBuffer(int len, MemoryUnit buffer, ChannelContext channelContext) {
+        CompositeBuffer compositeBuffer = channelContext.getCompositeBuffer();
+        if (compositeBuffer.first() != buffer) {
+            if (len > buffer.buffer().remaining() || !compositeBuffer.isEmpty()) {
+                return null;
+            }
+            compositeBuffer.addComponent(buffer);
+        }
+        if (len > compositeBuffer.readableBytes()) {
+            // 若数据不够则继续读
+            return null;
+        }
+        return compositeBuffer.readRetainedSlice(len);
+    }
+
     /**
      * 关闭用户通道
      *
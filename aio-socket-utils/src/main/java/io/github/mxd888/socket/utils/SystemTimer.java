@@ -15,8 +15,8 @@
  */
 package io.github.mxd888.socket.utils;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadFactory;
@@ -41,7 +41,7 @@ public class SystemTimer {
 		if (list == null) {
 			synchronized (TimerTask.class) {
 				if (list == null) {
-					list = new ArrayList<>();
+					list = new CopyOnWriteArrayList<>();
 				}
 			}
 		}
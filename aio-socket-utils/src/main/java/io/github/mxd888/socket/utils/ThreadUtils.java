@@ -18,7 +18,11 @@ package io.github.mxd888.socket.utils;
 import io.github.mxd888.socket.utils.pool.thread.AioCallerRunsPolicy;
 import io.github.mxd888.socket.utils.pool.thread.DefaultThreadFactory;
 import io.github.mxd888.socket.utils.pool.thread.AioThreadPoolExecutor;
+import io.github.mxd888.socket.utils.pool.thread.AioWorkStealingExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.lang.reflect.Method;
 import java.util.concurrent.*;
 
 /**
@@ -29,6 +33,8 @@ import java.util.concurrent.*;
  */
 public class ThreadUtils {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(ThreadUtils.class);
+
     /**
      * 保持活跃时间
      */
@@ -174,6 +180,89 @@ public class ThreadUtils {
         return poolExecutor;
     }
 
+    public static ExecutorService getWorkStealingAioExecutor() {
+        return getWorkStealingAioExecutor(MAX_POOL_SIZE_FOR_AIO_WORKER);
+    }
+
+    public static ExecutorService getWorkStealingAioExecutor(int workerNum) {
+        return getWorkStealingAioExecutor(workerNum, DefaultThreadFactory.getInstance(defaultThreadName, Thread.MAX_PRIORITY));
+    }
+
+    /**
+     * 构造工作窃取线程池，每个工作线程持有本地队列，同一连接的任务优先在同一线程上执行
+     *
+     * @param workerNum     工作线程数量
+     * @param threadFactory 线程工厂
+     * @return              工作窃取线程池
+     */
+    public static ExecutorService getWorkStealingAioExecutor(int workerNum, ThreadFactory threadFactory) {
+        return new AioWorkStealingExecutor(workerNum, threadFactory);
+    }
+
+    /**
+     * 每个任务一个虚拟线程的执行器，首次使用时创建
+     */
+    private static volatile ExecutorService virtualThreadExecutor;
+
+    /**
+     * 当前JDK是否不支持虚拟线程
+     */
+    private static volatile boolean virtualThreadUnsupported = false;
+
+    /**
+     * 获取每个任务一个虚拟线程的执行器（JDK 21+），所有调用方共享同一个执行器
+     * 框架以Java 8编译，通过反射调用Executors.newVirtualThreadPerTaskExecutor()
+     *
+     * @return 虚拟线程执行器，当前JDK不支持虚拟线程时返回null
+     */
+    public static ExecutorService getVirtualThreadExecutor() {
+        if (virtualThreadExecutor != null || virtualThreadUnsupported) {
+            return virtualThreadExecutor;
+        }
+        synchronized (ThreadUtils.class) {
+            if (virtualThreadExecutor != null || virtualThreadUnsupported) {
+                return virtualThreadExecutor;
+            }
+            try {
+                virtualThreadExecutor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                virtualThreadUnsupported = true;
+                LOGGER.warn("virtual threads are not supported by java {}", System.getProperty("java.version"));
+            }
+            return virtualThreadExecutor;
+        }
+    }
+
+    /**
+     * Thread.isVirtual()，当前JDK不支持虚拟线程时为null
+     */
+    private static final Method IS_VIRTUAL = isVirtualMethod();
+
+    private static Method isVirtualMethod() {
+        try {
+            return Thread.class.getMethod("isVirtual");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 判断线程是否为虚拟线程，JDK 21以下始终返回false
+     *
+     * @param thread 线程
+     * @return       布尔
+     */
+    public static boolean isVirtual(Thread thread) {
+        if (IS_VIRTUAL == null) {
+            return false;
+        }
+        try {
+            return (Boolean) IS_VIRTUAL.invoke(thread);
+        } catch (ReflectiveOperationException e) {
+            return false;
+        }
+    }
+
     private ThreadUtils() {
     }
 
@@ -0,0 +1,282 @@
+/*
+ *    Copyright 2019 The aio-socket Project
+ *
+ *    The aio-socket Project Licenses this file to you under the Apache License,
+ *    Version 2.0 (the "License"); you may not use this file except in compliance
+ *    with the License. You may obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.mxd888.socket.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * 哈希时间轮，由SystemTimer驱动推进
+ * 任意线程添加的定时任务先进入无锁队列，由SystemTimer线程在推进时按到期时间散列到对应的槽位，
+ * 添加与取消均为O(1)，不会像ScheduledExecutorService一样在大量连接下产生堆调整的开销；
+ * 到期的任务按批交给执行器运行，避免阻塞SystemTimer的时钟更新
+ *
+ * @author MDong
+ * @version 2.10.1.v20211002-RELEASE
+ */
+public final class TimingWheel implements SystemTimer.TimerListener {
+
+    /**
+     * 默认时间轮，刻度100毫秒，512个槽位，到期任务在QuickTimerTask线程中运行
+     */
+    public static final TimingWheel DEFAULT = new TimingWheel(100, 512, QuickTimerTask.SCHEDULED_EXECUTOR_SERVICE);
+
+    /**
+     * 每个刻度的毫秒数
+     */
+    private final long tickMillis;
+
+    /**
+     * 槽位
+     */
+    private final Bucket[] wheel;
+
+    /**
+     * 槽位下标掩码
+     */
+    private final int mask;
+
+    /**
+     * 到期任务的执行器
+     */
+    private final Executor executor;
+
+    /**
+     * 等待散列到槽位中的新任务
+     */
+    private final Queue<Timeout> pendingTimeouts = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 时间轮启动时间
+     */
+    private final long startTime;
+
+    /**
+     * 已推进的刻度数，仅由SystemTimer线程访问
+     */
+    private long tick;
+
+    /**
+     * 构造并注册到SystemTimer
+     *
+     * @param tickMillis 每个刻度的毫秒数
+     * @param wheelSize  槽位数量，向上取整为2的幂
+     * @param executor   到期任务的执行器
+     */
+    public TimingWheel(long tickMillis, int wheelSize, Executor executor) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("tickMillis should bigger than zero");
+        }
+        if (wheelSize <= 0 || wheelSize > 1 << 30) {
+            throw new IllegalArgumentException("wheelSize should between 1 and 2^30");
+        }
+        int size = 1;
+        while (size < wheelSize) {
+            size <<= 1;
+        }
+        this.tickMillis = tickMillis;
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.executor = executor;
+        this.startTime = SystemTimer.currentTimeMillis();
+        SystemTimer.addTimerListener(this);
+    }
+
+    /**
+     * 添加一次性定时任务
+     *
+     * @param task  任务
+     * @param delay 延迟时间
+     * @param unit  时间单位
+     * @return      任务句柄，可用于取消
+     */
+    public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+        Timeout timeout = new Timeout(task, SystemTimer.currentTimeMillis() + Math.max(0, unit.toMillis(delay)));
+        pendingTimeouts.offer(timeout);
+        return timeout;
+    }
+
+    @Override
+    public void onChange(long currTime) {
+        List<Timeout> expired = null;
+        while (currTime - startTime >= (tick + 1) * tickMillis) {
+            transferPendingTimeouts();
+            expired = wheel[(int) (tick & mask)].expire(expired);
+            tick++;
+        }
+        if (expired != null) {
+            final List<Timeout> timeouts = expired;
+            executor.execute(() -> {
+                for (Timeout timeout : timeouts) {
+                    timeout.run();
+                }
+            });
+        }
+    }
+
+    /**
+     * 将新任务散列到槽位，已到期的任务放入当前刻度的槽位
+     */
+    private void transferPendingTimeouts() {
+        Timeout timeout;
+        while ((timeout = pendingTimeouts.poll()) != null) {
+            if (timeout.state == Timeout.ST_CANCELLED) {
+                continue;
+            }
+            long calculated = Math.max((timeout.deadline - startTime) / tickMillis, tick);
+            timeout.remainingRounds = (calculated - tick) / wheel.length;
+            wheel[(int) (calculated & mask)].add(timeout);
+        }
+    }
+
+    /**
+     * 定时任务句柄
+     */
+    public static final class Timeout {
+
+        private static final int ST_INIT = 0;
+
+        private static final int ST_CANCELLED = 1;
+
+        private static final int ST_EXPIRED = 2;
+
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE_UPDATER = AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        /**
+         * 任务
+         */
+        private final Runnable task;
+
+        /**
+         * 到期时间
+         */
+        private final long deadline;
+
+        /**
+         * 剩余圈数，仅由SystemTimer线程访问
+         */
+        private long remainingRounds;
+
+        /**
+         * 所在槽位的前后节点
+         */
+        private Timeout prev, next;
+
+        private volatile int state = ST_INIT;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * 取消任务，槽位中的节点在下次经过时移除
+         *
+         * @return 是否取消成功，任务已到期或已取消时返回false
+         */
+        public boolean cancel() {
+            return STATE_UPDATER.compareAndSet(this, ST_INIT, ST_CANCELLED);
+        }
+
+        public boolean isCancelled() {
+            return state == ST_CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state == ST_EXPIRED;
+        }
+
+        private void run() {
+            try {
+                task.run();
+            } catch (Throwable e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * 槽位，以双向链表保存任务，仅由SystemTimer线程访问
+     */
+    private static final class Bucket {
+
+        private Timeout head, tail;
+
+        void add(Timeout timeout) {
+            if (tail == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        /**
+         * 取出本圈到期的任务，移除已取消的任务，其余任务圈数减一
+         *
+         * @param expired 到期任务列表，为null时按需创建
+         * @return        到期任务列表
+         */
+        List<Timeout> expire(List<Timeout> expired) {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    if (Timeout.STATE_UPDATER.compareAndSet(timeout, Timeout.ST_INIT, Timeout.ST_EXPIRED)) {
+                        if (expired == null) {
+                            expired = new ArrayList<>();
+                        }
+                        expired.add(timeout);
+                    }
+                } else if (timeout.state == Timeout.ST_CANCELLED) {
+                    remove(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+            return expired;
+        }
+
+        private void remove(Timeout timeout) {
+            Timeout next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (next != null) {
+                next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                head = next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+        }
+    }
+}
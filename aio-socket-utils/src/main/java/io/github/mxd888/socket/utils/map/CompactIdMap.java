@@ -0,0 +1,113 @@
+/*
+ *    Copyright 2019 The aio-socket Project
+ *
+ *    The aio-socket Project Licenses this file to you under the Apache License,
+ *    Version 2.0 (the "License"); you may not use this file except in compliance
+ *    with the License. You may obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.mxd888.socket.utils.map;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * 紧凑的ID映射
+ * 十进制规范形式的纯数字ID（无前导零、不超过18位）直接以long为键保存在分段加锁的开放寻址表中，
+ * 不再为每个条目保留String键与哈希表节点，百万级绑定时每个条目约占十几字节加上值的引用；
+ * 其余ID回退到ConcurrentHashMap，两类ID互不冲突
+ *
+ * @author MDong
+ * @version 2.10.1.v20211002-RELEASE
+ */
+public final class CompactIdMap<V> implements IdMap<V> {
+
+    /**
+     * 纯数字ID
+     */
+    private final ConcurrentLongHashMap<V> numericIds;
+
+    /**
+     * 其余ID
+     */
+    private final Map<String, V> stringIds = new ConcurrentHashMap<>();
+
+    public CompactIdMap() {
+        this(1024, 64);
+    }
+
+    /**
+     * 构造紧凑的ID映射
+     *
+     * @param expectedItems    预计的纯数字ID数量
+     * @param concurrencyLevel 分段数量
+     */
+    public CompactIdMap(int expectedItems, int concurrencyLevel) {
+        this.numericIds = new ConcurrentLongHashMap<>(expectedItems, concurrencyLevel);
+    }
+
+    @Override
+    public V get(String id) {
+        long key = toKey(id);
+        return key >= 0 ? numericIds.get(key) : stringIds.get(id);
+    }
+
+    @Override
+    public V put(String id, V value) {
+        long key = toKey(id);
+        return key >= 0 ? numericIds.put(key, value) : stringIds.put(id, value);
+    }
+
+    @Override
+    public V remove(String id) {
+        long key = toKey(id);
+        return key >= 0 ? numericIds.remove(key) : stringIds.remove(id);
+    }
+
+    @Override
+    public boolean remove(String id, V value) {
+        long key = toKey(id);
+        return key >= 0 ? numericIds.remove(key, value) : stringIds.remove(id, value);
+    }
+
+    @Override
+    public int size() {
+        return numericIds.size() + stringIds.size();
+    }
+
+    @Override
+    public void forEach(BiConsumer<String, ? super V> consumer) {
+        numericIds.forEach((key, value) -> consumer.accept(String.valueOf(key), value));
+        stringIds.forEach(consumer);
+    }
+
+    /**
+     * 将十进制规范形式的纯数字ID转换为long
+     *
+     * @param id ID
+     * @return   long键，不是规范的纯数字ID时返回-1
+     */
+    static long toKey(String id) {
+        int length = id.length();
+        if (length == 0 || length > 18 || (length > 1 && id.charAt(0) == '0')) {
+            return -1;
+        }
+        long key = 0;
+        for (int i = 0; i < length; i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            key = key * 10 + (c - '0');
+        }
+        return key;
+    }
+}
@@ -0,0 +1,367 @@
+/*
+ *    Copyright 2019 The aio-socket Project
+ *
+ *    The aio-socket Project Licenses this file to you under the Apache License,
+ *    Version 2.0 (the "License"); you may not use this file except in compliance
+ *    with the License. You may obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.mxd888.socket.utils.map;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * 以long为键的并发哈希表
+ * 按键的哈希分段，每段使用开放寻址（线性探测）的long[]与Object[]保存数据，不会为键装箱也不会为每个条目创建节点；
+ * 读操作先尝试乐观读，写操作持有所在分段的写锁，删除时将后续条目前移而不留墓碑；不支持null值
+ *
+ * @author MDong
+ * @version 2.10.1.v20211002-RELEASE
+ */
+public final class ConcurrentLongHashMap<V> {
+
+    /**
+     * 扩容阈值
+     */
+    private static final float FILL_FACTOR = 0.66f;
+
+    /**
+     * 分段
+     */
+    private final Section<V>[] sections;
+
+    /**
+     * 分段下标掩码
+     */
+    private final int sectionMask;
+
+    public ConcurrentLongHashMap() {
+        this(256, 16);
+    }
+
+    /**
+     * 构造并发哈希表
+     *
+     * @param expectedItems    预计条目数量
+     * @param concurrencyLevel 分段数量，向上取整为2的幂
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentLongHashMap(int expectedItems, int concurrencyLevel) {
+        if (expectedItems <= 0 || concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("expectedItems and concurrencyLevel should bigger than zero");
+        }
+        int sectionCount = tableSizeFor(concurrencyLevel);
+        int perSection = Math.max(2, tableSizeFor((int) (expectedItems / sectionCount / FILL_FACTOR) + 1));
+        this.sections = (Section<V>[]) new Section<?>[sectionCount];
+        for (int i = 0; i < sectionCount; i++) {
+            sections[i] = new Section<>(perSection);
+        }
+        this.sectionMask = sectionCount - 1;
+    }
+
+    public V get(long key) {
+        long h = hash(key);
+        return section(h).get(key, (int) h);
+    }
+
+    /**
+     * 写入键值
+     *
+     * @param key   键
+     * @param value 值，不能为null
+     * @return      原有的值，不存在时返回null
+     */
+    public V put(long key, V value) {
+        checkValue(value);
+        long h = hash(key);
+        return section(h).put(key, value, (int) h, false);
+    }
+
+    /**
+     * 键不存在时写入
+     *
+     * @param key   键
+     * @param value 值，不能为null
+     * @return      已存在的值，写入成功时返回null
+     */
+    public V putIfAbsent(long key, V value) {
+        checkValue(value);
+        long h = hash(key);
+        return section(h).put(key, value, (int) h, true);
+    }
+
+    /**
+     * 删除键
+     *
+     * @param key 键
+     * @return    被删除的值，不存在时返回null
+     */
+    public V remove(long key) {
+        long h = hash(key);
+        return section(h).remove(key, null, (int) h);
+    }
+
+    /**
+     * 仅当键当前对应的值为value时删除
+     *
+     * @param key   键
+     * @param value 期望的值
+     * @return      是否删除
+     */
+    public boolean remove(long key, Object value) {
+        checkValue(value);
+        long h = hash(key);
+        return section(h).remove(key, value, (int) h) != null;
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Section<V> section : sections) {
+            size += section.size;
+        }
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public void clear() {
+        for (Section<V> section : sections) {
+            section.clear();
+        }
+    }
+
+    /**
+     * 遍历所有条目，逐段持有读锁，遍历期间的并发修改在分段之间可能不可见
+     *
+     * @param consumer 条目消费者
+     */
+    public void forEach(EntryConsumer<? super V> consumer) {
+        for (Section<V> section : sections) {
+            section.forEach(consumer);
+        }
+    }
+
+    private Section<V> section(long hash) {
+        return sections[(int) (hash >>> 32) & sectionMask];
+    }
+
+    private static void checkValue(Object value) {
+        if (value == null) {
+            throw new NullPointerException("value can not be null");
+        }
+    }
+
+    private static long hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+
+    private static int tableSizeFor(int n) {
+        int size = 1;
+        while (size < n && size < 1 << 30) {
+            size <<= 1;
+        }
+        return size;
+    }
+
+    /**
+     * 分段，开放寻址表
+     */
+    private static final class Section<V> extends StampedLock {
+
+        private static final long serialVersionUID = 2630291460981564307L;
+
+        private long[] keys;
+
+        private Object[] values;
+
+        private volatile int size;
+
+        private int resizeThreshold;
+
+        Section(int capacity) {
+            this.keys = new long[capacity];
+            this.values = new Object[capacity];
+            this.resizeThreshold = (int) (capacity * FILL_FACTOR);
+        }
+
+        V get(long key, int hash) {
+            long stamp = tryOptimisticRead();
+            V value = find(keys, values, key, hash);
+            if (validate(stamp)) {
+                return value;
+            }
+            stamp = readLock();
+            try {
+                return find(keys, values, key, hash);
+            } finally {
+                unlockRead(stamp);
+            }
+        }
+
+        V put(long key, V value, int hash, boolean onlyIfAbsent) {
+            long stamp = writeLock();
+            try {
+                int mask = keys.length - 1;
+                int index = hash & mask;
+                while (true) {
+                    Object current = values[index];
+                    if (current == null) {
+                        keys[index] = key;
+                        values[index] = value;
+                        if (++size > resizeThreshold) {
+                            rehash(keys.length << 1);
+                        }
+                        return null;
+                    }
+                    if (keys[index] == key) {
+                        if (!onlyIfAbsent) {
+                            values[index] = value;
+                        }
+                        return cast(current);
+                    }
+                    index = (index + 1) & mask;
+                }
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        V remove(long key, Object expected, int hash) {
+            long stamp = writeLock();
+            try {
+                int mask = keys.length - 1;
+                int index = hash & mask;
+                while (true) {
+                    Object current = values[index];
+                    if (current == null) {
+                        return null;
+                    }
+                    if (keys[index] == key) {
+                        if (expected != null && expected != current && !expected.equals(current)) {
+                            return null;
+                        }
+                        shiftBackward(index, mask);
+                        size--;
+                        return cast(current);
+                    }
+                    index = (index + 1) & mask;
+                }
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        void forEach(EntryConsumer<? super V> consumer) {
+            long stamp = readLock();
+            try {
+                for (int i = 0; i < values.length; i++) {
+                    if (values[i] != null) {
+                        consumer.accept(keys[i], cast(values[i]));
+                    }
+                }
+            } finally {
+                unlockRead(stamp);
+            }
+        }
+
+        void clear() {
+            long stamp = writeLock();
+            try {
+                Arrays.fill(values, null);
+                size = 0;
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        /**
+         * 删除index处的条目，并将探测链上可以前移的条目前移，保证后续查找不会因空槽提前终止
+         */
+        private void shiftBackward(int index, int mask) {
+            int next = index;
+            while (true) {
+                next = (next + 1) & mask;
+                if (values[next] == null) {
+                    break;
+                }
+                int home = (int) hash(keys[next]) & mask;
+                if (((next - home) & mask) >= ((next - index) & mask)) {
+                    keys[index] = keys[next];
+                    values[index] = values[next];
+                    index = next;
+                }
+            }
+            values[index] = null;
+        }
+
+        private void rehash(int capacity) {
+            long[] oldKeys = keys;
+            Object[] oldValues = values;
+            long[] newKeys = new long[capacity];
+            Object[] newValues = new Object[capacity];
+            int mask = capacity - 1;
+            for (int i = 0; i < oldValues.length; i++) {
+                if (oldValues[i] != null) {
+                    int index = (int) hash(oldKeys[i]) & mask;
+                    while (newValues[index] != null) {
+                        index = (index + 1) & mask;
+                    }
+                    newKeys[index] = oldKeys[i];
+                    newValues[index] = oldValues[i];
+                }
+            }
+            keys = newKeys;
+            values = newValues;
+            resizeThreshold = (int) (capacity * FILL_FACTOR);
+        }
+
+        /**
+         * 查找键，乐观读时数组可能被并发修改，最多探测一圈
+         */
+        private static <V> V find(long[] keys, Object[] values, long key, int hash) {
+            int capacity = Math.min(keys.length, values.length);
+            int mask = capacity - 1;
+            int index = hash & mask;
+            for (int i = 0; i < capacity; i++) {
+                Object current = values[index];
+                if (current == null) {
+                    return null;
+                }
+                if (keys[index] == key) {
+                    return cast(current);
+                }
+                index = (index + 1) & mask;
+            }
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <V> V cast(Object value) {
+            return (V) value;
+        }
+    }
+
+    /**
+     * 条目消费者
+     */
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+
+        void accept(long key, V value);
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ *    Copyright 2019 The aio-socket Project
+ *
+ *    The aio-socket Project Licenses this file to you under the Apache License,
+ *    Version 2.0 (the "License"); you may not use this file except in compliance
+ *    with the License. You may obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.mxd888.socket.utils.map;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * 以字符串ID为键的并发映射，供用户ID、集群ID等绑定关系使用
+ *
+ * @author MDong
+ * @version 2.10.1.v20211002-RELEASE
+ */
+public interface IdMap<V> {
+
+    V get(String id);
+
+    /**
+     * 绑定ID
+     *
+     * @param id    ID
+     * @param value 值，不能为null
+     * @return      原有的值，不存在时返回null
+     */
+    V put(String id, V value);
+
+    /**
+     * 解绑ID
+     *
+     * @param id ID
+     * @return   被解绑的值，不存在时返回null
+     */
+    V remove(String id);
+
+    /**
+     * 仅当ID当前绑定的值为value时解绑
+     *
+     * @param id    ID
+     * @param value 期望的值
+     * @return      是否解绑
+     */
+    boolean remove(String id, V value);
+
+    int size();
+
+    /**
+     * 遍历所有绑定关系，弱一致
+     *
+     * @param consumer ID与值的消费者
+     */
+    void forEach(BiConsumer<String, ? super V> consumer);
+
+    /**
+     * 基于ConcurrentHashMap的实现
+     *
+     * @param <V> 值类型
+     * @return    IdMap
+     */
+    static <V> IdMap<V> concurrent() {
+        Map<String, V> map = new ConcurrentHashMap<>();
+        return new IdMap<V>() {
+            @Override
+            public V get(String id) {
+                return map.get(id);
+            }
+
+            @Override
+            public V put(String id, V value) {
+                return map.put(id, value);
+            }
+
+            @Override
+            public V remove(String id) {
+                return map.remove(id);
+            }
+
+            @Override
+            public boolean remove(String id, V value) {
+                return map.remove(id, value);
+            }
+
+            @Override
+            public int size() {
+                return map.size();
+            }
+
+            @Override
+            public void forEach(BiConsumer<String, ? super V> consumer) {
+                map.forEach(consumer);
+            }
+        };
+    }
+
+    /**
+     * 紧凑实现，纯数字ID以long为键保存在开放寻址表中
+     *
+     * @param <V> 值类型
+     * @return    IdMap
+     */
+    static <V> IdMap<V> compact() {
+        return new CompactIdMap<>();
+    }
+}
@@ -0,0 +1,339 @@
+/*
+ *    Copyright 2019 The aio-socket Project
+ *
+ *    The aio-socket Project Licenses this file to you under the Apache License,
+ *    Version 2.0 (the "License"); you may not use this file except in compliance
+ *    with the License. You may obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.mxd888.socket.utils.pool.memory;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 内存页的伙伴分配器
+ * 按2的幂划分规格，每个规格维护一条以数组实现的空闲链表，分配与回收无需遍历链表；
+ * 不超过SLAB_MAX_SIZE的小规格（如默认2KB的读写缓冲区）回收后先进入无锁的slab缓存，下次同规格申请直接复用
+ *
+ * @author MDong
+ * @version 2.10.1.v20211002-RELEASE
+ */
+final class BuddyAllocator {
+
+    /**
+     * 最小分配单元为128字节
+     */
+    private static final int MIN_SHIFT = 7;
+
+    /**
+     * 不超过该大小的规格走slab缓存
+     */
+    private static final int SLAB_MAX_SIZE = 4096;
+
+    /**
+     * 所属内存页
+     */
+    private final MemoryBlock memoryBlock;
+
+    /**
+     * 内存页的物理缓冲区
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * 伙伴链表锁
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * 内存页包含的最小单元数量
+     */
+    private final int units;
+
+    /**
+     * 最大规格
+     */
+    private final int maxOrder;
+
+    /**
+     * 走slab缓存的最大规格
+     */
+    private final int slabMaxOrder;
+
+    /**
+     * 各规格空闲链表的头单元，-1表示为空
+     */
+    private final int[] heads;
+
+    /**
+     * 空闲链表后继单元
+     */
+    private final int[] next;
+
+    /**
+     * 空闲链表前驱单元
+     */
+    private final int[] prev;
+
+    /**
+     * 空闲块首单元记录规格+1，非空闲块首单元为0
+     */
+    private final byte[] freeOrders;
+
+    /**
+     * 存在空闲块的规格位图
+     */
+    private int freeMask;
+
+    /**
+     * 小规格slab缓存
+     */
+    private final ConcurrentLinkedQueue<MemoryUnit>[] slabs;
+
+    /**
+     * 构造伙伴分配器
+     *
+     * @param memoryBlock 所属内存页
+     * @param buffer      内存页的物理缓冲区
+     */
+    @SuppressWarnings("unchecked")
+    BuddyAllocator(MemoryBlock memoryBlock, ByteBuffer buffer) {
+        this.memoryBlock = memoryBlock;
+        this.buffer = buffer;
+        this.units = buffer.capacity() >> MIN_SHIFT;
+        this.maxOrder = units == 0 ? -1 : 31 - Integer.numberOfLeadingZeros(units);
+        this.slabMaxOrder = Math.min(maxOrder, order(SLAB_MAX_SIZE));
+        this.heads = new int[maxOrder + 1];
+        this.next = new int[units];
+        this.prev = new int[units];
+        this.freeOrders = new byte[units];
+        this.slabs = (ConcurrentLinkedQueue<MemoryUnit>[]) new ConcurrentLinkedQueue<?>[slabMaxOrder + 1];
+        for (int i = 0; i < heads.length; i++) {
+            heads[i] = -1;
+        }
+        for (int i = 0; i < slabs.length; i++) {
+            slabs[i] = new ConcurrentLinkedQueue<>();
+        }
+        // 将内存页拆分为若干按自身大小对齐的最大块
+        int index = 0;
+        while (index < units) {
+            int order = 31 - Integer.numberOfLeadingZeros(units - index);
+            if (index != 0) {
+                order = Math.min(order, Integer.numberOfTrailingZeros(index));
+            }
+            add(index, order);
+            index += 1 << order;
+        }
+    }
+
+    /**
+     * 申请虚拟内存，实际容量为不小于size的2的幂
+     *
+     * @param size 申请大小
+     * @return     虚拟内存对象，空间不足时返回null
+     */
+    MemoryUnit allocate(int size) {
+        int order = order(size);
+        if (order > maxOrder) {
+            return null;
+        }
+        if (order <= slabMaxOrder) {
+            MemoryUnit memoryUnit = slabs[order].poll();
+            if (memoryUnit != null) {
+                memoryUnit.buffer().clear();
+                memoryUnit.buffer(memoryUnit.buffer());
+                return memoryUnit;
+            }
+        }
+        lock.lock();
+        try {
+            int index = allocate0(order);
+            if (index < 0 && drainSlabs()) {
+                index = allocate0(order);
+            }
+            if (index < 0) {
+                return null;
+            }
+            int position = index << MIN_SHIFT;
+            int limit = position + (1 << (order + MIN_SHIFT));
+            buffer.limit(limit);
+            buffer.position(position);
+            return new MemoryUnit(memoryBlock, buffer.slice(), position, limit);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 回收虚拟内存，小规格进入slab缓存，其余规格立即与伙伴合并
+     *
+     * @param memoryUnit 待回收的虚拟内存
+     */
+    void free(MemoryUnit memoryUnit) {
+        int order = Integer.numberOfTrailingZeros(memoryUnit.getCapacity()) - MIN_SHIFT;
+        if (order <= slabMaxOrder) {
+            slabs[order].offer(memoryUnit);
+            return;
+        }
+        lock.lock();
+        try {
+            free0(memoryUnit.getParentPosition() >> MIN_SHIFT, order);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 空闲时将slab缓存归还给伙伴链表，减少碎片
+     */
+    void tryClean() {
+        if (lock.tryLock()) {
+            try {
+                drainSlabs();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 统计伙伴链表与slab缓存的使用情况
+     *
+     * @param fallbackCount 退化为堆内存申请的次数
+     * @return              统计快照
+     */
+    MemoryBlockStats stats(long fallbackCount) {
+        long cached = 0;
+        for (int order = 0; order < slabs.length; order++) {
+            cached += (long) slabs[order].size() << (order + MIN_SHIFT);
+        }
+        long free = 0;
+        int freeListLength = 0;
+        long largestFree;
+        lock.lock();
+        try {
+            for (int order = 0; order < heads.length; order++) {
+                for (int index = heads[order]; index >= 0; index = next[index]) {
+                    free += 1L << (order + MIN_SHIFT);
+                    freeListLength++;
+                }
+            }
+            largestFree = freeMask == 0 ? 0 : 1L << (31 - Integer.numberOfLeadingZeros(freeMask) + MIN_SHIFT);
+        } finally {
+            lock.unlock();
+        }
+        return new MemoryBlockStats((long) units << MIN_SHIFT, free, cached, freeListLength, largestFree, fallbackCount);
+    }
+
+    /**
+     * 从伙伴链表中申请指定规格的块，需持有锁
+     *
+     * @param order 规格
+     * @return      块首单元，空间不足时返回-1
+     */
+    private int allocate0(int order) {
+        int candidates = freeMask & (-1 << order);
+        if (candidates == 0) {
+            return -1;
+        }
+        int current = Integer.numberOfTrailingZeros(candidates);
+        int index = heads[current];
+        remove(index, current);
+        // 大块逐级对半拆分，后半部分挂回对应规格的空闲链表
+        while (current > order) {
+            current--;
+            add(index + (1 << current), current);
+        }
+        return index;
+    }
+
+    /**
+     * 归还块并与空闲的伙伴逐级合并，需持有锁
+     *
+     * @param index 块首单元
+     * @param order 规格
+     */
+    private void free0(int index, int order) {
+        while (order < maxOrder) {
+            int buddy = index ^ (1 << order);
+            if (buddy + (1 << order) > units || freeOrders[buddy] != order + 1) {
+                break;
+            }
+            remove(buddy, order);
+            index &= buddy;
+            order++;
+        }
+        add(index, order);
+    }
+
+    /**
+     * 将slab缓存全部归还给伙伴链表，需持有锁
+     *
+     * @return 是否归还了内存
+     */
+    private boolean drainSlabs() {
+        boolean drained = false;
+        for (int order = 0; order < slabs.length; order++) {
+            MemoryUnit memoryUnit;
+            while ((memoryUnit = slabs[order].poll()) != null) {
+                free0(memoryUnit.getParentPosition() >> MIN_SHIFT, order);
+                drained = true;
+            }
+        }
+        return drained;
+    }
+
+    private void add(int index, int order) {
+        int head = heads[order];
+        next[index] = head;
+        prev[index] = -1;
+        if (head >= 0) {
+            prev[head] = index;
+        }
+        heads[order] = index;
+        freeOrders[index] = (byte) (order + 1);
+        freeMask |= 1 << order;
+    }
+
+    private void remove(int index, int order) {
+        int p = prev[index];
+        int n = next[index];
+        if (p >= 0) {
+            next[p] = n;
+        } else {
+            heads[order] = n;
+        }
+        if (n >= 0) {
+            prev[n] = p;
+        }
+        freeOrders[index] = 0;
+        if (heads[order] < 0) {
+            freeMask &= ~(1 << order);
+        }
+    }
+
+    /**
+     * 计算容纳size字节所需的规格
+     *
+     * @param size 申请大小
+     * @return     规格，容量为 128 << order
+     */
+    private static int order(int size) {
+        int n = Math.max(1, (size + (1 << MIN_SHIFT) - 1) >>> MIN_SHIFT);
+        return 32 - Integer.numberOfLeadingZeros(n - 1);
+    }
+
+    @Override
+    public String toString() {
+        return "BuddyAllocator{units=" + units + ", maxOrder=" + maxOrder + ", freeMask=" + Integer.toBinaryString(freeMask) + '}';
+    }
+}
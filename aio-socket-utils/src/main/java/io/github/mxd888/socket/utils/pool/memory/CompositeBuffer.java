@@ -0,0 +1,385 @@
+/*
+ *    Copyright 2019 The aio-socket Project
+ *
+ *    The aio-socket Project Licenses this file to you under the Apache License,
+ *    Version 2.0 (the "License"); you may not use this file except in compliance
+ *    with the License. You may obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.mxd888.socket.utils.pool.memory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 组合缓冲区，将多个虚拟内存按顺序拼接为一个可读视图，分片数量不受限制
+ * 读写游标直接使用各分片ByteBuffer自身的position，直接读取首个分片的解码器与组合缓冲区的读取进度始终一致；
+ * 分片按引用计数管理，切片会持有其覆盖的分片，所有持有者都释放后分片才会被回收
+ *
+ * @author MDong
+ * @version 2.10.1.v20211002-RELEASE
+ */
+public final class CompositeBuffer {
+
+    /**
+     * 按顺序排列的分片视图
+     */
+    private final ArrayDeque<Component> components = new ArrayDeque<>();
+
+    /**
+     * 是否为切片，切片的视图与原分片的读写游标相互独立
+     */
+    private final boolean slice;
+
+    public CompositeBuffer() {
+        this(false);
+    }
+
+    private CompositeBuffer(boolean slice) {
+        this.slice = slice;
+    }
+
+    /**
+     * 追加一个读模式的虚拟内存，其所有权交由组合缓冲区管理
+     *
+     * @param memoryUnit 虚拟内存
+     */
+    public void addComponent(MemoryUnit memoryUnit) {
+        components.addLast(new Component(new Segment(memoryUnit), memoryUnit.buffer()));
+    }
+
+    /**
+     * 分片数量
+     *
+     * @return 分片数量
+     */
+    public int componentCount() {
+        return components.size();
+    }
+
+    /**
+     * 是否不包含任何分片
+     *
+     * @return 布尔
+     */
+    public boolean isEmpty() {
+        return components.isEmpty();
+    }
+
+    /**
+     * 首个分片，直接读取该分片的数据会同步推进组合缓冲区的读取进度
+     *
+     * @return 首个分片，不存在时返回null
+     */
+    public MemoryUnit first() {
+        Component component = components.peekFirst();
+        return component == null ? null : component.segment.memoryUnit;
+    }
+
+    /**
+     * 可读字节数
+     *
+     * @return 所有分片剩余数据之和
+     */
+    public int readableBytes() {
+        int readable = 0;
+        for (Component component : components) {
+            readable += component.view.remaining();
+        }
+        return readable;
+    }
+
+    /**
+     * 读取相对当前读位置index处的字节，不移动读位置
+     *
+     * @param index 相对读位置的偏移量
+     * @return      字节
+     */
+    public byte getByte(int index) {
+        for (Component component : components) {
+            ByteBuffer view = component.view;
+            if (index < view.remaining()) {
+                return view.get(view.position() + index);
+            }
+            index -= view.remaining();
+        }
+        throw new IndexOutOfBoundsException("index: " + index);
+    }
+
+    /**
+     * 读取相对当前读位置index处的int（大端），可跨越分片边界，不移动读位置
+     *
+     * @param index 相对读位置的偏移量
+     * @return      int数值
+     */
+    public int getInt(int index) {
+        return (getByte(index) & 0xFF) << 24
+                | (getByte(index + 1) & 0xFF) << 16
+                | (getByte(index + 2) & 0xFF) << 8
+                | getByte(index + 3) & 0xFF;
+    }
+
+    /**
+     * 读取一个字节
+     *
+     * @return 字节
+     */
+    public byte readByte() {
+        for (Component component : components) {
+            if (component.view.hasRemaining()) {
+                return component.view.get();
+            }
+        }
+        throw new IndexOutOfBoundsException("no readable bytes");
+    }
+
+    /**
+     * 读取int（大端），可跨越分片边界
+     *
+     * @return int数值
+     */
+    public int readInt() {
+        int value = getInt(0);
+        skipBytes(Integer.BYTES);
+        return value;
+    }
+
+    /**
+     * 读取数据到byte数组
+     *
+     * @param dst    目标数组
+     * @param offset 目标数组起始位置
+     * @param length 读取长度
+     */
+    public void readBytes(byte[] dst, int offset, int length) {
+        checkReadable(length);
+        for (Component component : components) {
+            if (length == 0) {
+                return;
+            }
+            ByteBuffer view = component.view;
+            int n = Math.min(length, view.remaining());
+            view.get(dst, offset, n);
+            offset += n;
+            length -= n;
+        }
+    }
+
+    /**
+     * 跳过指定长度的数据
+     *
+     * @param length 跳过长度
+     */
+    public void skipBytes(int length) {
+        checkReadable(length);
+        for (Component component : components) {
+            if (length == 0) {
+                return;
+            }
+            ByteBuffer view = component.view;
+            int n = Math.min(length, view.remaining());
+            view.position(view.position() + n);
+            length -= n;
+        }
+    }
+
+    /**
+     * 创建从当前读位置index处开始、长度为length的切片，不移动读位置
+     * 切片持有其覆盖的分片，使用完毕后必须调用release()
+     *
+     * @param index  相对读位置的偏移量
+     * @param length 切片长度
+     * @return       切片
+     */
+    public CompositeBuffer retainedSlice(int index, int length) {
+        checkReadable(index + length);
+        CompositeBuffer slice = new CompositeBuffer(true);
+        for (Component component : components) {
+            if (length == 0) {
+                break;
+            }
+            ByteBuffer view = component.view;
+            if (index >= view.remaining()) {
+                index -= view.remaining();
+                continue;
+            }
+            int n = Math.min(length, view.remaining() - index);
+            ByteBuffer duplicate = view.duplicate();
+            duplicate.position(view.position() + index);
+            duplicate.limit(view.position() + index + n);
+            component.segment.retain();
+            slice.components.addLast(new Component(component.segment, duplicate));
+            index = 0;
+            length -= n;
+        }
+        return slice;
+    }
+
+    /**
+     * 读取长度为length的切片并移动读位置，切片使用完毕后必须调用release()
+     *
+     * @param length 切片长度
+     * @return       切片
+     */
+    public CompositeBuffer readRetainedSlice(int length) {
+        CompositeBuffer slice = retainedSlice(0, length);
+        skipBytes(length);
+        return slice;
+    }
+
+    /**
+     * 各分片剩余数据的ByteBuffer视图，可用于聚合写或按段解析
+     *
+     * @return ByteBuffer数组
+     */
+    public ByteBuffer[] nioBuffers() {
+        ByteBuffer[] buffers = new ByteBuffer[components.size()];
+        int i = 0;
+        for (Component component : components) {
+            buffers[i++] = component.view.duplicate();
+        }
+        return buffers;
+    }
+
+    /**
+     * 释放已读完的分片，始终保留最后一个分片以便回收复用
+     */
+    public void discardReadComponents() {
+        while (components.size() > 1 && !components.peekFirst().view.hasRemaining()) {
+            components.pollFirst().segment.release();
+        }
+    }
+
+    /**
+     * 首个分片已部分消费且存在后续分片时，将剩余数据前移并用后续分片的数据填满，
+     * 保证从首个分片开始解析的消息头不会被分片边界截断，拷贝量不超过一个分片；
+     * 首个分片仍被切片持有时不能原地前移，改为将剩余数据拷贝到新申请的同等大小的分片中
+     */
+    public void consolidate() {
+        if (slice || components.size() < 2) {
+            return;
+        }
+        Component first = components.peekFirst();
+        ByteBuffer buffer = first.view;
+        if (buffer.position() == 0) {
+            return;
+        }
+        if (first.segment.isExclusive()) {
+            buffer.compact();
+        } else {
+            MemoryUnit memoryUnit = allocate(first.segment.memoryUnit);
+            memoryUnit.buffer().clear();
+            memoryUnit.buffer().put(buffer);
+            components.pollFirst().segment.release();
+            components.addFirst(new Component(new Segment(memoryUnit), memoryUnit.buffer()));
+            buffer = memoryUnit.buffer();
+        }
+        Iterator<Component> iterator = components.iterator();
+        iterator.next();
+        while (buffer.hasRemaining() && iterator.hasNext()) {
+            Component component = iterator.next();
+            ByteBuffer src = component.view;
+            int limit = src.limit();
+            src.limit(src.position() + Math.min(buffer.remaining(), src.remaining()));
+            buffer.put(src);
+            src.limit(limit);
+            if (!src.hasRemaining()) {
+                iterator.remove();
+                component.segment.release();
+            }
+        }
+        buffer.flip();
+    }
+
+    /**
+     * 仅剩一个未被切片持有的分片时，将其取出并交还调用方
+     *
+     * @return 取出的虚拟内存，不满足条件时返回null
+     */
+    public MemoryUnit detach() {
+        if (slice || components.size() != 1 || !components.peekFirst().segment.isExclusive()) {
+            return null;
+        }
+        return components.pollFirst().segment.memoryUnit;
+    }
+
+    /**
+     * 释放当前组合缓冲区或切片持有的全部分片
+     */
+    public void release() {
+        Component component;
+        while ((component = components.pollFirst()) != null) {
+            component.segment.release();
+        }
+    }
+
+    /**
+     * 从模板分片所属的内存页申请同等大小的虚拟内存
+     *
+     * @param template 模板分片
+     * @return         虚拟内存
+     */
+    private static MemoryUnit allocate(MemoryUnit template) {
+        int capacity = template.buffer().capacity();
+        MemoryBlock memoryBlock = template.memoryBlock();
+        return memoryBlock != null ? memoryBlock.allocate(capacity) : MemoryUnit.wrap(ByteBuffer.allocate(capacity));
+    }
+
+    private void checkReadable(int length) {
+        if (length < 0 || length > readableBytes()) {
+            throw new IndexOutOfBoundsException("length: " + length + ", readable: " + readableBytes());
+        }
+    }
+
+    /**
+     * 分片在组合缓冲区或切片中的视图
+     */
+    private static final class Component {
+
+        private final Segment segment;
+
+        private final ByteBuffer view;
+
+        Component(Segment segment, ByteBuffer view) {
+            this.segment = segment;
+            this.view = view;
+        }
+    }
+
+    /**
+     * 引用计数的分片，计数归零时回收虚拟内存
+     */
+    private static final class Segment {
+
+        private final MemoryUnit memoryUnit;
+
+        private final AtomicInteger refCnt = new AtomicInteger(1);
+
+        Segment(MemoryUnit memoryUnit) {
+            this.memoryUnit = memoryUnit;
+        }
+
+        void retain() {
+            refCnt.incrementAndGet();
+        }
+
+        void release() {
+            if (refCnt.decrementAndGet() == 0) {
+                memoryUnit.clean();
+            }
+        }
+
+        boolean isExclusive() {
+            return refCnt.get() == 1;
+        }
+    }
+}
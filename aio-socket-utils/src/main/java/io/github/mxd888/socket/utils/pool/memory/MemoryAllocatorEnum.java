@@ -0,0 +1,35 @@
+/*
+ *    Copyright 2019 The aio-socket Project
+ *
+ *    The aio-socket Project Licenses this file to you under the Apache License,
+ *    Version 2.0 (the "License"); you may not use this file except in compliance
+ *    with the License. You may obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.mxd888.socket.utils.pool.memory;
+
+/**
+ * 内存页分配算法
+ *
+ * @author MDong
+ * @version 2.10.1.v20211002-RELEASE
+ */
+public enum MemoryAllocatorEnum {
+
+    /**
+     * 空闲链表，按地址顺序遍历查找并合并相邻空闲块
+     */
+    FREE_LIST,
+
+    /**
+     * 伙伴分配 + 小规格slab缓存，按2的幂规格分配，无需遍历空闲链表
+     */
+    BUDDY
+}
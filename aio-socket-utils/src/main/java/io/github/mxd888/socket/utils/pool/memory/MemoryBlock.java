@@ -15,11 +15,13 @@
  */
 package io.github.mxd888.socket.utils.pool.memory;
 
+import io.github.mxd888.socket.utils.ThreadUtils;
 import sun.nio.ch.DirectBuffer;
 
 import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
@@ -50,6 +52,36 @@ public final class MemoryBlock {
      */
     private final List<MemoryUnit> availableBuffers;
 
+    /**
+     * 伙伴分配器，仅BUDDY模式下存在
+     */
+    private final BuddyAllocator buddyAllocator;
+
+    /**
+     * 线程本地缓存，未启用时为null；虚拟线程的值为null，不使用缓存
+     */
+    private volatile ThreadLocal<MemoryUnitCache> threadCache;
+
+    /**
+     * 已创建的线程本地缓存，回收任务据此归还已退出线程缓存的虚拟内存
+     */
+    private final ConcurrentLinkedQueue<MemoryUnitCache> threadCaches = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 泄漏检测，未启用时为null
+     */
+    private volatile MemoryLeakDetector leakDetector;
+
+    /**
+     * 空间不足时退化为堆内存申请的次数
+     */
+    private final LongAdder fallbackCount = new LongAdder();
+
+    /**
+     * 已交给使用方尚未回收的空间，字节，包含退化申请的堆内存，不含线程本地缓存中暂存的虚拟内存
+     */
+    private final LongAdder allocatedBytes = new LongAdder();
+
     /**
      * 内存页是否处于空闲状态
      */
@@ -62,9 +94,25 @@ public final class MemoryBlock {
      * @param direct 是否使用堆外内存
      */
     MemoryBlock(int size, boolean direct) {
+        this(size, direct, MemoryAllocatorEnum.FREE_LIST);
+    }
+
+    /**
+     * 默认范围构造方法，只允许本包内进行构造
+     *
+     * @param size      缓存页大小
+     * @param direct    是否使用堆外内存
+     * @param allocator 内存页分配算法
+     */
+    MemoryBlock(int size, boolean direct, MemoryAllocatorEnum allocator) {
         availableBuffers = new LinkedList<>();
         this.buffer = allocate0(size, direct);
-        availableBuffers.add(new MemoryUnit(this, null, buffer.position(), buffer.limit()));
+        if (allocator == MemoryAllocatorEnum.BUDDY) {
+            this.buddyAllocator = new BuddyAllocator(this, buffer);
+        } else {
+            this.buddyAllocator = null;
+            availableBuffers.add(new MemoryUnit(this, null, buffer.position(), buffer.limit()));
+        }
     }
 
     /**
@@ -85,8 +133,31 @@ public final class MemoryBlock {
      * @return     虚拟内存对象
      */
     public MemoryUnit allocate(final int size) {
-        MemoryUnit memoryUnit = allocate0(size);
-        return memoryUnit == null ? new MemoryUnit(null, allocate0(size, false), 0, 0) : memoryUnit;
+        ThreadLocal<MemoryUnitCache> threadCache = this.threadCache;
+        MemoryUnit memoryUnit = null;
+        MemoryUnitCache cache;
+        if (threadCache != null && (cache = threadCache.get()) != null) {
+            memoryUnit = cache.poll(size);
+        }
+        if (memoryUnit == null) {
+            if (buddyAllocator != null) {
+                idle = false;
+                memoryUnit = buddyAllocator.allocate(size);
+            } else {
+                memoryUnit = allocate0(size);
+            }
+        }
+        if (memoryUnit == null) {
+            fallbackCount.increment();
+            allocatedBytes.add(size);
+            return MemoryUnit.fallback(this, allocate0(size, false));
+        }
+        allocatedBytes.add(memoryUnit.getCapacity());
+        MemoryLeakDetector leakDetector = this.leakDetector;
+        if (leakDetector != null) {
+            leakDetector.track(memoryUnit);
+        }
+        return memoryUnit;
     }
 
     /**
@@ -201,21 +272,130 @@ public final class MemoryBlock {
 
 
     /**
-     * 内存回收
+     * 启用泄漏检测
+     *
+     * @param leakDetector 泄漏检测
+     */
+    void leakDetector(MemoryLeakDetector leakDetector) {
+        this.leakDetector = leakDetector;
+    }
+
+    /**
+     * 统计内存页使用情况
+     *
+     * @return 统计快照
+     */
+    MemoryBlockStats stats() {
+        if (buddyAllocator != null) {
+            return buddyAllocator.stats(fallbackCount.sum());
+        }
+        long cached = 0;
+        for (MemoryUnit cleanBuffer : cleanBuffers) {
+            cached += cleanBuffer.getCapacity();
+        }
+        long free = 0;
+        long largestFree = 0;
+        int freeListLength;
+        lock.lock();
+        try {
+            freeListLength = availableBuffers.size();
+            for (MemoryUnit availableBuffer : availableBuffers) {
+                free += availableBuffer.getCapacity();
+                largestFree = Math.max(largestFree, availableBuffer.getCapacity());
+            }
+        } finally {
+            lock.unlock();
+        }
+        return new MemoryBlockStats(buffer.capacity(), free, cached, freeListLength, largestFree, fallbackCount.sum());
+    }
+
+    /**
+     * 获取已交给使用方尚未回收的空间，不加锁也不遍历回收队列
+     *
+     * @return 字节数
+     */
+    long getAllocatedBytes() {
+        return allocatedBytes.sum();
+    }
+
+    /**
+     * 启用线程本地缓存
+     * 虚拟线程数量多且生命周期短，缓存几乎不会命中，因此不为其创建缓存；
+     * 其余线程的缓存登记在threadCaches中，线程退出后由tryClean()归还
+     *
+     * @param magazineSize 每个线程每种规格最多缓存的数量
+     * @param sizes        缓存的规格
+     */
+    void enableThreadCache(int magazineSize, int[] sizes) {
+        this.threadCache = ThreadLocal.withInitial(() -> {
+            Thread thread = Thread.currentThread();
+            if (ThreadUtils.isVirtual(thread)) {
+                return null;
+            }
+            MemoryUnitCache cache = new MemoryUnitCache(this, thread, magazineSize, sizes);
+            threadCaches.offer(cache);
+            return cache;
+        });
+    }
+
+    /**
+     * 内存回收，优先放入当前线程的本地缓存
      *
      * @param cleanBuffer 待回收的虚拟内存
      */
     void clean(MemoryUnit cleanBuffer) {
-        cleanBuffers.offer(cleanBuffer);
+        allocatedBytes.add(-cleanBuffer.getCapacity());
+        if (cleanBuffer.isFallback()) {
+            return;
+        }
+        ThreadLocal<MemoryUnitCache> threadCache = this.threadCache;
+        MemoryUnitCache cache;
+        if (threadCache != null && (cache = threadCache.get()) != null && cache.offer(cleanBuffer)) {
+            return;
+        }
+        recycle(cleanBuffer);
+    }
+
+    /**
+     * 归还已退出线程的本地缓存
+     * 通过isAlive()观察到线程结束后，该线程对缓存的修改均已可见，可安全地在当前线程中清空
+     */
+    private void reclaimThreadCaches() {
+        Iterator<MemoryUnitCache> iterator = threadCaches.iterator();
+        while (iterator.hasNext()) {
+            MemoryUnitCache cache = iterator.next();
+            if (cache.isOrphaned()) {
+                iterator.remove();
+                cache.drain();
+            }
+        }
+    }
+
+    /**
+     * 将虚拟内存归还给内存页
+     *
+     * @param cleanBuffer 待回收的虚拟内存
+     */
+    void recycle(MemoryUnit cleanBuffer) {
+        if (buddyAllocator != null) {
+            buddyAllocator.free(cleanBuffer);
+        } else {
+            cleanBuffers.offer(cleanBuffer);
+        }
     }
 
     /**
      * 尝试回收缓冲区
      */
     void tryClean() {
+        if (!threadCaches.isEmpty()) {
+            reclaimThreadCaches();
+        }
         //下个周期依旧处于空闲则触发回收任务
         if (!idle) {
             idle = true;
+        } else if (buddyAllocator != null) {
+            buddyAllocator.tryClean();
         } else if (!cleanBuffers.isEmpty() && lock.tryLock()) {
             try {
                 MemoryUnit cleanBuffer;
@@ -280,6 +460,9 @@ public final class MemoryBlock {
 
     @Override
     public String toString() {
+        if (buddyAllocator != null) {
+            return "BufferPage{" + buddyAllocator + '}';
+        }
         return "BufferPage{availableBuffers=" + availableBuffers + ", cleanBuffers=" + cleanBuffers + '}';
     }
 }
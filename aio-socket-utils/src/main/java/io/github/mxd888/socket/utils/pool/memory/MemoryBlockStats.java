@@ -0,0 +1,114 @@
+/*
+ *    Copyright 2019 The aio-socket Project
+ *
+ *    The aio-socket Project Licenses this file to you under the Apache License,
+ *    Version 2.0 (the "License"); you may not use this file except in compliance
+ *    with the License. You may obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.mxd888.socket.utils.pool.memory;
+
+/**
+ * 内存页统计快照
+ *
+ * @author MDong
+ * @version 2.10.1.v20211002-RELEASE
+ */
+public final class MemoryBlockStats {
+
+    /**
+     * 内存页容量，字节
+     */
+    private final long capacity;
+
+    /**
+     * 已分配出去的空间，字节，包含线程本地缓存中暂存的虚拟内存
+     */
+    private final long used;
+
+    /**
+     * 空闲链表中的空间，字节
+     */
+    private final long free;
+
+    /**
+     * 已回收但尚未合并进空闲链表的空间，字节
+     */
+    private final long cached;
+
+    /**
+     * 空闲链表长度
+     */
+    private final int freeListLength;
+
+    /**
+     * 最大连续空闲块，字节
+     */
+    private final long largestFree;
+
+    /**
+     * 内存页空间不足时退化为堆内存申请的次数
+     */
+    private final long fallbackCount;
+
+    MemoryBlockStats(long capacity, long free, long cached, int freeListLength, long largestFree, long fallbackCount) {
+        this.capacity = capacity;
+        this.used = capacity - free - cached;
+        this.free = free;
+        this.cached = cached;
+        this.freeListLength = freeListLength;
+        this.largestFree = largestFree;
+        this.fallbackCount = fallbackCount;
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    public long getUsed() {
+        return used;
+    }
+
+    public long getFree() {
+        return free;
+    }
+
+    public long getCached() {
+        return cached;
+    }
+
+    public int getFreeListLength() {
+        return freeListLength;
+    }
+
+    public long getLargestFree() {
+        return largestFree;
+    }
+
+    public long getFallbackCount() {
+        return fallbackCount;
+    }
+
+    /**
+     * 碎片率，1 - 最大连续空闲块 / 空闲空间，空闲空间越分散越接近1
+     *
+     * @return 碎片率
+     */
+    public double getFragmentation() {
+        return free == 0 ? 0 : 1 - (double) largestFree / free;
+    }
+
+    @Override
+    public String toString() {
+        return "MemoryBlockStats{capacity=" + capacity + ", used=" + used + ", free=" + free + ", cached=" + cached
+                + ", freeListLength=" + freeListLength + ", largestFree=" + largestFree + ", fallbackCount=" + fallbackCount
+                + ", fragmentation=" + getFragmentation() + '}';
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ *    Copyright 2019 The aio-socket Project
+ *
+ *    The aio-socket Project Licenses this file to you under the Apache License,
+ *    Version 2.0 (the "License"); you may not use this file except in compliance
+ *    with the License. You may obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.mxd888.socket.utils.pool.memory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 采样式内存泄漏检测
+ * 按采样间隔记录虚拟内存的申请堆栈，若虚拟内存未调用clean()就被GC回收，则输出其申请堆栈
+ *
+ * @author MDong
+ * @version 2.10.1.v20211002-RELEASE
+ */
+final class MemoryLeakDetector {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MemoryLeakDetector.class);
+
+    /**
+     * 采样间隔，平均每samplingInterval次申请记录一次
+     */
+    private final int samplingInterval;
+
+    /**
+     * 被GC回收的虚拟内存所对应的记录
+     */
+    private final ReferenceQueue<MemoryUnit> referenceQueue = new ReferenceQueue<>();
+
+    /**
+     * 尚未clean的采样记录
+     */
+    private final Set<LeakRecord> records = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 已发现的泄漏数量
+     */
+    private final LongAdder leakCount = new LongAdder();
+
+    MemoryLeakDetector(int samplingInterval) {
+        this.samplingInterval = samplingInterval;
+    }
+
+    /**
+     * 按采样间隔跟踪新申请的虚拟内存
+     *
+     * @param memoryUnit 新申请的虚拟内存
+     */
+    void track(MemoryUnit memoryUnit) {
+        if (samplingInterval > 1 && ThreadLocalRandom.current().nextInt(samplingInterval) != 0) {
+            return;
+        }
+        LeakRecord record = new LeakRecord(memoryUnit, referenceQueue, records);
+        records.add(record);
+        memoryUnit.leakRecord(record);
+    }
+
+    /**
+     * 输出已被GC回收但未clean的虚拟内存
+     */
+    void report() {
+        Reference<? extends MemoryUnit> reference;
+        while ((reference = referenceQueue.poll()) != null) {
+            LeakRecord record = (LeakRecord) reference;
+            if (records.remove(record)) {
+                leakCount.increment();
+                LOGGER.error("MemoryUnit(capacity={}) was garbage collected without clean()", record.capacity, record.stack);
+            }
+        }
+    }
+
+    long getLeakCount() {
+        return leakCount.sum();
+    }
+
+    /**
+     * 虚拟内存的采样记录
+     */
+    static final class LeakRecord extends WeakReference<MemoryUnit> {
+
+        /**
+         * 申请时的堆栈
+         */
+        private final Throwable stack = new Throwable("MemoryUnit allocated at");
+
+        /**
+         * 虚拟内存容量
+         */
+        private final int capacity;
+
+        /**
+         * 所属检测器的记录集合
+         */
+        private final Set<LeakRecord> records;
+
+        LeakRecord(MemoryUnit memoryUnit, ReferenceQueue<MemoryUnit> referenceQueue, Set<LeakRecord> records) {
+            super(memoryUnit, referenceQueue);
+            this.capacity = memoryUnit.getCapacity();
+            this.records = records;
+        }
+
+        /**
+         * 虚拟内存已正常回收
+         */
+        void close() {
+            records.remove(this);
+            clear();
+        }
+    }
+}
@@ -15,6 +15,10 @@
  */
 package io.github.mxd888.socket.utils.pool.memory;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -47,6 +51,11 @@ public final class MemoryPool {
      */
     private MemoryBlock[] memoryBlocks;
 
+    /**
+     * 泄漏检测，未启用时为null
+     */
+    private volatile MemoryLeakDetector leakDetector;
+
     /**
      * 定义内存页池可用状态
      */
@@ -60,9 +69,21 @@ public final class MemoryPool {
      * @param isDirect        是否使用直接缓冲区
      */
     public MemoryPool(final int memoryBlockSize, final int memoryBlockNum, final boolean isDirect) {
+        this(memoryBlockSize, memoryBlockNum, isDirect, MemoryAllocatorEnum.FREE_LIST);
+    }
+
+    /**
+     * 构造内存池
+     *
+     * @param memoryBlockSize 内存页大小
+     * @param memoryBlockNum  内存页个数
+     * @param isDirect        是否使用直接缓冲区
+     * @param allocator       内存页分配算法
+     */
+    public MemoryPool(final int memoryBlockSize, final int memoryBlockNum, final boolean isDirect, final MemoryAllocatorEnum allocator) {
         memoryBlocks = new MemoryBlock[memoryBlockNum];
         for (int i = 0; i < memoryBlockNum; i++) {
-            memoryBlocks[i] = new MemoryBlock(memoryBlockSize, isDirect);
+            memoryBlocks[i] = new MemoryBlock(memoryBlockSize, isDirect, allocator);
         }
         if (memoryBlockNum == 0 || memoryBlockSize == 0) {
             future.cancel(false);
@@ -80,6 +101,92 @@ public final class MemoryPool {
         return memoryBlocks[(cursor.getAndIncrement() & Integer.MAX_VALUE) % memoryBlocks.length];
     }
 
+    /**
+     * 启用线程本地缓存，回收的虚拟内存优先缓存在当前线程，同规格申请时直接复用，
+     * 稳定状态下的读写缓冲区申请与回收无需任何锁或原子操作
+     *
+     * @param magazineSize 每个线程每种规格最多缓存的数量
+     * @param unitSizes    缓存的规格，通常为读、写缓冲区大小
+     * @return             当前内存池
+     */
+    public MemoryPool enableThreadCache(int magazineSize, int... unitSizes) {
+        int[] sizes = Arrays.stream(unitSizes).filter(size -> size > 0).distinct().toArray();
+        if (magazineSize < 2 || sizes.length == 0) {
+            return this;
+        }
+        for (MemoryBlock memoryBlock : memoryBlocks) {
+            memoryBlock.enableThreadCache(magazineSize, sizes);
+        }
+        return this;
+    }
+
+    /**
+     * 启用采样式泄漏检测，虚拟内存未clean就被GC回收时输出其申请堆栈
+     *
+     * @param samplingInterval 采样间隔，平均每samplingInterval次申请记录一次，1表示全部记录
+     * @return                 当前内存池
+     */
+    public MemoryPool enableLeakDetection(int samplingInterval) {
+        if (samplingInterval < 1) {
+            return this;
+        }
+        MemoryLeakDetector leakDetector = new MemoryLeakDetector(samplingInterval);
+        for (MemoryBlock memoryBlock : memoryBlocks) {
+            memoryBlock.leakDetector(leakDetector);
+        }
+        this.leakDetector = leakDetector;
+        return this;
+    }
+
+    /**
+     * 获取各内存页的统计快照
+     *
+     * @return 统计快照，顺序与内存页一致
+     */
+    public List<MemoryBlockStats> getStats() {
+        MemoryBlock[] memoryBlocks = this.memoryBlocks;
+        if (memoryBlocks == null) {
+            return Collections.emptyList();
+        }
+        List<MemoryBlockStats> stats = new ArrayList<>(memoryBlocks.length);
+        for (MemoryBlock memoryBlock : memoryBlocks) {
+            stats.add(memoryBlock.stats());
+        }
+        return stats;
+    }
+
+    /**
+     * 获取各内存页已交给使用方尚未回收的空间之和，包含空间不足时退化申请的堆内存，
+     * 只读取计数器，可频繁调用
+     *
+     * @return 字节数
+     */
+    public long getAllocatedBytes() {
+        MemoryBlock[] memoryBlocks = this.memoryBlocks;
+        if (memoryBlocks == null) {
+            return 0;
+        }
+        long allocated = 0;
+        for (MemoryBlock memoryBlock : memoryBlocks) {
+            allocated += memoryBlock.getAllocatedBytes();
+        }
+        return allocated;
+    }
+
+    /**
+     * 获取泄漏检测已发现的泄漏数量
+     *
+     * @return 泄漏数量，未启用泄漏检测时为0
+     */
+    public long getLeakCount() {
+        MemoryLeakDetector leakDetector = this.leakDetector;
+        if (leakDetector == null) {
+            return 0;
+        }
+        leakDetector.report();
+        return leakDetector.getLeakCount();
+    }
+
     /**
      * 检查内存池状态
      */
@@ -106,6 +213,9 @@ public final class MemoryPool {
                 for (MemoryBlock memoryBlock : memoryBlocks) {
                     memoryBlock.tryClean();
                 }
+                if (leakDetector != null) {
+                    leakDetector.report();
+                }
             } else {
                 if (memoryBlocks != null) {
                     for (MemoryBlock page : memoryBlocks) {
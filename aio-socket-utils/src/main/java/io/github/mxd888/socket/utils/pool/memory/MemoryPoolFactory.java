@@ -28,6 +28,18 @@ public interface MemoryPoolFactory {
      */
     MemoryPoolFactory DISABLED_BUFFER_FACTORY = () -> new MemoryPool(0, 1, false);
 
+    /**
+     * 使用伙伴分配算法的内存池工厂
+     *
+     * @param memoryBlockSize 内存页大小
+     * @param memoryBlockNum  内存页个数
+     * @param isDirect        是否使用直接缓冲区
+     * @return                内存池工厂
+     */
+    static MemoryPoolFactory buddy(int memoryBlockSize, int memoryBlockNum, boolean isDirect) {
+        return () -> new MemoryPool(memoryBlockSize, memoryBlockNum, isDirect, MemoryAllocatorEnum.BUDDY);
+    }
+
     /**
      * 创建内存池
      *
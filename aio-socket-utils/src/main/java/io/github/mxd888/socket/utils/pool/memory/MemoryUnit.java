@@ -56,8 +56,23 @@ public final class MemoryUnit {
      */
     private int capacity;
 
+    /**
+     * 泄漏检测的采样记录，未被采样时为null
+     */
+    private MemoryLeakDetector.LeakRecord leakRecord;
+
+    /**
+     * 内存页空间不足时退化申请的堆内存，回收时只更新内存页的统计，不归还内存页
+     */
+    private final boolean fallback;
+
     MemoryUnit(MemoryBlock memoryBlock, ByteBuffer buffer, int parentPosition, int parentLimit) {
+        this(memoryBlock, buffer, parentPosition, parentLimit, false);
+    }
+
+    private MemoryUnit(MemoryBlock memoryBlock, ByteBuffer buffer, int parentPosition, int parentLimit, boolean fallback) {
         this.memoryBlock = memoryBlock;
+        this.fallback = fallback;
         this.buffer = buffer;
         this.parentPosition = parentPosition;
         this.parentLimit = parentLimit;
@@ -74,6 +89,30 @@ public final class MemoryUnit {
         return new MemoryUnit(null, buffer, 0, 0);
     }
 
+    /**
+     * 包装内存页退化申请的堆内存
+     *
+     * @param memoryBlock 申请失败的内存页
+     * @param buffer      堆内存
+     * @return            虚拟内存对象
+     */
+    static MemoryUnit fallback(MemoryBlock memoryBlock, ByteBuffer buffer) {
+        return new MemoryUnit(memoryBlock, buffer, 0, buffer.capacity(), true);
+    }
+
+    boolean isFallback() {
+        return fallback;
+    }
+
+    /**
+     * 获取归属内存页
+     *
+     * @return 内存页，包装的堆外缓冲区返回null
+     */
+    MemoryBlock memoryBlock() {
+        return memoryBlock;
+    }
+
     int getParentPosition() {
         return parentPosition;
     }
@@ -127,11 +166,24 @@ public final class MemoryUnit {
         clean.release();
     }
 
+    /**
+     * 设置泄漏检测的采样记录
+     *
+     * @param leakRecord 采样记录
+     */
+    void leakRecord(MemoryLeakDetector.LeakRecord leakRecord) {
+        this.leakRecord = leakRecord;
+    }
+
     /**
      * 释放虚拟缓冲区
      */
     public void clean() {
         if (clean.tryAcquire()) {
+            if (leakRecord != null) {
+                leakRecord.close();
+                leakRecord = null;
+            }
             if (memoryBlock != null) {
                 memoryBlock.clean(this);
             }
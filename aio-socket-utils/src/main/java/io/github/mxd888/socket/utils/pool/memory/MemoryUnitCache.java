@@ -0,0 +1,149 @@
+/*
+ *    Copyright 2019 The aio-socket Project
+ *
+ *    The aio-socket Project Licenses this file to you under the Apache License,
+ *    Version 2.0 (the "License"); you may not use this file except in compliance
+ *    with the License. You may obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.mxd888.socket.utils.pool.memory;
+
+/**
+ * 线程本地的虚拟内存缓存（magazine）
+ * 每个线程针对每个内存页持有一份，按指定规格缓存最近回收的虚拟内存，申请与回收均无需锁或原子操作；
+ * 缓存已满时将一半批量归还给所属内存页；所属线程退出后由内存页的回收任务整体归还
+ *
+ * @author MDong
+ * @version 2.10.1.v20211002-RELEASE
+ */
+final class MemoryUnitCache {
+
+    /**
+     * 所属内存页
+     */
+    private final MemoryBlock memoryBlock;
+
+    /**
+     * 持有该缓存的线程
+     */
+    private final Thread owner;
+
+    /**
+     * 缓存的规格，通常为读、写缓冲区大小
+     */
+    private final int[] sizes;
+
+    /**
+     * 每个规格对应的缓存栈
+     */
+    private final MemoryUnit[][] magazines;
+
+    /**
+     * 每个规格当前缓存的数量
+     */
+    private final int[] counts;
+
+    /**
+     * 构造线程本地缓存
+     *
+     * @param memoryBlock  所属内存页
+     * @param owner        持有该缓存的线程
+     * @param magazineSize 每个规格最多缓存的数量
+     * @param sizes        缓存的规格
+     */
+    MemoryUnitCache(MemoryBlock memoryBlock, Thread owner, int magazineSize, int[] sizes) {
+        this.memoryBlock = memoryBlock;
+        this.owner = owner;
+        this.sizes = sizes;
+        this.magazines = new MemoryUnit[sizes.length][magazineSize];
+        this.counts = new int[sizes.length];
+    }
+
+    /**
+     * 从缓存中获取指定规格的虚拟内存
+     *
+     * @param size 申请大小
+     * @return     虚拟内存，未命中时返回null
+     */
+    MemoryUnit poll(int size) {
+        for (int i = 0; i < sizes.length; i++) {
+            if (sizes[i] == size && counts[i] > 0) {
+                MemoryUnit memoryUnit = magazines[i][--counts[i]];
+                magazines[i][counts[i]] = null;
+                memoryUnit.buffer().clear();
+                memoryUnit.buffer(memoryUnit.buffer());
+                return memoryUnit;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 将回收的虚拟内存放入缓存，缓存已满时先将一半批量归还内存页
+     *
+     * @param memoryUnit 待回收的虚拟内存
+     * @return           不属于缓存规格时返回false
+     */
+    boolean offer(MemoryUnit memoryUnit) {
+        int slot = slot(memoryUnit.getCapacity());
+        if (slot < 0) {
+            return false;
+        }
+        MemoryUnit[] magazine = magazines[slot];
+        if (counts[slot] == magazine.length) {
+            int half = magazine.length >> 1;
+            for (int i = half; i < magazine.length; i++) {
+                memoryBlock.recycle(magazine[i]);
+                magazine[i] = null;
+            }
+            counts[slot] = half;
+        }
+        magazine[counts[slot]++] = memoryUnit;
+        return true;
+    }
+
+    /**
+     * 持有该缓存的线程是否已退出
+     *
+     * @return 布尔
+     */
+    boolean isOrphaned() {
+        return !owner.isAlive();
+    }
+
+    /**
+     * 将缓存的虚拟内存全部归还内存页，只能由持有线程调用，或在持有线程退出后调用
+     */
+    void drain() {
+        for (int i = 0; i < magazines.length; i++) {
+            MemoryUnit[] magazine = magazines[i];
+            for (int j = 0; j < counts[i]; j++) {
+                memoryBlock.recycle(magazine[j]);
+                magazine[j] = null;
+            }
+            counts[i] = 0;
+        }
+    }
+
+    /**
+     * 容量落在 [size, 2 * size) 区间内的虚拟内存可缓存为该规格
+     *
+     * @param capacity 虚拟内存容量
+     * @return         规格下标，不匹配时返回-1
+     */
+    private int slot(int capacity) {
+        for (int i = 0; i < sizes.length; i++) {
+            if (capacity >= sizes[i] && capacity < sizes[i] << 1) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
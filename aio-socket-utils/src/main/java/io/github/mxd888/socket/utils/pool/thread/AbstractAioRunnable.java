@@ -19,20 +19,50 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.concurrent.Executor;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.ReentrantLock;
-
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 串行执行的任务，同一时刻最多只有一个线程执行runTask
+ * 调度状态由一个原子状态字维护：IDLE空闲，SCHEDULED已提交线程池，RUNNING执行中，RESCHEDULE执行中又收到调度请求；
+ * 调度只需一次CAS，执行中收到的调度请求由执行线程在结束后重新提交，任何线程都不会等待其他任务；
+ * 每次执行最多连续处理maxExecuteNum轮，剩余任务重新提交到线程池队尾，避免单个连接长期占用线程
+ *
+ * @author MDong
+ * @version 2.10.1.v20211002-RELEASE
+ */
 public abstract class AbstractAioRunnable implements Runnable {
 
     private static final Logger LOGGER	= LoggerFactory.getLogger(AbstractAioRunnable.class);
 
-    public boolean executed	= false;
+    /**
+     * 空闲
+     */
+    private static final int IDLE = 0;
+
+    /**
+     * 已提交线程池，等待执行
+     */
+    private static final int SCHEDULED = 1;
+
+    /**
+     * 执行中
+     */
+    private static final int RUNNING = 2;
+
+    /**
+     * 执行中又收到调度请求，执行结束后需重新提交
+     */
+    private static final int RESCHEDULE = 3;
 
-    protected ReentrantLock runningLock	= new ReentrantLock();
+    /**
+     * 调度状态
+     */
+    private final AtomicInteger state = new AtomicInteger(IDLE);
 
     public final Executor executor;
 
-    private boolean	isCanceled	= false;
+    private volatile boolean isCanceled = false;
 
     private final int maxExecuteNum;
 
@@ -45,49 +75,101 @@ public abstract class AbstractAioRunnable implements Runnable {
         this.maxExecuteNum = maxExecuteNum;
     }
 
+    /**
+     * 请求执行，已提交或执行中时不会重复提交
+     */
     public void execute() {
-        executor.execute(this);
+        for (;;) {
+            int current = state.get();
+            if (current == IDLE) {
+                if (state.compareAndSet(IDLE, SCHEDULED)) {
+                    submit();
+                    return;
+                }
+            } else if (current == RUNNING) {
+                if (state.compareAndSet(RUNNING, RESCHEDULE)) {
+                    return;
+                }
+            } else {
+                return;
+            }
+        }
     }
 
     public abstract boolean isNeededExecute();
 
+    /**
+     * 获取亲和值，工作窃取线程池据此为任务选择归属线程，同一连接的任务应返回相同的值
+     *
+     * @return 亲和值
+     */
+    public int getAffinity() {
+        return System.identityHashCode(this);
+    }
+
     public boolean isCanceled() {
         return isCanceled;
     }
 
     @Override
     public final void run() {
-        if (isCanceled()) {
+        if (!acquire()) {
             return;
         }
-        boolean tryLock = false;
         try {
-            tryLock = runningLock.tryLock(1L, TimeUnit.SECONDS);
-        } catch (InterruptedException e1) {
-            LOGGER.error(e1.toString(), e1);
-        }
-        if (tryLock) {
-            try {
+            if (!isCanceled()) {
                 int loopCount = 0;
                 runTask();
                 while (isNeededExecute() && loopCount++ < maxExecuteNum) {
                     runTask();
                 }
+            }
+        } catch (Throwable e) {
+            LOGGER.error(e.toString(), e);
+        } finally {
+            release();
+        }
+    }
 
-            } catch (Throwable e) {
-                LOGGER.error(e.toString(), e);
-            } finally {
-                executed = false;
-                runningLock.unlock();
+    /**
+     * 进入执行状态；未经execute()直接提交到线程池时状态为IDLE，同样允许执行
+     *
+     * @return 其他线程正在执行时返回false，并由该线程在结束后重新提交
+     */
+    private boolean acquire() {
+        for (;;) {
+            int current = state.get();
+            if (current == SCHEDULED || current == IDLE) {
+                if (state.compareAndSet(current, RUNNING)) {
+                    return true;
+                }
+            } else if (current == RESCHEDULE || state.compareAndSet(RUNNING, RESCHEDULE)) {
+                return false;
             }
-        } else {
-            executed = false;
         }
+    }
 
-        if (isNeededExecute()) {
-            execute();
+    /**
+     * 退出执行状态：执行期间收到过调度请求或仍有剩余任务时重新提交
+     */
+    private void release() {
+        if (state.compareAndSet(RUNNING, IDLE)) {
+            if (isNeededExecute()) {
+                execute();
+            }
+        } else {
+            state.set(SCHEDULED);
+            submit();
         }
+    }
 
+    private void submit() {
+        try {
+            executor.execute(this);
+        } catch (RejectedExecutionException e) {
+            state.set(IDLE);
+            throw e;
+        }
     }
 
     public abstract void runTask();
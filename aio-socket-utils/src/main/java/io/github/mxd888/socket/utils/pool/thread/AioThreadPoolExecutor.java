@@ -19,6 +19,7 @@ import java.util.concurrent.*;
 
 /**
  * 并发同步线程池
+ * AbstractAioRunnable的去重与串行由其自身的调度状态保证，线程池只负责执行
  */
 public class AioThreadPoolExecutor extends ThreadPoolExecutor {
 
@@ -40,71 +41,4 @@ public class AioThreadPoolExecutor extends ThreadPoolExecutor {
         super(corePoolSize, maximumPoolSize, keepAliveTime, timeUnit, runnableQueue, threadFactory, rejectedExecutionHandler);
     }
 
-    /**
-     * 执行前检查是否为同步任务
-     *
-     * @param runnable 任务
-     * @return 检查状态
-     */
-    private boolean checkBeforeExecute(Runnable runnable) {
-        if (runnable instanceof AbstractAioRunnable) {
-            AbstractAioRunnable synRunnable = (AbstractAioRunnable) runnable;
-            if (synRunnable.executed) {
-                return false;
-            }
-
-            boolean tryLock = synRunnable.runningLock.tryLock();
-            if (tryLock) {
-                try {
-                    if (synRunnable.executed) {
-                        return false;
-                    }
-                    synRunnable.executed = true;
-                    return true;
-                } finally {
-                    synRunnable.runningLock.unlock();
-                }
-            } else {
-                return false;
-            }
-        } else {
-            return true;
-        }
-    }
-
-    @Override
-    public void execute(Runnable runnable) {
-        if (runnable instanceof AbstractAioRunnable) {
-            AbstractAioRunnable synRunnable = (AbstractAioRunnable) runnable;
-            if (synRunnable.executed) {
-                return;
-            }
-
-            boolean tryLock = synRunnable.runningLock.tryLock();
-            if (tryLock) {
-                try {
-                    if (synRunnable.executed) {
-                        return;
-                    }
-                    synRunnable.executed = true;
-                    super.execute(runnable);
-                } finally {
-                    synRunnable.runningLock.unlock();
-                }
-            }
-        } else {
-            super.execute(runnable);
-        }
-
-    }
-
-    @Override
-    public <R> Future<R> submit(Runnable runnable, R result) {
-        if (checkBeforeExecute(runnable)) {
-            return super.submit(runnable, result);
-        } else {
-            return null;
-        }
-    }
-
 }
@@ -0,0 +1,346 @@
+/*
+ *    Copyright 2019 The aio-socket Project
+ *
+ *    The aio-socket Project Licenses this file to you under the Apache License,
+ *    Version 2.0 (the "License"); you may not use this file except in compliance
+ *    with the License. You may obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.mxd888.socket.utils.pool.thread;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 工作窃取线程池
+ * 每个工作线程持有自己的任务双端队列，AbstractAioRunnable按getAffinity()哈希到固定的归属线程，
+ * 同一连接的任务总是优先在同一线程上执行，避免所有连接争用一个共享队列并保持缓存局部性；
+ * 归属线程正在执行任务时新任务即唤醒一个空闲线程，空闲线程从其他线程队列的尾部窃取整个任务，
+ * 空闲线程的挂起带有超时，醒来后重新扫描各队列，避免任务排在长任务之后得不到执行，
+ * 任务内部的消息仍由AbstractAioRunnable的调度状态保证串行按序处理；
+ * 任务队列无界，不会触发拒绝策略，关闭后提交的任务被拒绝
+ *
+ * @author MDong
+ * @version 2.10.1.v20211002-RELEASE
+ */
+public final class AioWorkStealingExecutor extends AbstractExecutorService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AioWorkStealingExecutor.class);
+
+    /**
+     * 空闲线程单次挂起的最长时间，超时后重新扫描窃取
+     */
+    private static final long SCAN_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    /**
+     * 工作线程
+     */
+    private final Worker[] workers;
+
+    /**
+     * 非AbstractAioRunnable任务的轮询下标
+     */
+    private final AtomicInteger nextIndex = new AtomicInteger();
+
+    /**
+     * 尚未退出的工作线程
+     */
+    private final CountDownLatch terminated;
+
+    /**
+     * 窃取成功的次数
+     */
+    private final LongAdder stealCount = new LongAdder();
+
+    /**
+     * 是否已关闭
+     */
+    private volatile boolean shutdown = false;
+
+    /**
+     * 构造并启动工作窃取线程池
+     *
+     * @param workerNum     工作线程数量
+     * @param threadFactory 线程工厂
+     */
+    public AioWorkStealingExecutor(int workerNum, ThreadFactory threadFactory) {
+        if (workerNum <= 0) {
+            throw new IllegalArgumentException("workerNum must be positive");
+        }
+        this.workers = new Worker[workerNum];
+        this.terminated = new CountDownLatch(workerNum);
+        for (int i = 0; i < workerNum; i++) {
+            workers[i] = new Worker(i);
+        }
+        // 全部工作线程创建后再启动，保证窃取时能看到完整的数组
+        for (Worker worker : workers) {
+            worker.thread = threadFactory.newThread(worker);
+        }
+        for (Worker worker : workers) {
+            worker.thread.start();
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+        if (shutdown) {
+            throw new RejectedExecutionException("work stealing executor has shutdown");
+        }
+        Worker home = home(task);
+        home.push(task);
+        // 入队后再次检查，与工作线程退出前检查队列配合，保证任务要么被执行要么被拒绝
+        if (shutdown && home.remove(task)) {
+            throw new RejectedExecutionException("work stealing executor has shutdown");
+        }
+        if (home.parked) {
+            home.unpark();
+        } else if (home.queued.get() > 0) {
+            // 归属线程正忙，任务可能排在一个耗时任务之后，交给空闲线程窃取
+            signalIdle(home);
+        }
+    }
+
+    /**
+     * 同一连接的任务哈希到同一个工作线程，其他任务轮询分配
+     */
+    private Worker home(Runnable task) {
+        int hash;
+        if (task instanceof AbstractAioRunnable) {
+            hash = ((AbstractAioRunnable) task).getAffinity();
+            hash ^= hash >>> 16;
+        } else {
+            hash = nextIndex.getAndIncrement();
+        }
+        return workers[(hash & Integer.MAX_VALUE) % workers.length];
+    }
+
+    /**
+     * 唤醒一个空闲的工作线程去窃取任务
+     */
+    private void signalIdle(Worker busy) {
+        for (int i = 1; i < workers.length; i++) {
+            Worker worker = workers[(busy.index + i) % workers.length];
+            if (worker.parked) {
+                worker.unpark();
+                return;
+            }
+        }
+    }
+
+    /**
+     * 从其他工作线程的队列尾部窃取任务
+     */
+    private Runnable steal(Worker thief) {
+        for (int i = 1; i < workers.length; i++) {
+            Runnable task = workers[(thief.index + i) % workers.length].pollLast();
+            if (task != null) {
+                stealCount.increment();
+                return task;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        for (Worker worker : workers) {
+            worker.unpark();
+        }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown = true;
+        List<Runnable> tasks = new ArrayList<>();
+        for (Worker worker : workers) {
+            Runnable task;
+            while ((task = worker.pollFirst()) != null) {
+                tasks.add(task);
+            }
+        }
+        for (Worker worker : workers) {
+            worker.thread.interrupt();
+        }
+        return tasks;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return terminated.getCount() == 0;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+
+    /**
+     * 获取工作线程数量
+     *
+     * @return 工作线程数量
+     */
+    public int getWorkerNum() {
+        return workers.length;
+    }
+
+    /**
+     * 获取窃取成功的次数
+     *
+     * @return 窃取次数
+     */
+    public long getStealCount() {
+        return stealCount.sum();
+    }
+
+    /**
+     * 获取等待执行的任务数量
+     *
+     * @return 任务数量
+     */
+    public int getQueuedTaskCount() {
+        int count = 0;
+        for (Worker worker : workers) {
+            count += worker.queued.get();
+        }
+        return count;
+    }
+
+    /**
+     * 工作线程，先执行本地队列头部的任务，本地为空时窃取，仍无任务则挂起等待唤醒或超时后重新扫描
+     */
+    private final class Worker implements Runnable {
+
+        /**
+         * 在线程池中的下标
+         */
+        private final int index;
+
+        /**
+         * 本地任务队列，提交者从尾部入队，本线程从头部取出，窃取者从尾部取出
+         */
+        private final ConcurrentLinkedDeque<Runnable> deque = new ConcurrentLinkedDeque<>();
+
+        /**
+         * 本地队列中的任务数量
+         */
+        private final AtomicInteger queued = new AtomicInteger();
+
+        /**
+         * 是否已挂起或即将挂起
+         */
+        private volatile boolean parked = false;
+
+        private Thread thread;
+
+        Worker(int index) {
+            this.index = index;
+        }
+
+        void push(Runnable task) {
+            queued.incrementAndGet();
+            deque.offerLast(task);
+        }
+
+        Runnable pollFirst() {
+            Runnable task = deque.pollFirst();
+            if (task != null) {
+                queued.decrementAndGet();
+            }
+            return task;
+        }
+
+        Runnable pollLast() {
+            Runnable task = deque.pollLast();
+            if (task != null) {
+                queued.decrementAndGet();
+            }
+            return task;
+        }
+
+        boolean remove(Runnable task) {
+            if (deque.removeLastOccurrence(task)) {
+                queued.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        void unpark() {
+            parked = false;
+            LockSupport.unpark(thread);
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (;;) {
+                    Runnable task = next();
+                    if (task != null) {
+                        runTask(task);
+                        continue;
+                    }
+                    if (shutdown) {
+                        // 其他线程的队列已为空，提交者在入队后会再次检查关闭状态
+                        return;
+                    }
+                    // 先发布挂起状态再检查队列，与提交者先入队再检查挂起状态配合，避免丢失唤醒
+                    parked = true;
+                    task = next();
+                    if (task != null) {
+                        parked = false;
+                        runTask(task);
+                        continue;
+                    }
+                    if (!shutdown) {
+                        LockSupport.parkNanos(this, SCAN_INTERVAL_NANOS);
+                    }
+                    parked = false;
+                    Thread.interrupted();
+                }
+            } finally {
+                terminated.countDown();
+            }
+        }
+
+        private Runnable next() {
+            Runnable task = pollFirst();
+            return task != null ? task : steal(this);
+        }
+
+        private void runTask(Runnable task) {
+            try {
+                task.run();
+            } catch (Throwable e) {
+                LOGGER.error(e.toString(), e);
+            }
+        }
+    }
+}
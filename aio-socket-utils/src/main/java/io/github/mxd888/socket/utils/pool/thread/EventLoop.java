@@ -0,0 +1,124 @@
+/*
+ *    Copyright 2019 The aio-socket Project
+ *
+ *    The aio-socket Project Licenses this file to you under the Apache License,
+ *    Version 2.0 (the "License"); you may not use this file except in compliance
+ *    with the License. You may obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.mxd888.socket.utils.pool.thread;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 单线程事件循环
+ * 绑定到同一事件循环的任务始终在同一线程上按提交顺序执行，任务之间无需加锁
+ *
+ * @author MDong
+ * @version 2.10.1.v20211002-RELEASE
+ */
+public final class EventLoop implements Executor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventLoop.class);
+
+    /**
+     * 关闭信号，入队后事件循环执行完之前的任务即退出
+     */
+    private static final Runnable SHUTDOWN_TASK = () -> { };
+
+    /**
+     * 待执行的任务
+     */
+    private final LinkedBlockingQueue<Runnable> taskQueue = new LinkedBlockingQueue<>();
+
+    /**
+     * 事件循环线程
+     */
+    private final Thread thread;
+
+    /**
+     * 是否已关闭
+     */
+    private volatile boolean shutdown = false;
+
+    /**
+     * 构造并启动事件循环
+     *
+     * @param threadFactory 线程工厂
+     */
+    public EventLoop(ThreadFactory threadFactory) {
+        this.thread = threadFactory.newThread(this::run);
+        this.thread.start();
+    }
+
+    /**
+     * 当前线程是否为事件循环线程
+     *
+     * @return 布尔
+     */
+    public boolean inEventLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (shutdown) {
+            throw new RejectedExecutionException("event loop has shutdown");
+        }
+        taskQueue.offer(task);
+    }
+
+    /**
+     * 关闭事件循环，已提交的任务仍会执行完毕
+     */
+    public void shutdown() {
+        if (!shutdown) {
+            shutdown = true;
+            taskQueue.offer(SHUTDOWN_TASK);
+        }
+    }
+
+    /**
+     * 是否已关闭
+     *
+     * @return 布尔
+     */
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    private void run() {
+        for (;;) {
+            Runnable task;
+            try {
+                task = taskQueue.take();
+            } catch (InterruptedException e) {
+                if (shutdown) {
+                    return;
+                }
+                continue;
+            }
+            if (task == SHUTDOWN_TASK) {
+                return;
+            }
+            try {
+                task.run();
+            } catch (Throwable e) {
+                LOGGER.error(e.toString(), e);
+            }
+        }
+    }
+}
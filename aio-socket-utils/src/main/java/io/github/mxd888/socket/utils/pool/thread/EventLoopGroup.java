@@ -0,0 +1,81 @@
+/*
+ *    Copyright 2019 The aio-socket Project
+ *
+ *    The aio-socket Project Licenses this file to you under the Apache License,
+ *    Version 2.0 (the "License"); you may not use this file except in compliance
+ *    with the License. You may obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.mxd888.socket.utils.pool.thread;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 事件循环组，按轮询方式为新连接分配事件循环
+ *
+ * @author MDong
+ * @version 2.10.1.v20211002-RELEASE
+ */
+public final class EventLoopGroup {
+
+    /**
+     * 事件循环
+     */
+    private final EventLoop[] eventLoops;
+
+    /**
+     * 轮询下标
+     */
+    private final AtomicInteger index = new AtomicInteger();
+
+    /**
+     * 创建事件循环组
+     *
+     * @param eventLoopNum 事件循环数量
+     * @param threadName   线程名前缀
+     */
+    public EventLoopGroup(int eventLoopNum, String threadName) {
+        if (eventLoopNum <= 0) {
+            throw new IllegalArgumentException("eventLoopNum must be positive");
+        }
+        this.eventLoops = new EventLoop[eventLoopNum];
+        DefaultThreadFactory threadFactory = DefaultThreadFactory.getInstance(threadName);
+        for (int i = 0; i < eventLoopNum; i++) {
+            eventLoops[i] = new EventLoop(threadFactory);
+        }
+    }
+
+    /**
+     * 获取下一个事件循环
+     *
+     * @return 事件循环
+     */
+    public EventLoop next() {
+        return eventLoops[(index.getAndIncrement() & Integer.MAX_VALUE) % eventLoops.length];
+    }
+
+    /**
+     * 事件循环数量
+     *
+     * @return 数量
+     */
+    public int size() {
+        return eventLoops.length;
+    }
+
+    /**
+     * 关闭全部事件循环
+     */
+    public void shutdown() {
+        for (EventLoop eventLoop : eventLoops) {
+            eventLoop.shutdown();
+        }
+    }
+}
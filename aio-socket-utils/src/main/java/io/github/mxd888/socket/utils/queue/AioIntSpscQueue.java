@@ -0,0 +1,166 @@
+/*
+ *    Copyright 2019 The aio-socket Project
+ *
+ *    The aio-socket Project Licenses this file to you under the Apache License,
+ *    Version 2.0 (the "License"); you may not use this file except in compliance
+ *    with the License. You may obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.mxd888.socket.utils.queue;
+
+/**
+ * 基于int数组的有界单生产者单消费者队列
+ * 与{@link AioSpscQueue}相同的索引协议，元素直接保存为int，不为每个元素装箱；
+ * {@link #EMPTY}用于表示队列为空，不能入队
+ *
+ * @author MDong
+ * @version 2.10.1.v20211002-RELEASE
+ */
+public class AioIntSpscQueue {
+
+    /**
+     * 队列为空时poll、peek的返回值
+     */
+    public static final int EMPTY = Integer.MIN_VALUE;
+
+    /**
+     * 存放单元的环形数组
+     */
+    private final int[] buffer;
+
+    /**
+     * 下标掩码，容量为2的幂
+     */
+    private final int mask;
+
+    /**
+     * 写索引，由生产者以有序写发布
+     */
+    private final AioRingQueue.PaddedAtomicLong tail = new AioRingQueue.PaddedAtomicLong();
+
+    /**
+     * 读索引，由消费者以有序写发布
+     */
+    private final AioRingQueue.PaddedAtomicLong head = new AioRingQueue.PaddedAtomicLong();
+
+    /**
+     * 生产者缓存的读索引
+     */
+    private long headCache;
+
+    /**
+     * 消费者缓存的写索引
+     */
+    private long tailCache;
+
+    /**
+     * 创建队列
+     *
+     * @param capacity 最小容量，实际容量向上取整为2的幂
+     */
+    public AioIntSpscQueue(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        int size = capacity == 1 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.buffer = new int[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * 入队
+     *
+     * @param value 入队单元，不能为EMPTY
+     * @return      队列已满时返回false
+     */
+    public boolean offer(int value) {
+        if (value == EMPTY) {
+            throw new IllegalArgumentException("EMPTY can not be offered");
+        }
+        long pos = tail.get();
+        if (pos - headCache > mask) {
+            headCache = head.get();
+            if (pos - headCache > mask) {
+                return false;
+            }
+        }
+        buffer[(int) pos & mask] = value;
+        tail.lazySet(pos + 1);
+        return true;
+    }
+
+    /**
+     * 读取头元素但不出队，只允许消费者调用
+     *
+     * @return 头元素，队列为空时返回EMPTY
+     */
+    public int peek() {
+        long pos = head.get();
+        if (pos >= tailCache) {
+            tailCache = tail.get();
+            if (pos >= tailCache) {
+                return EMPTY;
+            }
+        }
+        return buffer[(int) pos & mask];
+    }
+
+    /**
+     * 出队，只允许消费者调用
+     *
+     * @return 头元素，队列为空时返回EMPTY
+     */
+    public int poll() {
+        long pos = head.get();
+        if (pos >= tailCache) {
+            tailCache = tail.get();
+            if (pos >= tailCache) {
+                return EMPTY;
+            }
+        }
+        int value = buffer[(int) pos & mask];
+        head.lazySet(pos + 1);
+        return value;
+    }
+
+    /**
+     * 清空队列，只允许消费者调用
+     */
+    public void clear() {
+        while (poll() != EMPTY) {
+            // 逐个出队直至清空
+        }
+    }
+
+    public int size() {
+        long size = tail.get() - head.get();
+        if (size < 0) {
+            return 0;
+        }
+        return size > capacity() ? capacity() : (int) size;
+    }
+
+    public boolean isEmpty() {
+        return tail.get() == head.get();
+    }
+
+    public boolean isFull() {
+        return size() > mask;
+    }
+
+    /**
+     * 队列容量
+     *
+     * @return 容量
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+}
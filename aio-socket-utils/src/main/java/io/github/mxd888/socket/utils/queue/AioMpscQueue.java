@@ -0,0 +1,163 @@
+/*
+ *    Copyright 2019 The aio-socket Project
+ *
+ *    The aio-socket Project Licenses this file to you under the Apache License,
+ *    Version 2.0 (the "License"); you may not use this file except in compliance
+ *    with the License. You may obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.mxd888.socket.utils.queue;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 基于数组的有界多生产者单消费者队列
+ * 生产者通过CAS竞争写索引后写入槽位，消费者以槽位是否非空判断数据是否已发布，出队时不需要CAS；
+ * 生产者共享一个由读索引推算的写入上限，只在写索引到达上限时才读取读索引，入队出队均不创建对象；
+ * 同一时刻只允许一个线程出队，先后执行的不同线程之间须已存在happens-before关系
+ *
+ * @param <T> 单元类型
+ * @author MDong
+ * @version 2.10.1.v20211002-RELEASE
+ */
+public class AioMpscQueue<T> implements AioQueue<T> {
+
+    /**
+     * 存放单元的环形数组
+     */
+    private final AtomicReferenceArray<T> buffer;
+
+    /**
+     * 下标掩码，容量为2的幂
+     */
+    private final int mask;
+
+    /**
+     * 写索引，生产者之间CAS竞争
+     */
+    private final AioRingQueue.PaddedAtomicLong tail = new AioRingQueue.PaddedAtomicLong();
+
+    /**
+     * 读索引，由消费者以有序写发布
+     */
+    private final AioRingQueue.PaddedAtomicLong head = new AioRingQueue.PaddedAtomicLong();
+
+    /**
+     * 写入上限，写索引小于该值时槽位必定已被消费
+     */
+    private volatile long producerLimit;
+
+    /**
+     * 创建队列
+     *
+     * @param capacity 最小容量，实际容量向上取整为2的幂
+     */
+    public AioMpscQueue(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        int size = capacity == 1 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.buffer = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.producerLimit = size;
+    }
+
+    @Override
+    public boolean offer(T t) {
+        if (t == null) {
+            throw new NullPointerException();
+        }
+        long pos;
+        for (;;) {
+            pos = tail.get();
+            long limit = producerLimit;
+            if (pos >= limit) {
+                limit = head.get() + mask + 1;
+                if (pos >= limit) {
+                    return false;
+                }
+                producerLimit = limit;
+            }
+            if (tail.compareAndSet(pos, pos + 1)) {
+                break;
+            }
+        }
+        buffer.lazySet((int) pos & mask, t);
+        return true;
+    }
+
+    /**
+     * 读取头元素，只允许消费者调用；头元素的写索引已被占用但尚未写入时返回null
+     *
+     * @return 头元素
+     */
+    @Override
+    public T peek() {
+        return buffer.get((int) head.get() & mask);
+    }
+
+    @Override
+    public T poll() {
+        long pos = head.get();
+        int index = (int) pos & mask;
+        T t = buffer.get(index);
+        if (t == null) {
+            if (pos == tail.get()) {
+                return null;
+            }
+            // 生产者已占用写索引但尚未写入槽位，让出CPU等待其完成，避免生产者被挂起时空转
+            do {
+                Thread.yield();
+                t = buffer.get(index);
+            } while (t == null);
+        }
+        buffer.lazySet(index, null);
+        head.lazySet(pos + 1);
+        return t;
+    }
+
+    /**
+     * 清空队列，只允许消费者调用
+     */
+    @Override
+    public void clear() {
+        while (poll() != null) {
+            // 逐个出队直至清空
+        }
+    }
+
+    @Override
+    public int size() {
+        long size = tail.get() - head.get();
+        if (size < 0) {
+            return 0;
+        }
+        return size > capacity() ? capacity() : (int) size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return tail.get() == head.get();
+    }
+
+    @Override
+    public boolean isFull() {
+        return size() > mask;
+    }
+
+    /**
+     * 队列容量
+     *
+     * @return 容量
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+}
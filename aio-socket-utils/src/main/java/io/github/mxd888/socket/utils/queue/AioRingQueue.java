@@ -0,0 +1,212 @@
+/*
+ *    Copyright 2019 The aio-socket Project
+ *
+ *    The aio-socket Project Licenses this file to you under the Apache License,
+ *    Version 2.0 (the "License"); you may not use this file except in compliance
+ *    with the License. You may obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.mxd888.socket.utils.queue;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Predicate;
+
+/**
+ * 基于数组的无锁有界环形队列
+ * 多个生产者通过CAS竞争写索引，每个槽位携带序号用于判断可写/可读，队列满时offer直接返回false，不阻塞调用方
+ * 出队同样通过CAS完成，允许生产者在溢出时安全地淘汰队头元素
+ *
+ * @param <T> 单元类型
+ * @author MDong
+ * @version 2.10.1.v20211002-RELEASE
+ */
+public class AioRingQueue<T> implements AioQueue<T> {
+
+    /**
+     * 存放单元的环形数组
+     */
+    private final AtomicReferenceArray<T> buffer;
+
+    /**
+     * 每个槽位的序号，等于写索引时可写，等于写索引+1时可读
+     */
+    private final AtomicLongArray sequences;
+
+    /**
+     * 下标掩码，容量为2的幂
+     */
+    private final int mask;
+
+    /**
+     * 写索引，独占缓存行避免与读索引伪共享
+     */
+    private final PaddedAtomicLong tail = new PaddedAtomicLong();
+
+    /**
+     * 读索引，独占缓存行避免与写索引伪共享
+     */
+    private final PaddedAtomicLong head = new PaddedAtomicLong();
+
+    /**
+     * 创建环形队列
+     *
+     * @param capacity 最小容量，实际容量向上取整为2的幂
+     */
+    public AioRingQueue(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        int size = capacity == 1 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.buffer = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.mask = size - 1;
+    }
+
+    @Override
+    public boolean offer(T t) {
+        if (t == null) {
+            throw new NullPointerException();
+        }
+        long pos;
+        int index;
+        for (;;) {
+            pos = tail.get();
+            index = (int) pos & mask;
+            long dif = sequences.get(index) - pos;
+            if (dif == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    break;
+                }
+            } else if (dif < 0) {
+                // 槽位尚未被消费，队列已满
+                return false;
+            }
+        }
+        buffer.lazySet(index, t);
+        sequences.lazySet(index, pos + 1);
+        return true;
+    }
+
+    @Override
+    public T peek() {
+        long pos = head.get();
+        int index = (int) pos & mask;
+        if (sequences.get(index) != pos + 1) {
+            return null;
+        }
+        return buffer.get(index);
+    }
+
+    @Override
+    public T poll() {
+        long pos;
+        int index;
+        for (;;) {
+            pos = head.get();
+            index = (int) pos & mask;
+            long dif = sequences.get(index) - (pos + 1);
+            if (dif == 0) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    break;
+                }
+            } else if (dif < 0) {
+                // 槽位尚未发布，队列为空
+                return null;
+            }
+        }
+        T t = buffer.get(index);
+        buffer.lazySet(index, null);
+        sequences.lazySet(index, pos + mask + 1);
+        return t;
+    }
+
+    /**
+     * 仅当队头元素满足条件时将其出队
+     * 出队前检查的元素即为被移除的元素，不会因并发出队而误移除后续元素
+     *
+     * @param condition 出队条件
+     * @return          被移除的队头元素，队列为空或队头不满足条件时返回null
+     */
+    public T pollIf(Predicate<? super T> condition) {
+        long pos;
+        int index;
+        T t;
+        for (;;) {
+            pos = head.get();
+            index = (int) pos & mask;
+            long dif = sequences.get(index) - (pos + 1);
+            if (dif == 0) {
+                t = buffer.get(index);
+                if (!condition.test(t)) {
+                    return null;
+                }
+                if (head.compareAndSet(pos, pos + 1)) {
+                    break;
+                }
+            } else if (dif < 0) {
+                return null;
+            }
+        }
+        buffer.lazySet(index, null);
+        sequences.lazySet(index, pos + mask + 1);
+        return t;
+    }
+
+    @Override
+    public void clear() {
+        while (poll() != null) {
+            // 逐个出队直至清空
+        }
+    }
+
+    @Override
+    public int size() {
+        long size = tail.get() - head.get();
+        if (size < 0) {
+            return 0;
+        }
+        return size > capacity() ? capacity() : (int) size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return tail.get() == head.get();
+    }
+
+    @Override
+    public boolean isFull() {
+        return size() >= capacity();
+    }
+
+    /**
+     * 队列容量
+     *
+     * @return 容量
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * 填充至独占一个缓存行的AtomicLong
+     */
+    @SuppressWarnings("unused")
+    static final class PaddedAtomicLong extends AtomicLong {
+
+        private static final long serialVersionUID = -3851946205362780127L;
+
+        private long p1, p2, p3, p4, p5, p6, p7;
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ *    Copyright 2019 The aio-socket Project
+ *
+ *    The aio-socket Project Licenses this file to you under the Apache License,
+ *    Version 2.0 (the "License"); you may not use this file except in compliance
+ *    with the License. You may obtain a copy of the License at:
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package io.github.mxd888.socket.utils.queue;
+
+/**
+ * 基于数组的有界单生产者单消费者队列
+ * 生产者只写尾索引、消费者只写头索引，两端都不需要CAS；各端缓存对端索引，只在缓存值显示满/空时才读取对端的索引，
+ * 入队出队均不创建对象；同一时刻只允许一个线程入队、一个线程出队，先后执行的不同线程之间须已存在happens-before关系
+ *
+ * @param <T> 单元类型
+ * @author MDong
+ * @version 2.10.1.v20211002-RELEASE
+ */
+public class AioSpscQueue<T> implements AioQueue<T> {
+
+    /**
+     * 存放单元的环形数组
+     */
+    private final Object[] buffer;
+
+    /**
+     * 下标掩码，容量为2的幂
+     */
+    private final int mask;
+
+    /**
+     * 写索引，由生产者以有序写发布
+     */
+    private final AioRingQueue.PaddedAtomicLong tail = new AioRingQueue.PaddedAtomicLong();
+
+    /**
+     * 读索引，由消费者以有序写发布
+     */
+    private final AioRingQueue.PaddedAtomicLong head = new AioRingQueue.PaddedAtomicLong();
+
+    /**
+     * 生产者缓存的读索引
+     */
+    private long headCache;
+
+    /**
+     * 消费者缓存的写索引
+     */
+    private long tailCache;
+
+    /**
+     * 创建队列
+     *
+     * @param capacity 最小容量，实际容量向上取整为2的幂
+     */
+    public AioSpscQueue(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        int size = capacity == 1 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.buffer = new Object[size];
+        this.mask = size - 1;
+    }
+
+    @Override
+    public boolean offer(T t) {
+        if (t == null) {
+            throw new NullPointerException();
+        }
+        long pos = tail.get();
+        if (pos - headCache > mask) {
+            headCache = head.get();
+            if (pos - headCache > mask) {
+                return false;
+            }
+        }
+        buffer[(int) pos & mask] = t;
+        tail.lazySet(pos + 1);
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T peek() {
+        long pos = head.get();
+        if (pos >= tailCache) {
+            tailCache = tail.get();
+            if (pos >= tailCache) {
+                return null;
+            }
+        }
+        return (T) buffer[(int) pos & mask];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T poll() {
+        long pos = head.get();
+        if (pos >= tailCache) {
+            tailCache = tail.get();
+            if (pos >= tailCache) {
+                return null;
+            }
+        }
+        int index = (int) pos & mask;
+        T t = (T) buffer[index];
+        buffer[index] = null;
+        head.lazySet(pos + 1);
+        return t;
+    }
+
+    /**
+     * 清空队列，只允许消费者调用
+     */
+    @Override
+    public void clear() {
+        while (poll() != null) {
+            // 逐个出队直至清空
+        }
+    }
+
+    @Override
+    public int size() {
+        long size = tail.get() - head.get();
+        if (size < 0) {
+            return 0;
+        }
+        return size > capacity() ? capacity() : (int) size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return tail.get() == head.get();
+    }
+
+    @Override
+    public boolean isFull() {
+        return size() > mask;
+    }
+
+    /**
+     * 队列容量
+     *
+     * @return 容量
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+}